@@ -3,6 +3,7 @@ package me.ykrank.s1next;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.os.StrictMode;
+import android.support.annotation.NonNull;
 import android.support.multidex.MultiDexApplication;
 
 import com.activeandroid.ActiveAndroid;
@@ -14,6 +15,9 @@ import me.ykrank.s1next.data.pref.GeneralPreferencesManager;
 import me.ykrank.s1next.util.ProcessUtil;
 import me.ykrank.s1next.util.ResourceUtil;
 import me.ykrank.s1next.widget.AppActivityLifecycleCallbacks;
+import me.ykrank.s1next.widget.AppStartup;
+import me.ykrank.s1next.widget.FavouriteSync;
+import me.ykrank.s1next.widget.StartupTimeline;
 
 public final class App extends MultiDexApplication {
     public static final String LOG_TAG = "s1Next";
@@ -26,12 +30,16 @@ public final class App extends MultiDexApplication {
 
     private AppActivityLifecycleCallbacks mAppActivityLifecycleCallbacks;
 
-    private RefWatcher refWatcher;
+    /**
+     * {@link RefWatcher#DISABLED} until LeakCanary is installed when main thread is idle.
+     */
+    private volatile RefWatcher refWatcher = RefWatcher.DISABLED;
 
     public static App get() {
         return sApp;
     }
 
+    @NonNull
     public RefWatcher getRefWatcher() {
         return refWatcher;
     }
@@ -40,6 +48,17 @@ public final class App extends MultiDexApplication {
         return ((App) context.getApplicationContext()).mAppComponent;
     }
 
+    @Override
+    protected void attachBaseContext(Context base) {
+        StartupTimeline.start();
+        // MultiDex is installed here
+        StartupTimeline.trace("MultiDex", () -> super.attachBaseContext(base));
+    }
+
+    /**
+     * Only initializes what the first frame needs here,
+     * others are deferred by {@link AppStartup}.
+     */
     @Override
     public void onCreate() {
         super.onCreate();
@@ -55,25 +74,40 @@ public final class App extends MultiDexApplication {
                     .penaltyLog()
                     .build());
         }
-        refWatcher = LeakCanary.install(this);
-        Bugsnag.init(this);
+        AppStartup.runWhenIdle(AppStartup.TASK_LEAK_CANARY, () -> refWatcher = LeakCanary.install(this));
+        // we want crash reports of the startup itself, so don't defer this
+        StartupTimeline.trace("Bugsnag", () -> Bugsnag.init(this));
 
         //如果不是主进程，不做多余的初始化
         if (!ProcessUtil.isMainProcess(this))
             return;
 
         sApp = this;
-        mAppComponent = DaggerAppComponent.builder()
+        // all the singletons are created lazily when first used
+        StartupTimeline.trace("Dagger", () -> mAppComponent = DaggerAppComponent.builder()
                 .appModule(new AppModule(this))
-                .build();
+                .build());
         mAppActivityLifecycleCallbacks = new AppActivityLifecycleCallbacks(this);
         registerActivityLifecycleCallbacks(mAppActivityLifecycleCallbacks);
 
-        mGeneralPreferencesManager = mAppComponent.getGeneralPreferencesManager();
-        // set scaling factor for fonts
-        ResourceUtil.setScaledDensity(getResources(), mGeneralPreferencesManager.getFontScale());
-
-        ActiveAndroid.initialize(this);
+        StartupTimeline.trace("Font scale", () -> {
+            mGeneralPreferencesManager = mAppComponent.getGeneralPreferencesManager();
+            // set scaling factor for fonts
+            ResourceUtil.setScaledDensity(getResources(), mGeneralPreferencesManager.getFontScale());
+        });
+
+        // see BlackListDbWrapper#getInstance() and ReadProgressDbWrapper#getInstance()
+        AppStartup.runInBackground(AppStartup.TASK_DATABASE, () -> ActiveAndroid.initialize(this));
+        // load cookies before the first request needs them
+        AppStartup.runInBackground(AppStartup.TASK_COOKIES, () ->
+                mAppComponent.getCookieManager().getCookieStore().getURIs());
+        // build the deserializers before the first response arrives
+        AppStartup.runInBackground(AppStartup.TASK_JSON, () ->
+                mAppComponent.getApiConverterFactory().prewarm());
+        AppStartup.runWhenIdle(AppStartup.TASK_FAVOURITE_SYNC, () ->
+                FavouriteSync.schedule(this));
+        // sends what was queued before we were killed
+        AppStartup.runWhenIdle(AppStartup.TASK_OUTBOX, () -> mAppComponent.getOutbox());
     }
 
     @Override
@@ -1,9 +1,14 @@
 package me.ykrank.s1next;
 
+import java.net.CookieManager;
+
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import dagger.Component;
 import me.ykrank.s1next.data.User;
+import me.ykrank.s1next.data.api.ApiConverterFactory;
+import me.ykrank.s1next.data.api.PageSizePolicy;
 import me.ykrank.s1next.data.api.S1Service;
 import me.ykrank.s1next.data.api.UserValidator;
 import me.ykrank.s1next.data.pref.DownloadPreferencesManager;
@@ -24,8 +29,16 @@ import me.ykrank.s1next.view.fragment.ReplyFragment;
 import me.ykrank.s1next.view.fragment.WebLoginFragment;
 import me.ykrank.s1next.view.fragment.setting.GeneralPreferenceFragment;
 import me.ykrank.s1next.viewmodel.UserViewModel;
+import me.ykrank.s1next.widget.AvatarRevalidator;
 import me.ykrank.s1next.widget.EventBus;
-import me.ykrank.s1next.widget.WifiBroadcastReceiver;
+import me.ykrank.s1next.widget.NavigationPrefetcher;
+import me.ykrank.s1next.widget.NetworkQualityEstimator;
+import me.ykrank.s1next.widget.Outbox;
+import me.ykrank.s1next.widget.PageSummaryCache;
+import me.ykrank.s1next.widget.PostFormPrefetcher;
+import me.ykrank.s1next.widget.RequestScheduler;
+import me.ykrank.s1next.widget.SearchResultCache;
+import me.ykrank.s1next.widget.UiSnapshotStore;
 import okhttp3.OkHttpClient;
 
 /**
@@ -36,10 +49,40 @@ import okhttp3.OkHttpClient;
 @Component(modules = AppModule.class)
 public interface AppComponent {
 
+    /**
+     * The qualifier of the {@link OkHttpClient} for images.
+     */
+    String IMAGE_OK_HTTP_CLIENT = "image";
+
     OkHttpClient getOkHttpClient();
 
+    @Named(IMAGE_OK_HTTP_CLIENT)
+    OkHttpClient getImageOkHttpClient();
+
+    RequestScheduler getRequestScheduler();
+
+    NetworkQualityEstimator getNetworkQualityEstimator();
+
+    CookieManager getCookieManager();
+
+    ApiConverterFactory getApiConverterFactory();
+
     S1Service getS1Service();
 
+    NavigationPrefetcher getNavigationPrefetcher();
+
+    UiSnapshotStore getUiSnapshotStore();
+
+    PageSummaryCache getPageSummaryCache();
+
+    PostFormPrefetcher getPostFormPrefetcher();
+
+    Outbox getOutbox();
+
+    SearchResultCache getSearchResultCache();
+
+    PageSizePolicy getPageSizePolicy();
+
     EventBus getEventBus();
 
     User getUser();
@@ -52,6 +95,8 @@ public interface AppComponent {
 
     DownloadPreferencesManager getDownloadPreferencesManager();
 
+    AvatarRevalidator getAvatarRevalidator();
+
     ThemeManager getThemeManager();
 
     ReadProgressPreferencesManager getReadProgressPreferencesManager();
@@ -78,8 +123,6 @@ public interface AppComponent {
 
     void inject(PostAdapterDelegate delegate);
 
-    void inject(WifiBroadcastReceiver wifiBroadcastReceiver);
-    
     void inject(SearchActivity activity);
 
     void inject(WebLoginFragment fragment);
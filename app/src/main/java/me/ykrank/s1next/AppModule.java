@@ -8,13 +8,15 @@ import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.util.concurrent.TimeUnit;
 
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import dagger.Module;
 import dagger.Provides;
 import me.ykrank.s1next.data.User;
-import me.ykrank.s1next.data.Wifi;
 import me.ykrank.s1next.data.api.Api;
+import me.ykrank.s1next.data.api.ApiConverterFactory;
+import me.ykrank.s1next.data.api.PageSizePolicy;
 import me.ykrank.s1next.data.api.S1Service;
 import me.ykrank.s1next.data.api.UserValidator;
 import me.ykrank.s1next.data.pref.DownloadPreferencesManager;
@@ -25,14 +27,22 @@ import me.ykrank.s1next.data.pref.ReadProgressPreferencesManager;
 import me.ykrank.s1next.data.pref.ReadProgressPreferencesRepository;
 import me.ykrank.s1next.data.pref.ThemeManager;
 import me.ykrank.s1next.viewmodel.UserViewModel;
+import me.ykrank.s1next.widget.AvatarRevalidator;
 import me.ykrank.s1next.widget.EventBus;
+import me.ykrank.s1next.widget.NavigationPrefetcher;
+import me.ykrank.s1next.widget.NetworkQualityEstimator;
+import me.ykrank.s1next.widget.Outbox;
+import me.ykrank.s1next.widget.PageSummaryCache;
 import me.ykrank.s1next.widget.PersistentHttpCookieStore;
+import me.ykrank.s1next.widget.PostFormPrefetcher;
+import me.ykrank.s1next.widget.RequestScheduler;
+import me.ykrank.s1next.widget.SearchResultCache;
+import me.ykrank.s1next.widget.UiSnapshotStore;
 import okhttp3.JavaNetCookieJar;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
-import retrofit2.converter.jackson.JacksonConverterFactory;
 import retrofit2.converter.scalars.ScalarsConverterFactory;
 
 /**
@@ -61,30 +71,90 @@ final class AppModule {
 
     @Provides
     @Singleton
-    OkHttpClient providerOkHttpClient(CookieManager cookieManager) {
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
-        builder.connectTimeout(17, TimeUnit.SECONDS);
-        builder.writeTimeout(17, TimeUnit.SECONDS);
-        builder.readTimeout(77, TimeUnit.SECONDS);
-        builder.retryOnConnectionFailure(true);
-        builder.cookieJar(new JavaNetCookieJar(cookieManager));
-        if (BuildConfig.DEBUG) {
-            HttpLoggingInterceptor httpLoggingInterceptor = new HttpLoggingInterceptor();
-            httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.HEADERS);
-            builder.interceptors().add(httpLoggingInterceptor);
-        }
+    RequestScheduler provideRequestScheduler(NetworkQualityEstimator networkQualityEstimator) {
+        return new RequestScheduler(networkQualityEstimator);
+    }
+
+    @Provides
+    @Singleton
+    NetworkQualityEstimator provideNetworkQualityEstimator(Context context) {
+        return new NetworkQualityEstimator(context);
+    }
+
+    @Provides
+    @Singleton
+    NavigationPrefetcher provideNavigationPrefetcher(S1Service s1Service) {
+        return new NavigationPrefetcher(s1Service);
+    }
 
-        return builder.build();
+    @Provides
+    @Singleton
+    UiSnapshotStore provideUiSnapshotStore(Context context) {
+        return new UiSnapshotStore(context);
+    }
+
+    @Provides
+    @Singleton
+    PageSummaryCache providePageSummaryCache(S1Service s1Service, RequestScheduler requestScheduler) {
+        return new PageSummaryCache(s1Service, requestScheduler);
+    }
+
+    @Provides
+    @Singleton
+    PostFormPrefetcher providePostFormPrefetcher(S1Service s1Service, UserValidator userValidator, User user) {
+        return new PostFormPrefetcher(s1Service, userValidator, user);
+    }
+
+    @Provides
+    @Singleton
+    SearchResultCache provideSearchResultCache(S1Service s1Service, PostFormPrefetcher postFormPrefetcher,
+                                               User user, UserValidator userValidator,
+                                               NetworkQualityEstimator networkQualityEstimator,
+                                               RequestScheduler requestScheduler) {
+        return new SearchResultCache(s1Service, postFormPrefetcher, user, userValidator,
+                networkQualityEstimator, requestScheduler);
     }
 
     @Provides
     @Singleton
-    S1Service providerRetrofit(OkHttpClient okHttpClient) {
+    Outbox provideOutbox(Context context, S1Service s1Service, PostFormPrefetcher postFormPrefetcher,
+                         UserValidator userValidator, User user, EventBus eventBus,
+                         NetworkQualityEstimator networkQualityEstimator) {
+        return new Outbox(context, s1Service, postFormPrefetcher, userValidator, user, eventBus,
+                networkQualityEstimator);
+    }
+
+    @Provides
+    @Singleton
+    OkHttpClient providerOkHttpClient(CookieManager cookieManager, RequestScheduler requestScheduler,
+                                      NetworkQualityEstimator networkQualityEstimator) {
+        return requestScheduler.apiLane(newOkHttpClientBuilder(cookieManager, networkQualityEstimator))
+                .build();
+    }
+
+    @Provides
+    @Singleton
+    @Named(AppComponent.IMAGE_OK_HTTP_CLIENT)
+    OkHttpClient providerImageOkHttpClient(CookieManager cookieManager, RequestScheduler requestScheduler,
+                                           NetworkQualityEstimator networkQualityEstimator) {
+        return requestScheduler.imageLane(newOkHttpClientBuilder(cookieManager, networkQualityEstimator))
+                .build();
+    }
+
+    @Provides
+    @Singleton
+    ApiConverterFactory provideApiConverterFactory() {
+        return ApiConverterFactory.create();
+    }
+
+    @Provides
+    @Singleton
+    S1Service providerRetrofit(OkHttpClient okHttpClient, ApiConverterFactory apiConverterFactory) {
         return new Retrofit.Builder()
                 .client(okHttpClient)
                 .baseUrl(Api.BASE_API_URL)
                 .addConverterFactory(ScalarsConverterFactory.create())
-                .addConverterFactory(JacksonConverterFactory.create())
+                .addConverterFactory(apiConverterFactory)
                 .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
                 .build()
                 .create(S1Service.class);
@@ -116,8 +186,8 @@ final class AppModule {
 
     @Provides
     @Singleton
-    Wifi providerWifi() {
-        return new Wifi();
+    PageSizePolicy providePageSizePolicy(NetworkQualityEstimator networkQualityEstimator) {
+        return new PageSizePolicy(networkQualityEstimator);
     }
 
     @Provides
@@ -152,8 +222,14 @@ final class AppModule {
 
     @Provides
     @Singleton
-    DownloadPreferencesManager provideDownloadPreferencesManager(DownloadPreferencesRepository downloadPreferencesProvider, Wifi wifi) {
-        return new DownloadPreferencesManager(downloadPreferencesProvider, wifi);
+    DownloadPreferencesManager provideDownloadPreferencesManager(DownloadPreferencesRepository downloadPreferencesProvider, NetworkQualityEstimator networkQualityEstimator) {
+        return new DownloadPreferencesManager(downloadPreferencesProvider, networkQualityEstimator);
+    }
+
+    @Provides
+    @Singleton
+    AvatarRevalidator provideAvatarRevalidator(Context context, @Named(AppComponent.IMAGE_OK_HTTP_CLIENT) OkHttpClient okHttpClient, RequestScheduler requestScheduler, DownloadPreferencesManager downloadPreferencesManager) {
+        return new AvatarRevalidator(context, okHttpClient, requestScheduler, downloadPreferencesManager);
     }
 
     @Provides
@@ -167,4 +243,21 @@ final class AppModule {
     ReadProgressPreferencesManager provideReadProgressPreferencesManager(ReadProgressPreferencesRepository readProgressPreferencesRepository){
         return  new ReadProgressPreferencesManager(readProgressPreferencesRepository);
     }
+
+    private static OkHttpClient.Builder newOkHttpClientBuilder(CookieManager cookieManager,
+                                                               NetworkQualityEstimator networkQualityEstimator) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        builder.connectTimeout(17, TimeUnit.SECONDS);
+        builder.writeTimeout(17, TimeUnit.SECONDS);
+        builder.readTimeout(77, TimeUnit.SECONDS);
+        builder.retryOnConnectionFailure(true);
+        builder.cookieJar(new JavaNetCookieJar(cookieManager));
+        builder.addNetworkInterceptor(networkQualityEstimator.getInterceptor());
+        if (BuildConfig.DEBUG) {
+            HttpLoggingInterceptor httpLoggingInterceptor = new HttpLoggingInterceptor();
+            httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.HEADERS);
+            builder.interceptors().add(httpLoggingInterceptor);
+        }
+        return builder;
+    }
 }
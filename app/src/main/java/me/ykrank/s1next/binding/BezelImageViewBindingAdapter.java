@@ -18,6 +18,7 @@ import me.ykrank.s1next.data.api.model.Post;
 import me.ykrank.s1next.data.event.BlackListAddEvent;
 import me.ykrank.s1next.data.pref.DownloadPreferencesManager;
 import me.ykrank.s1next.view.activity.GalleryActivity;
+import me.ykrank.s1next.widget.AvatarRevalidator;
 import me.ykrank.s1next.widget.BezelImageView;
 import me.ykrank.s1next.widget.EventBus;
 
@@ -33,21 +34,21 @@ public final class BezelImageViewBindingAdapter {
     @BindingAdapter("user")
     public static void loadUserAvatar(BezelImageView bezelImageView, User user) {
         Context context = bezelImageView.getContext();
-        DownloadPreferencesManager downloadPreferencesManager = App.getAppComponent(context)
-                .getDownloadPreferencesManager();
         if (user.isLogged()) {
             // setup user's avatar
+            String url = Api.getAvatarMediumUrl(user.getUid());
+            AvatarRevalidator avatarRevalidator = App.getAppComponent(context).getAvatarRevalidator();
+            avatarRevalidator.revalidateIfNeeded(url);
             Glide.with(context)
-                    .load(Api.getAvatarMediumUrl(user.getUid()))
+                    .load(url)
                     .error(R.drawable.ic_drawer_avatar_placeholder)
-                    .signature(downloadPreferencesManager.getAvatarCacheInvalidationIntervalSignature())
+                    .signature(avatarRevalidator.getSignature(url))
                     .transform(new CenterCrop(Glide.get(context).getBitmapPool()))
                     .into(bezelImageView);
         } else {
             // setup default avatar
             Glide.with(context)
                     .load(R.drawable.ic_drawer_avatar_placeholder)
-                    .signature(downloadPreferencesManager.getAvatarCacheInvalidationIntervalSignature())
                     .transform(new CenterCrop(Glide.get(context).getBitmapPool()))
                     .into(bezelImageView);
         }
@@ -66,9 +67,12 @@ public final class BezelImageViewBindingAdapter {
             String url = downloadPreferencesManager.isHighResolutionAvatarsDownload()
                     ? Api.getAvatarMediumUrl(post.getAuthorId())
                     : Api.getAvatarSmallUrl(post.getAuthorId());
-            // show user's avatar
-            avatarDrawableRequestBuilder.signature(
-                    downloadPreferencesManager.getAvatarCacheInvalidationIntervalSignature())
+            // show user's avatar, the cached one is kept until the server
+            // tells us it has changed
+            AvatarRevalidator avatarRevalidator = App.getAppComponent(bezelImageView.getContext())
+                    .getAvatarRevalidator();
+            avatarRevalidator.revalidateIfNeeded(url);
+            avatarDrawableRequestBuilder.signature(avatarRevalidator.getSignature(url))
                     .load(url)
                     .into(bezelImageView);
 
@@ -1,7 +1,9 @@
 package me.ykrank.s1next.binding;
 
 import android.databinding.BindingAdapter;
+import android.graphics.drawable.Drawable;
 import android.support.annotation.Nullable;
+import android.util.DisplayMetrics;
 
 import com.bumptech.glide.DrawableRequestBuilder;
 import com.bumptech.glide.Glide;
@@ -10,9 +12,13 @@ import com.bumptech.glide.load.resource.drawable.GlideDrawable;
 import com.bumptech.glide.request.animation.GlideAnimation;
 import com.bumptech.glide.request.target.SimpleTarget;
 
+import java.io.File;
+
 import me.ykrank.s1next.R;
+import me.ykrank.s1next.util.RxJavaUtil;
 import me.ykrank.s1next.util.TransformationUtil;
 import me.ykrank.s1next.widget.PhotoView;
+import me.ykrank.s1next.widget.TiledBitmapDrawable;
 
 public final class PhotoViewBindingAdapter {
 
@@ -22,19 +28,79 @@ public final class PhotoViewBindingAdapter {
     public static void loadImage(PhotoView photoView, String url, @Nullable String thumbUrl) {
         photoView.setMaxInitialScale(1);
         photoView.enableImageTransforms(true);
+        photoView.setTag(R.id.tag_photo_url, url);
+
+        if (thumbUrl != null) {
+            Glide.with(photoView.getContext())
+                    .load(thumbUrl)
+                    .diskCacheStrategy(DiskCacheStrategy.SOURCE)
+                    .into(new SimpleTarget<GlideDrawable>() {
+
+                        @Override
+                        public void onResourceReady(GlideDrawable resource, GlideAnimation<? super GlideDrawable> glideAnimation) {
+                            if (isCurrentUrl(photoView, url) && !photoView.isPhotoBound()) {
+                                photoView.bindDrawable(resource);
+                            }
+                        }
+                    });
+        }
+
+        // download the source first to find out whether this image is too large
+        // to be drawn in one bitmap, if so, decode it in tiles
+        Glide.with(photoView.getContext())
+                .load(url)
+                .downloadOnly(new SimpleTarget<File>() {
+
+                    @Override
+                    public void onResourceReady(File resource, GlideAnimation<? super File> glideAnimation) {
+                        String path = resource.getAbsolutePath();
+                        int maxTextureSize = TransformationUtil.getGlMaxTextureSize();
+                        // the view may have not been laid out yet
+                        DisplayMetrics displayMetrics = photoView.getResources().getDisplayMetrics();
+                        int viewWidth = photoView.getWidth() > 0 ? photoView.getWidth()
+                                : displayMetrics.widthPixels;
+                        int viewHeight = photoView.getHeight() > 0 ? photoView.getHeight()
+                                : displayMetrics.heightPixels;
+                        RxJavaUtil.workWithUiResult(() -> {
+                            if (TiledBitmapDrawable.shouldUseTiles(path, maxTextureSize)) {
+                                return TiledBitmapDrawable.create(path, viewWidth, viewHeight,
+                                        maxTextureSize);
+                            }
+                            return null;
+                        }, drawable -> {
+                            if (!isCurrentUrl(photoView, url)) {
+                                if (drawable != null) {
+                                    drawable.recycle();
+                                }
+                            } else if (drawable != null) {
+                                photoView.bindDrawable(drawable);
+                            } else {
+                                loadBitmap(photoView, url, thumbUrl);
+                            }
+                        }, throwable -> loadBitmap(photoView, url, thumbUrl));
+                    }
+
+                    @Override
+                    public void onLoadFailed(Exception e, Drawable errorDrawable) {
+                        loadBitmap(photoView, url, thumbUrl);
+                    }
+                });
+    }
+
+    /**
+     * Loads the whole image into one bitmap which does not exceed the OpenGL texture size limit.
+     */
+    private static void loadBitmap(PhotoView photoView, String url, @Nullable String thumbUrl) {
+        if (!isCurrentUrl(photoView, url)) {
+            return;
+        }
 
         DrawableRequestBuilder<String> builder = Glide.with(photoView.getContext())
                 .load(url)
                 .diskCacheStrategy(DiskCacheStrategy.SOURCE)
                 .transform(new TransformationUtil.GlMaxTextureSizeBitmapTransformation(
                         photoView.getContext()));
-        if (thumbUrl != null) {
-            DrawableRequestBuilder<String> thumbnailRequest = Glide
-                    .with(photoView.getContext())
-                    .load(thumbUrl)
-                    .diskCacheStrategy(DiskCacheStrategy.SOURCE);
-            builder = builder.thumbnail(thumbnailRequest);
-        } else {
+        if (thumbUrl == null) {
             builder = builder.placeholder(android.R.color.white)
                     .error(R.drawable.ic_avatar_placeholder);
         }
@@ -43,6 +109,9 @@ public final class PhotoViewBindingAdapter {
 
             @Override
             public void onResourceReady(GlideDrawable resource, GlideAnimation<? super GlideDrawable> glideAnimation) {
+                if (!isCurrentUrl(photoView, url)) {
+                    return;
+                }
                 photoView.bindDrawable(resource);
                 // start animation if this image is a GIF
                 if (resource.isAnimated()) {
@@ -52,4 +121,11 @@ public final class PhotoViewBindingAdapter {
             }
         });
     }
+
+    /**
+     * Whether this view still shows this url, which is false after {@link PhotoView#clear()}.
+     */
+    private static boolean isCurrentUrl(PhotoView photoView, String url) {
+        return url != null && url.equals(photoView.getTag(R.id.tag_photo_url));
+    }
 }
@@ -117,6 +117,11 @@ public final class TextViewBindingAdapter {
 
     @BindingAdapter({"eventBus", "post"})
     public static void setCount(TextView textView, EventBus eventBus, Post post) {
+        if (post.isPending()) {
+            // it has no floor (and could not be quoted) until it is sent
+            textView.setText(R.string.outbox_pending_reply);
+            return;
+        }
         String text = "#" + post.getCount();
         // there is no need to post #1
         if ("1".equals(post.getCount())) {
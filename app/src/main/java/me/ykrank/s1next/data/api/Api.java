@@ -11,15 +11,23 @@ public final class Api {
     public static final String BASE_URL = "http://bbs.saraba1st.com/2b/";
     public static final String BASE_API_URL = "http://bbs.saraba1st.com/2b/api/mobile/";
 
+    /**
+     * Page sizes of the website, see {@link PageSizePolicy} for what we request.
+     */
     public static final int THREADS_PER_PAGE = 50;
     public static final int POSTS_PER_PAGE = 30;
 
     public static final int REPLY_NOTIFICATION_MAX_LENGTH = 100;
 
+    /**
+     * The {@code ordertype} of {@code viewthread}, newest posts first.
+     */
+    public static final int ORDER_TYPE_REVERSE = 1;
+
     static final String URL_FORUM = "index.php?module=forumindex";
     static final String URL_FAVOURITES = "index.php?module=myfavthread";
-    static final String URL_THREAD_LIST = "index.php?module=forumdisplay&tpp=" + THREADS_PER_PAGE;
-    static final String URL_POST_LIST = "index.php?module=viewthread&ppp=" + POSTS_PER_PAGE;
+    static final String URL_THREAD_LIST = "index.php?module=forumdisplay";
+    static final String URL_POST_LIST = "index.php?module=viewthread";
 
     static final String URL_QUOTE_POST_REDIRECT = "/2b/forum.php?mod=redirect&goto=findpost";
 
@@ -102,6 +110,30 @@ public final class Api {
         return url != null && url.startsWith(URL_USER_AVATAR_PREFIX);
     }
 
+    /**
+     * Reverses {@link #appendAvatarUrlWithUserId(String, String)}.
+     * <p>
+     * Example:
+     * http://bbs.saraba1st.com/2b/uc_server/data/avatar/000/12/34/56_avatar_middle.jpg -> 123456
+     *
+     * @return The user id, or {@code -1} if this is not a valid avatar URL.
+     */
+    public static int getAvatarUserId(String url) {
+        if (!isAvatarUrl(url)) {
+            return -1;
+        }
+        int end = url.indexOf("_avatar_", URL_USER_AVATAR_PREFIX.length());
+        if (end == -1) {
+            return -1;
+        }
+        String path = url.substring(URL_USER_AVATAR_PREFIX.length(), end).replace("/", "");
+        try {
+            return Integer.parseInt(path);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     public static String getFavouritesListUrlForBrowser(int pageNum) {
         return Uri.parse(URL_BROWSER_FAVOURITES).buildUpon()
                 .appendQueryParameter("page", String.valueOf(pageNum))
@@ -0,0 +1,175 @@
+package me.ykrank.s1next.data.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.io.CountingInputStream;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.ykrank.s1next.data.api.model.wrapper.FavouritesWrapper;
+import me.ykrank.s1next.data.api.model.wrapper.ForumGroupsWrapper;
+import me.ykrank.s1next.data.api.model.wrapper.PostsWrapper;
+import me.ykrank.s1next.data.api.model.wrapper.ResultWrapper;
+import me.ykrank.s1next.data.api.model.wrapper.ThreadsWrapper;
+import me.ykrank.s1next.util.L;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * A Jackson converter tuned for our API models (replaces
+ * {@link retrofit2.converter.jackson.JacksonConverterFactory}).
+ * <ul>
+ * <li>Features which our models never use are disabled, and the models of the hot
+ * response types don't auto-detect getters.</li>
+ * <li>One {@link ObjectReader} per response type is shared by all {@link S1Service} methods.</li>
+ * <li>The deserializers of the hot response types are built by {@link #prewarm()}
+ * before the first request, rather than by the first request.</li>
+ * <li>How long parsing takes is recorded per type, see {@link #dumpStats()}. Bodies are parsed
+ * as they are streamed, so the time includes reading the rest of the body from network.</li>
+ * </ul>
+ */
+public final class ApiConverterFactory extends Converter.Factory {
+
+    /**
+     * The wrappers of {@code forumindex}, {@code forumdisplay}, {@code viewthread},
+     * {@code myfavthread} and {@code sendreply}.
+     */
+    private static final Class<?>[] HOT_TYPES = {ForumGroupsWrapper.class, ThreadsWrapper.class,
+            PostsWrapper.class, FavouritesWrapper.class, ResultWrapper.class};
+
+    private final ObjectMapper mObjectMapper;
+
+    private final Map<Type, ObjectReader> mReaders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Type, ParseStats> mStats = new ConcurrentHashMap<>();
+
+    private ApiConverterFactory(ObjectMapper objectMapper) {
+        this.mObjectMapper = objectMapper;
+    }
+
+    public static ApiConverterFactory create() {
+        return new ApiConverterFactory(newObjectMapper());
+    }
+
+    private static ObjectMapper newObjectMapper() {
+        JsonFactory jsonFactory = new JsonFactory();
+        // field names are canonicalized already, interning them costs more than it saves
+        jsonFactory.disable(JsonFactory.Feature.INTERN_FIELD_NAMES);
+        jsonFactory.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+        ObjectMapper objectMapper = new ObjectMapper(jsonFactory);
+        // getter detection is only turned off (with @JsonAutoDetect) in the models
+        // of HOT_TYPES, which are annotated fields and plain setters
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return objectMapper;
+    }
+
+    /**
+     * Builds the deserializers of hot response types, this takes hundreds of
+     * milliseconds on a slow device. Should be called in background thread.
+     */
+    public void prewarm() {
+        for (Class<?> type : HOT_TYPES) {
+            try {
+                getReader(type);
+            } catch (RuntimeException e) {
+                L.e("Failed to prewarm " + type.getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the parse stats of each response type, each in one line.
+     */
+    public String dumpStats() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<Type, ParseStats> entry : mStats.entrySet()) {
+            builder.append(entry.getValue().toString(entry.getKey())).append('\n');
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations,
+                                                            Retrofit retrofit) {
+        ObjectReader reader = getReader(type);
+        mStats.putIfAbsent(type, new ParseStats());
+        return new ResponseBodyConverter<>(reader, mStats.get(type));
+    }
+
+    private ObjectReader getReader(Type type) {
+        ObjectReader reader = mReaders.get(type);
+        if (reader == null) {
+            JavaType javaType = mObjectMapper.getTypeFactory().constructType(type);
+            // readerFor() builds the root deserializer (and its children) eagerly
+            reader = mObjectMapper.readerFor(javaType);
+            mReaders.put(type, reader);
+        }
+        return reader;
+    }
+
+    private static final class ResponseBodyConverter<T> implements Converter<ResponseBody, T> {
+
+        private final ObjectReader mReader;
+        private final ParseStats mStats;
+
+        private ResponseBodyConverter(ObjectReader reader, ParseStats stats) {
+            this.mReader = reader;
+            this.mStats = stats;
+        }
+
+        @Override
+        public T convert(ResponseBody value) throws IOException {
+            try {
+                // Jackson detects the encoding (UTF-8 for our API) from the bytes
+                CountingInputStream inputStream = new CountingInputStream(value.byteStream());
+                long start = System.nanoTime();
+                T result = mReader.readValue(inputStream);
+                mStats.record(inputStream.getCount(), System.nanoTime() - start);
+                return result;
+            } finally {
+                value.close();
+            }
+        }
+    }
+
+    private static final class ParseStats {
+
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mTotalBytes = new AtomicLong();
+        private final AtomicLong mTotalNanos = new AtomicLong();
+        private final AtomicLong mMaxNanos = new AtomicLong();
+
+        private void record(long bytes, long nanos) {
+            mCount.incrementAndGet();
+            mTotalBytes.addAndGet(bytes);
+            mTotalNanos.addAndGet(nanos);
+            while (true) {
+                long max = mMaxNanos.get();
+                if (nanos <= max || mMaxNanos.compareAndSet(max, nanos)) {
+                    break;
+                }
+            }
+        }
+
+        private String toString(Type type) {
+            long count = mCount.get();
+            String name = type instanceof Class ? ((Class<?>) type).getSimpleName() : type.toString();
+            return String.format(Locale.US, "%s: parsed=%d, avg=%.1fms (max %.1fms), avg size=%dKB",
+                    name, count,
+                    count == 0 ? 0 : mTotalNanos.get() / 1e6 / count,
+                    mMaxNanos.get() / 1e6,
+                    count == 0 ? 0 : mTotalBytes.get() / 1024 / count);
+        }
+    }
+}
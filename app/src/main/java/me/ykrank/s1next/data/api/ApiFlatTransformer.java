@@ -29,9 +29,21 @@ public class ApiFlatTransformer {
     public static Observable<ResultWrapper> flatMappedWithAuthenticityToken(
             S1Service mS1Service, UserValidator mUserValidator, User mUser,
             Func1<String, Observable<ResultWrapper>> func) {
+        return flatMappedWithAuthenticityToken(mS1Service.refreshAuthenticityToken(),
+                mUserValidator, mUser, func);
+    }
+
+    /**
+     * Same as {@link #flatMappedWithAuthenticityToken(S1Service, UserValidator, User, Func1)}
+     * but gets the authenticity token from this {@link Observable}, which may be a shared one
+     * (see {@link me.ykrank.s1next.widget.PostFormPrefetcher#refreshAuthenticityToken()}).
+     */
+    public static Observable<ResultWrapper> flatMappedWithAuthenticityToken(
+            Observable<ResultWrapper> refreshAuthenticityToken, UserValidator mUserValidator,
+            User mUser, Func1<String, Observable<ResultWrapper>> func) {
         String authenticityToken = mUser.getAuthenticityToken();
         if (TextUtils.isEmpty(authenticityToken)) {
-            return mS1Service.refreshAuthenticityToken().flatMap(resultWrapper -> {
+            return refreshAuthenticityToken.flatMap(resultWrapper -> {
                 Account account = resultWrapper.getAccount();
                 // return the ResultWrapper if we cannot get the authenticity token
                 // (if account has expired or network error)
@@ -61,10 +73,21 @@ public class ApiFlatTransformer {
      * @return
      */
     public static Observable.Transformer<String, String> AuthenticityTokenTransformer(S1Service mS1Service, UserValidator mUserValidator) {
+        return AuthenticityTokenTransformer(Observable.defer(mS1Service::refreshAuthenticityToken),
+                mUserValidator);
+    }
+
+    /**
+     * Same as {@link #AuthenticityTokenTransformer(S1Service, UserValidator)} but refreshes
+     * the authenticity token by this {@link Observable}, which may be a shared one
+     * (see {@link me.ykrank.s1next.widget.PostFormPrefetcher#refreshAuthenticityToken()}).
+     */
+    public static Observable.Transformer<String, String> AuthenticityTokenTransformer(
+            Observable<ResultWrapper> refreshAuthenticityToken, UserValidator mUserValidator) {
         return old ->
                 old.flatMap(authenticityToken -> {
                     if (TextUtils.isEmpty(authenticityToken)) {
-                        return mS1Service.refreshAuthenticityToken().flatMap(resultWrapper -> {
+                        return refreshAuthenticityToken.flatMap(resultWrapper -> {
                             Account account = resultWrapper.getAccount();
                             // return error if we cannot get the authenticity token
                             // (if account has expired or network error)
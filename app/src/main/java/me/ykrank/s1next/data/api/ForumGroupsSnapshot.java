@@ -0,0 +1,228 @@
+package me.ykrank.s1next.data.api;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import me.ykrank.s1next.data.api.model.Forum;
+import me.ykrank.s1next.data.api.model.ForumCategoryByIds;
+import me.ykrank.s1next.data.api.model.collection.ForumGroups;
+import me.ykrank.s1next.util.L;
+
+/**
+ * Persists the last forum index (categories in order and each forum's post counts)
+ * so that {@link me.ykrank.s1next.view.fragment.ForumFragment} could render it
+ * on the first frame of a cold start, while revalidating it in background.
+ * <p>
+ * The snapshot is a few KB of JSON in the same shape as the API's {@code Variables},
+ * without account data. It is read with a streaming parser because
+ * {@link ApiConverterFactory} may not be prewarmed yet at that moment.
+ */
+public final class ForumGroupsSnapshot {
+
+    private static final String FILE_NAME = "forum_groups_snapshot.json";
+
+    /**
+     * Increase this if the format changes, old snapshots are ignored.
+     */
+    private static final int VERSION = 1;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ForumGroupsSnapshot() {}
+
+    /**
+     * Returns the snapshot saved last time, or {@code null} if there is none (or it's broken).
+     * This is fast enough to be called in main thread.
+     */
+    @Nullable
+    public static ForumGroups read(Context context) {
+        File file = getFile(context);
+        if (!file.exists()) {
+            return null;
+        }
+        JsonParser parser = null;
+        try {
+            parser = JSON_FACTORY.createParser(file);
+            return parse(parser);
+        } catch (IOException | RuntimeException e) {
+            L.e("Failed to read forum groups snapshot", e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(parser);
+        }
+    }
+
+    @WorkerThread
+    public static void write(Context context, ForumGroups forumGroups) {
+        File file = getFile(context);
+        File tmpFile = new File(file.getPath() + ".tmp");
+        JsonGenerator generator = null;
+        try {
+            generator = JSON_FACTORY.createGenerator(new FileOutputStream(tmpFile));
+            generate(generator, forumGroups);
+            generator.close();
+            generator = null;
+            // replace atomically so a half written snapshot is never read
+            if (!tmpFile.renameTo(file)) {
+                throw new FileNotFoundException("Failed to rename " + tmpFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            L.e("Failed to write forum groups snapshot", e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        } finally {
+            closeQuietly(generator);
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    private static void generate(JsonGenerator generator, ForumGroups forumGroups)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("version", VERSION);
+
+        generator.writeArrayFieldStart("catlist");
+        List<String> forumGroupNameList = forumGroups.getForumGroupNameList();
+        List<List<Forum>> forumGroupList = forumGroups.getForumGroupList();
+        for (int i = 0; i < forumGroupNameList.size(); i++) {
+            generator.writeStartObject();
+            generator.writeStringField("name", forumGroupNameList.get(i));
+            generator.writeArrayFieldStart("forums");
+            for (Forum forum : forumGroupList.get(i)) {
+                if (forum != null) {
+                    generator.writeNumber(Integer.parseInt(forum.getId()));
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("forumlist");
+        for (Forum forum : forumGroups.getForumList()) {
+            generator.writeStartObject();
+            generator.writeStringField("fid", forum.getId());
+            generator.writeStringField("name", forum.getName());
+            generator.writeNumberField("threads", forum.getThreads());
+            generator.writeNumberField("todayposts", forum.getTodayPosts());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
+
+    @Nullable
+    private static ForumGroups parse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        int version = 0;
+        List<ForumCategoryByIds> categories = new ArrayList<>();
+        List<Forum> forums = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "version":
+                    version = parser.getIntValue();
+                    break;
+                case "catlist":
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        categories.add(parseCategory(parser));
+                    }
+                    break;
+                case "forumlist":
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        forums.add(parseForum(parser));
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        if (version != VERSION || forums.isEmpty()) {
+            return null;
+        }
+        return new ForumGroups(categories, forums);
+    }
+
+    private static ForumCategoryByIds parseCategory(JsonParser parser) throws IOException {
+        ForumCategoryByIds category = new ForumCategoryByIds();
+        List<Integer> forumIds = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "name":
+                    category.setName(parser.getText());
+                    break;
+                case "forums":
+                    while (parser.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+                        forumIds.add(parser.getIntValue());
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        category.setForumIds(forumIds);
+        return category;
+    }
+
+    private static Forum parseForum(JsonParser parser) throws IOException {
+        Forum forum = new Forum();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "fid":
+                    forum.setId(parser.getText());
+                    break;
+                case "name":
+                    forum.setName(parser.getText());
+                    break;
+                case "threads":
+                    forum.setThreads(parser.getIntValue());
+                    break;
+                case "todayposts":
+                    forum.setTodayPosts(parser.getIntValue());
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return forum;
+    }
+}
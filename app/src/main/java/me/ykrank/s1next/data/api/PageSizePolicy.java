@@ -0,0 +1,74 @@
+package me.ykrank.s1next.data.api;
+
+import me.ykrank.s1next.widget.NetworkQualityEstimator;
+
+/**
+ * Decides how many posts (or threads) we request per page.
+ * <p>
+ * {@link Api#POSTS_PER_PAGE} and {@link Api#THREADS_PER_PAGE} are the page sizes of
+ * the website, so page numbers in thread links, quote redirects and
+ * {@link me.ykrank.s1next.data.db.dbmodel.ReadProgress} are always in those units.
+ * We use larger pages on fast unmetered networks (fewer but bigger requests,
+ * see {@link NetworkQualityEstimator#isFast()}), use the
+ * {@code convert*()} methods to translate between page sizes.
+ * <p>
+ * A list should keep the page size it started with, otherwise the pages
+ * which have been loaded would not line up.
+ */
+public final class PageSizePolicy {
+
+    /**
+     * Multiples of the website page sizes, so one of our pages covers whole website pages.
+     */
+    static final int POSTS_PER_PAGE_LARGE = Api.POSTS_PER_PAGE * 3;
+    static final int THREADS_PER_PAGE_LARGE = Api.THREADS_PER_PAGE * 2;
+
+    private final NetworkQualityEstimator mNetworkQualityEstimator;
+
+    public PageSizePolicy(NetworkQualityEstimator networkQualityEstimator) {
+        this.mNetworkQualityEstimator = networkQualityEstimator;
+    }
+
+    public int getPostsPerPage() {
+        return mNetworkQualityEstimator.isFast() ? POSTS_PER_PAGE_LARGE : Api.POSTS_PER_PAGE;
+    }
+
+    public int getThreadsPerPage() {
+        return mNetworkQualityEstimator.isFast() ? THREADS_PER_PAGE_LARGE : Api.THREADS_PER_PAGE;
+    }
+
+    /**
+     * Returns the 0-based index of the item in the whole list.
+     *
+     * @param page     1-based page number.
+     * @param position 0-based position in that page.
+     */
+    public static int toIndex(int page, int position, int perPage) {
+        return (Math.max(page, 1) - 1) * perPage + Math.max(position, 0);
+    }
+
+    /**
+     * Returns the 1-based page number of the item at this index.
+     */
+    public static int toPage(int index, int perPage) {
+        return index / perPage + 1;
+    }
+
+    /**
+     * Returns the 0-based position in its page of the item at this index.
+     */
+    public static int toPosition(int index, int perPage) {
+        return index % perPage;
+    }
+
+    /**
+     * Returns the page (in {@code toPerPage} units) which contains
+     * the first item of this page (in {@code fromPerPage} units).
+     */
+    public static int convertPage(int page, int fromPerPage, int toPerPage) {
+        if (fromPerPage == toPerPage) {
+            return page;
+        }
+        return toPage(toIndex(page, 0, fromPerPage), toPerPage);
+    }
+}
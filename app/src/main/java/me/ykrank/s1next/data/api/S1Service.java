@@ -5,12 +5,15 @@ import me.ykrank.s1next.data.api.model.wrapper.ForumGroupsWrapper;
 import me.ykrank.s1next.data.api.model.wrapper.PostsWrapper;
 import me.ykrank.s1next.data.api.model.wrapper.ResultWrapper;
 import me.ykrank.s1next.data.api.model.wrapper.ThreadsWrapper;
+import me.ykrank.s1next.widget.RequestPriority;
 import retrofit2.Response;
 import retrofit2.http.Field;
 import retrofit2.http.FormUrlEncoded;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.POST;
 import retrofit2.http.Query;
+import retrofit2.http.Url;
 import rx.Observable;
 
 public interface S1Service {
@@ -22,10 +25,25 @@ public interface S1Service {
     Observable<FavouritesWrapper> getFavouritesWrapper(@Query("page") int page);
 
     @GET(Api.URL_THREAD_LIST)
-    Observable<ThreadsWrapper> getThreadsWrapper(@Query("fid") String forumId, @Query("page") int page);
+    Observable<ThreadsWrapper> getThreadsWrapper(@Query("fid") String forumId, @Query("page") int page,
+                                                 @Query("tpp") int threadsPerPage);
 
+    /**
+     * @param authorId  Only posts of this author if not null.
+     * @param orderType {@link Api#ORDER_TYPE_REVERSE} for newest posts first, or null for default order.
+     */
     @GET(Api.URL_POST_LIST)
-    Observable<PostsWrapper> getPostsWrapper(@Query("tid") String threadId, @Query("page") int page);
+    Observable<PostsWrapper> getPostsWrapper(@Query("tid") String threadId, @Query("page") int page,
+                                             @Query("ppp") int postsPerPage, @Query("authorid") String authorId,
+                                             @Query("ordertype") Integer orderType);
+
+    /**
+     * @param priority The name of a {@link RequestPriority}.
+     */
+    @GET(Api.URL_POST_LIST)
+    Observable<PostsWrapper> getPostsWrapper(@Header(RequestPriority.HEADER_NAME) String priority,
+                                             @Query("tid") String threadId, @Query("page") int page,
+                                             @Query("ppp") int postsPerPage);
 
     @GET(Api.URL_QUOTE_POST_REDIRECT)
     Observable<Response<Void>> getQuotePostResponseBody(@Query("ptid") String threadId, @Query("pid") String quotePostId);
@@ -68,4 +86,10 @@ public interface S1Service {
     @FormUrlEncoded
     @POST(Api.URL_SEARCH_FORUM)
     Observable<String> searchForum(@Field("formhash") String authenticityToken, @Field("searchsubmit") String searchSubmit, @Field("srchtxt") String text);
+
+    /**
+     * Another page of a search, see {@link me.ykrank.s1next.data.api.model.wrapper.SearchWrapper#getHref()}.
+     */
+    @GET
+    Observable<String> getSearchResultPage(@Header(RequestPriority.HEADER_NAME) String priority, @Url String url);
 }
@@ -1,5 +1,7 @@
 package me.ykrank.s1next.data.api.model;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
@@ -7,6 +9,8 @@ import com.google.common.base.Objects;
 import org.apache.commons.lang3.StringEscapeUtils;
 
 @SuppressWarnings("UnusedDeclaration")
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Favourite {
 
@@ -16,6 +20,16 @@ public final class Favourite {
     @JsonProperty("title")
     private String title;
 
+    @JsonProperty("replies")
+    private int replies;
+
+    /**
+     * How many replies the user hasn't seen,
+     * see {@link me.ykrank.s1next.data.db.FavouriteMirrorDbWrapper}.
+     */
+    @JsonIgnore
+    private int newReplies;
+
     public String getId() {
         return id;
     }
@@ -33,17 +47,35 @@ public final class Favourite {
         this.title = StringEscapeUtils.unescapeXml(title);
     }
 
+    public int getReplies() {
+        return replies;
+    }
+
+    public void setReplies(int replies) {
+        this.replies = replies;
+    }
+
+    public int getNewReplies() {
+        return newReplies;
+    }
+
+    public void setNewReplies(int newReplies) {
+        this.newReplies = newReplies;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Favourite favourite = (Favourite) o;
-        return Objects.equal(id, favourite.id) &&
+        return Objects.equal(replies, favourite.replies) &&
+                Objects.equal(newReplies, favourite.newReplies) &&
+                Objects.equal(id, favourite.id) &&
                 Objects.equal(title, favourite.title);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(id, title);
+        return Objects.hashCode(id, title, replies, newReplies);
     }
 }
@@ -3,6 +3,7 @@ package me.ykrank.s1next.data.api.model;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
@@ -12,6 +13,8 @@ import org.apache.commons.lang3.StringEscapeUtils;
 import me.ykrank.s1next.data.SameItem;
 
 @SuppressWarnings("UnusedDeclaration")
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Forum implements Parcelable, SameItem {
 
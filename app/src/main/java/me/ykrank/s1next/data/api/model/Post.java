@@ -4,12 +4,18 @@ import android.graphics.Color;
 import android.support.annotation.Nullable;
 import android.support.v4.util.SimpleArrayMap;
 
-import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.google.common.base.Objects;
 
+import java.io.IOException;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -22,6 +28,8 @@ import me.ykrank.s1next.data.db.dbmodel.BlackList;
 import me.ykrank.s1next.util.L;
 
 @SuppressWarnings("UnusedDeclaration")
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Post implements Cloneable, SameItem {
     private static final String TAG = Post.class.getSimpleName();
@@ -49,6 +57,12 @@ public final class Post implements Cloneable, SameItem {
 
     private boolean hide = false;
 
+    /**
+     * Whether this is a reply of current user which is waiting in {@link me.ykrank.s1next.widget.Outbox}.
+     */
+    @JsonIgnore
+    private boolean pending = false;
+
     public Post() {
     }
 
@@ -132,6 +146,14 @@ public final class Post implements Cloneable, SameItem {
         this.hide = hide;
     }
 
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -145,7 +167,8 @@ public final class Post implements Cloneable, SameItem {
                 Objects.equal(reply, post.reply) &&
                 Objects.equal(count, post.count) &&
                 Objects.equal(attachmentMap, post.attachmentMap) &&
-                Objects.equal(hide, post.hide);
+                Objects.equal(hide, post.hide) &&
+                Objects.equal(pending, post.pending);
     }
 
     @Override
@@ -367,15 +390,16 @@ public final class Post implements Cloneable, SameItem {
         COLOR_NAME_MAP.put("white", "#FFFFFF");
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
+    /**
+     * Deserialized by {@link Deserializer} rather than a reflective {@code @JsonCreator},
+     * there are many attachments in a page.
+     */
+    @JsonDeserialize(using = Attachment.Deserializer.class)
     public static final class Attachment {
 
-        @JsonIgnore
         private final String url;
 
-        @JsonCreator
-        public Attachment(@JsonProperty("url") String urlPrefix,
-                          @JsonProperty("attachment") String urlSuffix) {
+        public Attachment(String urlPrefix, String urlSuffix) {
             this.url = urlPrefix + urlSuffix;
         }
 
@@ -395,5 +419,33 @@ public final class Post implements Cloneable, SameItem {
         public int hashCode() {
             return Objects.hashCode(url);
         }
+
+        public static final class Deserializer extends StdDeserializer<Attachment> {
+
+            public Deserializer() {
+                super(Attachment.class);
+            }
+
+            @Override
+            public Attachment deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+                String urlPrefix = null, urlSuffix = null;
+                JsonToken token = p.getCurrentToken();
+                if (token == JsonToken.START_OBJECT) {
+                    token = p.nextToken();
+                }
+                for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+                    String name = p.getCurrentName();
+                    JsonToken value = p.nextToken();
+                    if ("url".equals(name) && value.isScalarValue()) {
+                        urlPrefix = p.getValueAsString();
+                    } else if ("attachment".equals(name) && value.isScalarValue()) {
+                        urlSuffix = p.getValueAsString();
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                return new Attachment(urlPrefix, urlSuffix);
+            }
+        }
     }
 }
@@ -1,5 +1,6 @@
 package me.ykrank.s1next.data.api.model;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
@@ -7,6 +8,8 @@ import com.google.common.base.Objects;
 import me.ykrank.s1next.data.api.DiscuzMessageFormatter;
 
 @SuppressWarnings("UnusedDeclaration")
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Result {
 
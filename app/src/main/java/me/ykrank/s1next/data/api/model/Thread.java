@@ -3,6 +3,7 @@ package me.ykrank.s1next.data.api.model;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
@@ -16,6 +17,8 @@ import me.ykrank.s1next.util.L;
  * Ambiguity in naming due to {@link java.lang.Thread}.
  */
 @SuppressWarnings("UnusedDeclaration")
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Thread implements Parcelable, Cloneable, SameItem {
     private static final String TAG = Thread.class.getSimpleName();
@@ -181,6 +184,10 @@ public final class Thread implements Parcelable, Cloneable, SameItem {
                 Objects.equal(authorid, thread.authorid);
     }
 
+    @JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+
+            isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static final class ThreadListInfo {
 
@@ -1,5 +1,6 @@
 package me.ykrank.s1next.data.api.model.collection;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
@@ -10,6 +11,8 @@ import me.ykrank.s1next.data.api.model.Account;
 import me.ykrank.s1next.data.api.model.Favourite;
 
 @SuppressWarnings("UnusedDeclaration")
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Favourites extends Account {
 
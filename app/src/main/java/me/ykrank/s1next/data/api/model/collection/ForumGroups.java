@@ -2,6 +2,7 @@ package me.ykrank.s1next.data.api.model.collection;
 
 import android.util.SparseArray;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -16,6 +17,10 @@ import me.ykrank.s1next.data.api.model.Account;
 import me.ykrank.s1next.data.api.model.Forum;
 import me.ykrank.s1next.data.api.model.ForumCategoryByIds;
 
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class ForumGroups extends Account {
 
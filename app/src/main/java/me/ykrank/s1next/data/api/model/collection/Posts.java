@@ -3,14 +3,19 @@ package me.ykrank.s1next.data.api.model.collection;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import com.fasterxml.jackson.annotation.JsonCreator;
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.google.common.base.Objects;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,10 +23,13 @@ import me.ykrank.s1next.data.api.model.Account;
 import me.ykrank.s1next.data.api.model.Post;
 import me.ykrank.s1next.data.api.model.Thread;
 import me.ykrank.s1next.data.db.BlackListDbWrapper;
+import me.ykrank.s1next.data.db.ContentFilterDbWrapper;
 import me.ykrank.s1next.data.db.dbmodel.BlackList;
 import me.ykrank.s1next.util.StringUtil;
 
 @SuppressWarnings("UnusedDeclaration")
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Posts extends Account {
 
@@ -65,10 +73,17 @@ public final class Posts extends Account {
         return posts;
     }
     
+    /**
+     * Filters this post by its author ({@link BlackList}) and its content
+     * ({@link me.ykrank.s1next.data.db.dbmodel.ContentFilter}), the stricter one wins.
+     */
     public static Post getFilterPost(final Post post){
         Post nPost = post;
         BlackListDbWrapper blackListWrapper = BlackListDbWrapper.getInstance();
-        switch (blackListWrapper.getPostFlag(Integer.valueOf(post.getAuthorId()), post.getAuthorName())){
+        int flag = Math.max(
+                blackListWrapper.getPostFlag(Integer.valueOf(post.getAuthorId()), post.getAuthorName()),
+                ContentFilterDbWrapper.getInstance().getPostFlag(post.getReply()));
+        switch (flag){
             case BlackList.DEL_POST:
                 nPost = null;
                 break;
@@ -108,6 +123,10 @@ public final class Posts extends Account {
         return Objects.hashCode(super.hashCode(), postListInfo, threadAttachment, postList);
     }
 
+    @JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+
+            isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static final class ThreadAttachment {
 
@@ -147,7 +166,10 @@ public final class Posts extends Account {
             return Objects.hashCode(title, infoList);
         }
 
-        @JsonIgnoreProperties(ignoreUnknown = true)
+        /**
+         * Deserialized by {@link Deserializer} rather than a reflective {@code @JsonCreator}.
+         */
+        @JsonDeserialize(using = Info.Deserializer.class)
         public static final class Info implements Parcelable {
 
             public static final Parcelable.Creator<Info> CREATOR = new Parcelable.Creator<Info>() {
@@ -163,17 +185,11 @@ public final class Posts extends Account {
                 }
             };
 
-            @JsonIgnore
             private final String label;
 
-            @JsonIgnore
             private final String value;
 
-            @JsonCreator
-            @SuppressWarnings("UnusedDeclaration")
-            public Info(@JsonProperty("title") String label,
-                        @JsonProperty("value") String value,
-                        @JsonProperty("unit") String unit) {
+            public Info(String label, String value, String unit) {
                 this.label = label;
                 this.value = StringUtil.unescapeNonBreakingSpace(value)
                         + StringUtils.defaultString(unit);
@@ -216,6 +232,41 @@ public final class Posts extends Account {
                 dest.writeString(label);
                 dest.writeString(value);
             }
+
+            public static final class Deserializer extends StdDeserializer<Info> {
+
+                public Deserializer() {
+                    super(Info.class);
+                }
+
+                @Override
+                public Info deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+                    String label = null, value = null, unit = null;
+                    JsonToken token = p.getCurrentToken();
+                    if (token == JsonToken.START_OBJECT) {
+                        token = p.nextToken();
+                    }
+                    for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+                        String name = p.getCurrentName();
+                        if (!p.nextToken().isScalarValue()) {
+                            p.skipChildren();
+                            continue;
+                        }
+                        switch (name) {
+                            case "title":
+                                label = p.getValueAsString();
+                                break;
+                            case "value":
+                                value = p.getValueAsString();
+                                break;
+                            case "unit":
+                                unit = p.getValueAsString();
+                                break;
+                        }
+                    }
+                    return new Info(label, value, unit);
+                }
+            }
         }
     }
 }
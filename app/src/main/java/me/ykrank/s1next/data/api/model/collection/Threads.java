@@ -1,5 +1,6 @@
 package me.ykrank.s1next.data.api.model.collection;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
@@ -11,9 +12,12 @@ import me.ykrank.s1next.data.api.model.Account;
 import me.ykrank.s1next.data.api.model.Forum;
 import me.ykrank.s1next.data.api.model.Thread;
 import me.ykrank.s1next.data.db.BlackListDbWrapper;
+import me.ykrank.s1next.data.db.ContentFilterDbWrapper;
 import me.ykrank.s1next.data.db.dbmodel.BlackList;
 
 @SuppressWarnings("UnusedDeclaration")
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Threads extends Account {
 
@@ -49,10 +53,17 @@ public final class Threads extends Account {
         return threads;
     }
 
+    /**
+     * Filters this thread by its author ({@link BlackList}) and its title
+     * ({@link me.ykrank.s1next.data.db.dbmodel.ContentFilter}), the stricter one wins.
+     */
     public static Thread getFilterThread(final Thread oThread) {
         Thread nThread = oThread;
         BlackListDbWrapper blackListWrapper = BlackListDbWrapper.getInstance();
-        switch (blackListWrapper.getForumFlag(oThread.getAuthorid(), oThread.getAuthor())){
+        int flag = Math.max(
+                blackListWrapper.getForumFlag(oThread.getAuthorid(), oThread.getAuthor()),
+                ContentFilterDbWrapper.getInstance().getForumFlag(oThread.getTitle()));
+        switch (flag){
             case BlackList.DEL_FORUM:
                 nThread = null;
                 break;
@@ -1,5 +1,6 @@
 package me.ykrank.s1next.data.api.model.wrapper;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
@@ -8,6 +9,8 @@ import me.ykrank.s1next.data.api.model.Result;
 import me.ykrank.s1next.data.api.model.collection.Favourites;
 
 @SuppressWarnings("UnusedDeclaration")
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class FavouritesWrapper {
 
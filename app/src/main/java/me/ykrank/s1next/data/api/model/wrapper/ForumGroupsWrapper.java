@@ -1,11 +1,16 @@
 package me.ykrank.s1next.data.api.model.wrapper;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
 
 import me.ykrank.s1next.data.api.model.collection.ForumGroups;
 
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class ForumGroupsWrapper {
 
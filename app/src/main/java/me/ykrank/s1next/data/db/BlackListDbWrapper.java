@@ -11,6 +11,7 @@ import com.activeandroid.query.Select;
 import java.util.List;
 
 import me.ykrank.s1next.data.db.dbmodel.BlackList;
+import me.ykrank.s1next.widget.AppStartup;
 
 /**
  * 对黑名单数据库的操作包装
@@ -22,6 +23,8 @@ public class BlackListDbWrapper {
     private BlackListDbWrapper(){}
     
     public static BlackListDbWrapper getInstance(){
+        // ActiveAndroid is initialized in background during app startup
+        AppStartup.await(AppStartup.TASK_DATABASE);
         if (blackListWrapper == null) blackListWrapper = new BlackListDbWrapper();
         return  blackListWrapper;
     }
@@ -0,0 +1,94 @@
+package me.ykrank.s1next.data.db;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.activeandroid.ActiveAndroid;
+import com.activeandroid.query.Select;
+
+import java.util.List;
+
+import me.ykrank.s1next.data.db.dbmodel.BlackList;
+import me.ykrank.s1next.data.db.dbmodel.ContentFilter;
+import me.ykrank.s1next.widget.AppStartup;
+import me.ykrank.s1next.widget.ContentFilterMatcher;
+
+/**
+ * 对关键词屏蔽数据库的操作包装
+ * 所有规则同时保存在{@link ContentFilterMatcher}中，增删规则时同步更新
+ */
+public class ContentFilterDbWrapper {
+    private static volatile ContentFilterDbWrapper dbWrapper;
+
+    private final ContentFilterMatcher mMatcher = new ContentFilterMatcher();
+
+    private ContentFilterDbWrapper() {
+        for (ContentFilter filter : getAllContentFilters()) {
+            mMatcher.add(filter);
+        }
+    }
+
+    /**
+     * Called for every post in parse threads, so only the first call
+     * (which loads all the rules) is synchronized.
+     */
+    public static ContentFilterDbWrapper getInstance() {
+        ContentFilterDbWrapper wrapper = dbWrapper;
+        if (wrapper == null) {
+            synchronized (ContentFilterDbWrapper.class) {
+                // ActiveAndroid is initialized in background during app startup
+                AppStartup.await(AppStartup.TASK_DATABASE);
+                if (dbWrapper == null) dbWrapper = new ContentFilterDbWrapper();
+                wrapper = dbWrapper;
+            }
+        }
+        return wrapper;
+    }
+
+    public List<ContentFilter> getAllContentFilters() {
+        return new Select().from(ContentFilter.class)
+                .orderBy("Timestamp")
+                .execute();
+    }
+
+    public ContentFilter getWithWord(String word) {
+        return new Select().from(ContentFilter.class)
+                .where("Word = ?", word)
+                .executeSingle();
+    }
+
+    public void saveContentFilter(@NonNull ContentFilter filter) {
+        ContentFilter oFilter = getWithWord(filter.word);
+        if (oFilter == null) {
+            filter.save();
+        } else {
+            mMatcher.remove(oFilter);
+            oFilter.copyFrom(filter);
+            oFilter.save();
+        }
+        mMatcher.add(filter);
+    }
+
+    public void delContentFilters(List<ContentFilter> filters) {
+        ActiveAndroid.beginTransaction();
+        try {
+            for (ContentFilter filter : filters) {
+                filter.delete();
+                mMatcher.remove(filter);
+            }
+            ActiveAndroid.setTransactionSuccessful();
+        } finally {
+            ActiveAndroid.endTransaction();
+        }
+    }
+
+    @BlackList.PostFLag
+    public int getPostFlag(@Nullable String reply) {
+        return mMatcher.getPostFlag(reply);
+    }
+
+    @BlackList.ForumFLag
+    public int getForumFlag(@Nullable String title) {
+        return mMatcher.getForumFlag(title);
+    }
+}
@@ -0,0 +1,149 @@
+package me.ykrank.s1next.data.db;
+
+import com.activeandroid.ActiveAndroid;
+import com.activeandroid.query.Delete;
+import com.activeandroid.query.Select;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import me.ykrank.s1next.data.api.model.Favourite;
+import me.ykrank.s1next.data.db.dbmodel.FavouriteMirror;
+import me.ykrank.s1next.widget.AppStartup;
+
+/**
+ * 对收藏镜像数据库的操作包装
+ * 同步时只写入有变化的记录，每个用户的记录是分开的
+ */
+public class FavouriteMirrorDbWrapper {
+    private static FavouriteMirrorDbWrapper dbWrapper;
+
+    private FavouriteMirrorDbWrapper() {}
+
+    public static FavouriteMirrorDbWrapper getInstance() {
+        // ActiveAndroid is initialized in background during app startup
+        AppStartup.await(AppStartup.TASK_DATABASE);
+        if (dbWrapper == null) dbWrapper = new FavouriteMirrorDbWrapper();
+        return dbWrapper;
+    }
+
+    public FavouriteMirror getWithThreadId(String uid, String threadId) {
+        return new Select().from(FavouriteMirror.class)
+                .where("Uid = ? AND ThreadId = ?", uid, threadId)
+                .executeSingle();
+    }
+
+    /**
+     * 获取镜像中某一页的收藏，新回复数已设置
+     */
+    public List<Favourite> getFavourites(String uid, int page) {
+        List<FavouriteMirror> mirrors = new Select().from(FavouriteMirror.class)
+                .where("Uid = ? AND Page = ?", uid, page)
+                .orderBy("Position")
+                .execute();
+        List<Favourite> favourites = new ArrayList<>(mirrors.size());
+        for (FavouriteMirror mirror : mirrors) {
+            Favourite favourite = new Favourite();
+            favourite.setId(mirror.threadId);
+            favourite.setTitle(mirror.title);
+            favourite.setReplies(mirror.replies);
+            favourite.setNewReplies(mirror.getNewReplies());
+            favourites.add(favourite);
+        }
+        return favourites;
+    }
+
+    /**
+     * 用服务器返回的一页收藏更新镜像，并设置每个收藏的新回复数
+     * 新收藏以当前回复数为已读，只有回复数、标题或位置变化的记录才会写入
+     * 镜像中原来在这一页、但服务器没有返回的记录（已取消收藏）会被删除
+     *
+     * @return 回复数有变化的收藏数
+     */
+    public int mergeFavourites(String uid, int page, List<Favourite> favourites) {
+        int changed = 0;
+        Set<String> threadIds = new HashSet<>();
+        ActiveAndroid.beginTransaction();
+        try {
+            for (int i = 0; i < favourites.size(); i++) {
+                Favourite favourite = favourites.get(i);
+                threadIds.add(favourite.getId());
+                FavouriteMirror mirror = getWithThreadId(uid, favourite.getId());
+                if (mirror == null) {
+                    mirror = new FavouriteMirror();
+                    mirror.uid = uid;
+                    mirror.threadId = favourite.getId();
+                    mirror.seenReplies = favourite.getReplies();
+                } else if (mirror.replies == favourite.getReplies()
+                        && mirror.page == page && mirror.position == i
+                        && mirror.title != null && mirror.title.equals(favourite.getTitle())) {
+                    favourite.setNewReplies(mirror.getNewReplies());
+                    continue;
+                } else if (mirror.replies != favourite.getReplies()) {
+                    changed++;
+                }
+                mirror.title = favourite.getTitle();
+                mirror.page = page;
+                mirror.position = i;
+                mirror.replies = favourite.getReplies();
+                mirror.save();
+                favourite.setNewReplies(mirror.getNewReplies());
+            }
+
+            List<FavouriteMirror> mirrors = new Select().from(FavouriteMirror.class)
+                    .where("Uid = ? AND Page = ?", uid, page)
+                    .execute();
+            for (FavouriteMirror mirror : mirrors) {
+                if (!threadIds.contains(mirror.threadId)) {
+                    mirror.delete();
+                }
+            }
+            ActiveAndroid.setTransactionSuccessful();
+        } finally {
+            ActiveAndroid.endTransaction();
+        }
+        return changed;
+    }
+
+    /**
+     * 删除已不在收藏中的记录，只在完整同步所有收藏页之后调用
+     */
+    public void retainFavourites(String uid, Set<String> threadIds) {
+        List<FavouriteMirror> mirrors = new Select().from(FavouriteMirror.class)
+                .where("Uid = ?", uid)
+                .execute();
+        ActiveAndroid.beginTransaction();
+        try {
+            for (FavouriteMirror mirror : mirrors) {
+                if (!threadIds.contains(mirror.threadId)) {
+                    mirror.delete();
+                }
+            }
+            ActiveAndroid.setTransactionSuccessful();
+        } finally {
+            ActiveAndroid.endTransaction();
+        }
+    }
+
+    /**
+     * 删除收藏页数以外的记录（收藏变少之后留下的页）
+     */
+    public void deletePagesAfter(String uid, int lastPage) {
+        new Delete().from(FavouriteMirror.class)
+                .where("Uid = ? AND Page > ?", uid, lastPage)
+                .execute();
+    }
+
+    /**
+     * 用户打开了这个主题，新回复都已看过
+     */
+    public void markSeen(String uid, String threadId) {
+        FavouriteMirror mirror = getWithThreadId(uid, threadId);
+        if (mirror != null && mirror.seenReplies != mirror.replies) {
+            mirror.seenReplies = mirror.replies;
+            mirror.save();
+        }
+    }
+}
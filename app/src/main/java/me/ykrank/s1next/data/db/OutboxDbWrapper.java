@@ -0,0 +1,44 @@
+package me.ykrank.s1next.data.db;
+
+import com.activeandroid.query.Select;
+
+import java.util.List;
+
+import me.ykrank.s1next.data.db.dbmodel.OutboxItem;
+import me.ykrank.s1next.widget.AppStartup;
+
+/**
+ * 对待发送队列数据库的操作包装
+ * 只在数据库线程中调用，见 {@link me.ykrank.s1next.widget.Outbox}
+ */
+public class OutboxDbWrapper {
+    private static OutboxDbWrapper dbWrapper;
+
+    private OutboxDbWrapper() {}
+
+    public static OutboxDbWrapper getInstance() {
+        // ActiveAndroid is initialized in background during app startup
+        AppStartup.await(AppStartup.TASK_DATABASE);
+        if (dbWrapper == null) dbWrapper = new OutboxDbWrapper();
+        return dbWrapper;
+    }
+
+    /**
+     * 按加入队列的顺序获取所有待发送项
+     */
+    public List<OutboxItem> getAll() {
+        return new Select().from(OutboxItem.class)
+                .orderBy("Timestamp")
+                .execute();
+    }
+
+    public void save(OutboxItem item) {
+        item.save();
+    }
+
+    public void delete(OutboxItem item) {
+        if (item.getId() != null) {
+            item.delete();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import android.support.annotation.NonNull;
 import com.activeandroid.query.Select;
 
 import me.ykrank.s1next.data.db.dbmodel.ReadProgress;
+import me.ykrank.s1next.widget.AppStartup;
 
 /**
  * 对黑名单数据库的操作包装
@@ -16,6 +17,8 @@ public class ReadProgressDbWrapper {
     private ReadProgressDbWrapper(){}
     
     public static ReadProgressDbWrapper getInstance(){
+        // ActiveAndroid is initialized in background during app startup
+        AppStartup.await(AppStartup.TASK_DATABASE);
         if (dbWrapper == null) dbWrapper = new ReadProgressDbWrapper();
         return dbWrapper;
     }
@@ -0,0 +1,76 @@
+package me.ykrank.s1next.data.db.dbmodel;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.Table;
+
+/**
+ * 关键词屏蔽
+ * 匹配主题标题和回复内容，屏蔽状态同{@link BlackList}
+ */
+@Table(name = "ContentFilter")
+public class ContentFilter extends Model {
+
+    /**
+     * 关键词，或者正则表达式
+     */
+    @Column(name = "Word", unique = true, onUniqueConflict = Column.ConflictAction.REPLACE)
+    public String word;
+
+    /**
+     * {@link #word}是否为正则表达式
+     */
+    @Column(name = "Regex")
+    public boolean regex;
+
+    /**
+     * 回复的屏蔽状态
+     */
+    @Column(name = "Post")
+    @BlackList.PostFLag
+    public int post = BlackList.NORMAL;
+
+    /**
+     * 主题的屏蔽状态
+     */
+    @Column(name = "Forum")
+    @BlackList.ForumFLag
+    public int forum = BlackList.NORMAL;
+
+    /**
+     * 添加时的时间
+     */
+    @Column(name = "Timestamp")
+    public long timestamp;
+
+    public ContentFilter() {
+        super();
+    }
+
+    public ContentFilter(String word, boolean regex, @BlackList.PostFLag int post, @BlackList.ForumFLag int forum) {
+        super();
+        this.word = word;
+        this.regex = regex;
+        this.post = post;
+        this.forum = forum;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public void copyFrom(ContentFilter filter) {
+        this.word = filter.word;
+        this.regex = filter.regex;
+        this.post = filter.post;
+        this.forum = filter.forum;
+        this.timestamp = filter.timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentFilter{" +
+                "word='" + word + '\'' +
+                ", regex=" + regex +
+                ", post=" + post +
+                ", forum=" + forum +
+                '}';
+    }
+}
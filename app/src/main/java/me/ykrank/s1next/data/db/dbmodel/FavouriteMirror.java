@@ -0,0 +1,66 @@
+package me.ykrank.s1next.data.db.dbmodel;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.Table;
+
+/**
+ * 收藏主题的本地镜像
+ * 记录回复数和用户已看过的回复数，用于离线计算新回复数
+ * 只是缓存，表结构改变时可在assets/migrations中重建此表
+ */
+@Table(name = "FavouriteMirror")
+public class FavouriteMirror extends Model {
+
+    /**
+     * 收藏所属的用户id
+     */
+    @Column(name = "Uid", uniqueGroups = {"uid_thread"},
+            onUniqueConflicts = {Column.ConflictAction.REPLACE})
+    public String uid;
+
+    /**
+     * 主题id
+     */
+    @Column(name = "ThreadId", uniqueGroups = {"uid_thread"},
+            onUniqueConflicts = {Column.ConflictAction.REPLACE})
+    public String threadId;
+
+    /**
+     * 主题标题
+     */
+    @Column(name = "Title")
+    public String title;
+
+    /**
+     * 所在收藏页（从1开始）
+     */
+    @Column(name = "Page")
+    public int page;
+
+    /**
+     * 在所在收藏页中的位置（从0开始）
+     */
+    @Column(name = "Position")
+    public int position;
+
+    /**
+     * 最近一次同步时的回复数
+     */
+    @Column(name = "Replies")
+    public int replies;
+
+    /**
+     * 用户上次打开主题时的回复数
+     */
+    @Column(name = "SeenReplies")
+    public int seenReplies;
+
+    public FavouriteMirror() {
+        super();
+    }
+
+    public int getNewReplies() {
+        return Math.max(0, replies - seenReplies);
+    }
+}
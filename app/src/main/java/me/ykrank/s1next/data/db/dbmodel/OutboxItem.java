@@ -0,0 +1,72 @@
+package me.ykrank.s1next.data.db.dbmodel;
+
+import com.activeandroid.Model;
+import com.activeandroid.annotation.Column;
+import com.activeandroid.annotation.Table;
+
+/**
+ * 因网络错误未能发送、等待重新发送的写操作（回复、收藏）
+ */
+@Table(name = "OutboxItem")
+public class OutboxItem extends Model {
+
+    public static final int TYPE_REPLY = 1;
+    public static final int TYPE_FAVOURITE = 2;
+
+    /**
+     * 操作类型，{@link #TYPE_REPLY} 或 {@link #TYPE_FAVOURITE}
+     */
+    @Column(name = "Type")
+    public int type;
+
+    /**
+     * 主题id
+     */
+    @Column(name = "ThreadId")
+    public String threadId;
+
+    /**
+     * 引用的回复id，不引用时为空
+     */
+    @Column(name = "QuotePostId")
+    public String quotePostId;
+
+    /**
+     * 回复内容或收藏备注
+     */
+    @Column(name = "Message")
+    public String message;
+
+    /**
+     * 加入队列的时间（毫秒）
+     */
+    @Column(name = "Timestamp")
+    public long timestamp;
+
+    /**
+     * 已尝试发送的次数
+     */
+    @Column(name = "Attempts")
+    public int attempts;
+
+    public OutboxItem() {
+        super();
+    }
+
+    public static OutboxItem newReply(String threadId, String quotePostId, String reply) {
+        OutboxItem item = new OutboxItem();
+        item.type = TYPE_REPLY;
+        item.threadId = threadId;
+        item.quotePostId = quotePostId;
+        item.message = reply;
+        return item;
+    }
+
+    public static OutboxItem newFavourite(String threadId, String remark) {
+        OutboxItem item = new OutboxItem();
+        item.type = TYPE_FAVOURITE;
+        item.threadId = threadId;
+        item.message = remark;
+        return item;
+    }
+}
@@ -12,6 +12,8 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 
+import me.ykrank.s1next.data.api.PageSizePolicy;
+
 /**
  * Created by AdminYkrank on 2016/4/16.
  */
@@ -26,7 +28,7 @@ public class ReadProgress extends Model implements Parcelable{
     public String threadId;
 
     /**
-     * 页数
+     * 页数，以网页版每页楼层数（{@link me.ykrank.s1next.data.api.Api#POSTS_PER_PAGE}）计
      */
     @Column(name = "Page")
     public int page;
@@ -119,6 +121,20 @@ public class ReadProgress extends Model implements Parcelable{
         return sdf.format(new Date(timestamp));
     }
     
+    /**
+     * 换算成另一种每页楼层数下的页数和位置
+     *
+     * @return 新的对象，不修改本对象
+     */
+    public ReadProgress convertPageSize(int fromPerPage, int toPerPage) {
+        int index = PageSizePolicy.toIndex(page, position, fromPerPage);
+        ReadProgress progress = new ReadProgress(threadId, PageSizePolicy.toPage(index, toPerPage),
+                PageSizePolicy.toPosition(index, toPerPage));
+        progress.timestamp = timestamp;
+        progress.scrollState = scrollState;
+        return progress;
+    }
+
     public void copyFrom(ReadProgress oReadProgress){
         this.threadId = oReadProgress.threadId;
         this.page = oReadProgress.page;
@@ -0,0 +1,26 @@
+package me.ykrank.s1next.data.event;
+
+/**
+ * Posted when an item of {@link me.ykrank.s1next.widget.Outbox} is queued or leaves it.
+ */
+public final class OutboxChangeEvent {
+
+    private final String threadId;
+    private final boolean sent;
+
+    public OutboxChangeEvent(String threadId, boolean sent) {
+        this.threadId = threadId;
+        this.sent = sent;
+    }
+
+    public String getThreadId() {
+        return threadId;
+    }
+
+    /**
+     * Whether an item has been sent successfully.
+     */
+    public boolean isSent() {
+        return sent;
+    }
+}
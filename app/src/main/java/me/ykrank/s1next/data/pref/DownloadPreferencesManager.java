@@ -1,20 +1,23 @@
 package me.ykrank.s1next.data.pref;
 
-import com.bumptech.glide.load.Key;
-import com.bumptech.glide.signature.StringSignature;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 
-import me.ykrank.s1next.data.Wifi;
-import me.ykrank.s1next.util.DateUtil;
+import java.util.concurrent.TimeUnit;
+
+import me.ykrank.s1next.widget.NetworkQualityEstimator;
 
 /**
  * A manager manage the download preferences that are associated with settings.
+ * <p>
+ * The "Wi-Fi only" strategies actually mean unmetered networks (see
+ * {@link NetworkQualityEstimator}), and higher resolution avatars and
+ * "Wi-Fi only" images are not downloaded while the network is poor.
  */
 public final class DownloadPreferencesManager {
 
     private final DownloadPreferencesRepository mDownloadPreferencesProvider;
-    private final Wifi mWifi;
+    private final NetworkQualityEstimator mNetworkQualityEstimator;
 
     /**
      * Lazy Initialization.
@@ -57,9 +60,9 @@ public final class DownloadPreferencesManager {
     private volatile Supplier<AvatarCacheInvalidationInterval> mAvatarCacheInvalidationIntervalMemorized = Suppliers.memoize(mAvatarCacheInvalidationIntervalSupplier);
     private volatile Supplier<DownloadStrategy> mImagesDownloadStrategyMemorized = Suppliers.memoize(mImagesDownloadStrategySupplier);
 
-    public DownloadPreferencesManager(DownloadPreferencesRepository downloadPreferencesProvider, Wifi wifi) {
+    public DownloadPreferencesManager(DownloadPreferencesRepository downloadPreferencesProvider, NetworkQualityEstimator networkQualityEstimator) {
         this.mDownloadPreferencesProvider = downloadPreferencesProvider;
-        this.mWifi = wifi;
+        this.mNetworkQualityEstimator = networkQualityEstimator;
     }
 
     public int getTotalDownloadCacheSize() {
@@ -75,7 +78,8 @@ public final class DownloadPreferencesManager {
     }
 
     public boolean isAvatarsDownload() {
-        return mAvatarsDownloadStrategyMemorized.get().isDownload(mWifi.isWifiEnabled());
+        return mAvatarsDownloadStrategyMemorized.get().isDownload(
+                !mNetworkQualityEstimator.isMetered());
     }
 
     /**
@@ -87,7 +91,7 @@ public final class DownloadPreferencesManager {
 
     public boolean isHighResolutionAvatarsDownload() {
         return mAvatarResolutionStrategyMemorized.get().isHigherResolutionDownload(
-                mWifi.isWifiEnabled());
+                mNetworkQualityEstimator.isUnmeteredAndNotPoor());
     }
 
     /**
@@ -99,8 +103,12 @@ public final class DownloadPreferencesManager {
                 mAvatarCacheInvalidationIntervalSupplier);
     }
 
-    public Key getAvatarCacheInvalidationIntervalSignature() {
-        return mAvatarCacheInvalidationIntervalMemorized.get().getSignature();
+    /**
+     * Gets how long we could trust a cached avatar state (such as
+     * the user has no custom avatar) before checking it again.
+     */
+    public long getAvatarCacheInvalidationIntervalMillis() {
+        return mAvatarCacheInvalidationIntervalMemorized.get().intervalMillis;
     }
 
     /**
@@ -112,19 +120,11 @@ public final class DownloadPreferencesManager {
 
     /**
      * Checks whether we need to download images.
+     * "Wi-Fi only" images are not downloaded while the network is poor either.
      */
     public boolean isImagesDownload() {
-        return mImagesDownloadStrategyMemorized.get().isDownload(mWifi.isWifiEnabled());
-    }
-
-    /**
-     * Checks whether we need to monitor the Wi-Fi status.
-     * We needn't monitor the Wi-Fi status if we needn't/should
-     * download avatars or images.
-     */
-    public boolean needMonitorWifi() {
-        return mAvatarsDownloadStrategyMemorized.get() == DownloadStrategy.WIFI
-                || mImagesDownloadStrategyMemorized.get() == DownloadStrategy.WIFI;
+        return mImagesDownloadStrategyMemorized.get().isDownload(
+                mNetworkQualityEstimator.isUnmeteredAndNotPoor());
     }
 
     private enum TotalDownloadCacheSize {
@@ -145,8 +145,8 @@ public final class DownloadPreferencesManager {
 
         private static final DownloadStrategy[] VALUES = DownloadStrategy.values();
 
-        private boolean isDownload(boolean hasWifi) {
-            return equals(WIFI) && hasWifi
+        private boolean isDownload(boolean unmetered) {
+            return equals(WIFI) && unmetered
                     || equals(ALWAYS);
         }
     }
@@ -156,33 +156,23 @@ public final class DownloadPreferencesManager {
 
         private static final AvatarResolutionStrategy[] VALUES = AvatarResolutionStrategy.values();
 
-        private boolean isHigherResolutionDownload(boolean hasWifi) {
-            return equals(HIGH_WIFI) && hasWifi
+        private boolean isHigherResolutionDownload(boolean unmeteredAndNotPoor) {
+            return equals(HIGH_WIFI) && unmeteredAndNotPoor
                     || equals(HIGH);
         }
     }
 
     private enum AvatarCacheInvalidationInterval {
-        EVERY_DAY(DateUtil::today),
-        EVERY_WEEK(DateUtil::dayOfWeek),
-        EVERY_MONTH(DateUtil::dayOfMonth);
+        EVERY_DAY(TimeUnit.DAYS.toMillis(1)),
+        EVERY_WEEK(TimeUnit.DAYS.toMillis(7)),
+        EVERY_MONTH(TimeUnit.DAYS.toMillis(30));
 
         private static final AvatarCacheInvalidationInterval[] VALUES = AvatarCacheInvalidationInterval.values();
 
-        private final Supplier<String> supplier;
-
-        AvatarCacheInvalidationInterval(Supplier<String> supplier) {
-            this.supplier = supplier;
-        }
+        private final long intervalMillis;
 
-        /**
-         * Gets a string signature in order to invalidate avatar every day/week/month.
-         *
-         * @return A {@link Key} representing the string signature
-         * of date that will be mixed in to the cache key.
-         */
-        private Key getSignature() {
-            return new StringSignature(supplier.get());
+        AvatarCacheInvalidationInterval(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
         }
     }
 }
@@ -0,0 +1,171 @@
+package me.ykrank.s1next.util;
+
+import android.os.Process;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * The registry of our background thread pools, use these instead of
+ * {@link Schedulers#io()} (which has unbounded threads) or {@code new Thread()}.
+ * <ul>
+ * <li>{@link #network()}: bounded, for network requests (and parsing their responses).</li>
+ * <li>{@link #parse()}: CPU-sized, for parsing and decoding.</li>
+ * <li>{@link #database()}: single thread, so there is only one writer of database.</li>
+ * <li>{@link #decodeExecutor()}: two threads, for decoding tiles of large images, so the
+ * gallery pages could not start more decoding than the CPU (and memory) could handle.</li>
+ * <li>{@link #startupExecutor()}: single thread, for the deferred initializations of
+ * {@link me.ykrank.s1next.widget.AppStartup}. Not {@link #database()}, as the database
+ * initialization itself runs there and database tasks wait for it.</li>
+ * </ul>
+ * All threads run with background priority, see {@link #dumpMetrics()} for
+ * the queue depth and latency of each pool.
+ */
+public final class AppSchedulers {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private static final int NETWORK_THREADS = 8;
+    private static final int PARSE_THREADS = Math.max(2, CPU_COUNT);
+    private static final int DECODE_THREADS = 2;
+
+    private static final MeteredExecutor NETWORK = new MeteredExecutor("Network",
+            NETWORK_THREADS, Process.THREAD_PRIORITY_BACKGROUND);
+    private static final MeteredExecutor PARSE = new MeteredExecutor("Parse",
+            PARSE_THREADS, Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE);
+    private static final MeteredExecutor DATABASE = new MeteredExecutor("Database",
+            1, Process.THREAD_PRIORITY_BACKGROUND);
+    private static final MeteredExecutor DECODE = new MeteredExecutor("Decode",
+            DECODE_THREADS, Process.THREAD_PRIORITY_BACKGROUND);
+    private static final MeteredExecutor STARTUP = new MeteredExecutor("Startup",
+            1, Process.THREAD_PRIORITY_BACKGROUND);
+
+    private static final Scheduler NETWORK_SCHEDULER = Schedulers.from(NETWORK);
+    private static final Scheduler PARSE_SCHEDULER = Schedulers.from(PARSE);
+    private static final Scheduler DATABASE_SCHEDULER = Schedulers.from(DATABASE);
+
+    private AppSchedulers() {}
+
+    public static Scheduler network() {
+        return NETWORK_SCHEDULER;
+    }
+
+    public static Scheduler parse() {
+        return PARSE_SCHEDULER;
+    }
+
+    public static Scheduler database() {
+        return DATABASE_SCHEDULER;
+    }
+
+    public static Executor networkExecutor() {
+        return NETWORK;
+    }
+
+    public static Executor parseExecutor() {
+        return PARSE;
+    }
+
+    public static Executor databaseExecutor() {
+        return DATABASE;
+    }
+
+    public static Executor decodeExecutor() {
+        return DECODE;
+    }
+
+    public static Executor startupExecutor() {
+        return STARTUP;
+    }
+
+    /**
+     * Returns the metrics of each pool, each in one line.
+     */
+    public static String dumpMetrics() {
+        return NETWORK.metrics() + "\n" + PARSE.metrics() + "\n" + DATABASE.metrics()
+                + "\n" + DECODE.metrics() + "\n" + STARTUP.metrics();
+    }
+
+    private static final class MeteredExecutor extends ThreadPoolExecutor {
+
+        private static final long KEEP_ALIVE_SECONDS = 30;
+
+        private final String mName;
+
+        private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+        private final AtomicLong mSubmitted = new AtomicLong();
+        private final AtomicLong mCompleted = new AtomicLong();
+        private final AtomicLong mTotalWaitNanos = new AtomicLong();
+        private final AtomicLong mTotalRunNanos = new AtomicLong();
+
+        private MeteredExecutor(String name, int threads, int priority) {
+            super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new PriorityThreadFactory(name, priority));
+            allowCoreThreadTimeOut(true);
+            this.mName = name;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            long enqueuedAt = System.nanoTime();
+            mSubmitted.incrementAndGet();
+            super.execute(() -> {
+                long startedAt = System.nanoTime();
+                mTotalWaitNanos.addAndGet(startedAt - enqueuedAt);
+                try {
+                    command.run();
+                } finally {
+                    mTotalRunNanos.addAndGet(System.nanoTime() - startedAt);
+                    mCompleted.incrementAndGet();
+                }
+            });
+
+            int queueDepth = getQueue().size();
+            while (true) {
+                int max = mMaxQueueDepth.get();
+                if (queueDepth <= max || mMaxQueueDepth.compareAndSet(max, queueDepth)) {
+                    break;
+                }
+            }
+        }
+
+        private String metrics() {
+            long completed = mCompleted.get();
+            return String.format(Locale.US, "%s: active=%d/%d, queued=%d (max %d),"
+                            + " submitted=%d, completed=%d, avg wait=%.1fms, avg run=%.1fms",
+                    mName, getActiveCount(), getMaximumPoolSize(), getQueue().size(),
+                    mMaxQueueDepth.get(), mSubmitted.get(), completed,
+                    completed == 0 ? 0 : mTotalWaitNanos.get() / 1e6 / completed,
+                    completed == 0 ? 0 : mTotalRunNanos.get() / 1e6 / completed);
+        }
+    }
+
+    private static final class PriorityThreadFactory implements ThreadFactory {
+
+        private final String mName;
+        private final int mPriority;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        private PriorityThreadFactory(String name, int priority) {
+            this.mName = name;
+            this.mPriority = priority;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(mPriority);
+                runnable.run();
+            }, mName + "-" + mCount.incrementAndGet());
+        }
+    }
+}
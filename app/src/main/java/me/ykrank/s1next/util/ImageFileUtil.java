@@ -0,0 +1,199 @@
+package me.ykrank.s1next.util;
+
+import android.content.Context;
+import android.content.Intent;
+import android.media.MediaScannerConnection;
+import android.net.Uri;
+import android.os.Environment;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.webkit.MimeTypeMap;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.target.Target;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import rx.Observable;
+
+/**
+ * Saves or shares images by copying their original bytes out of Glide's disk cache,
+ * the image is only downloaded if it has not been cached yet.
+ */
+public final class ImageFileUtil {
+
+    /**
+     * Max number of images to save at the same time.
+     */
+    private static final int MAX_CONCURRENT_SAVING = 3;
+
+    private static final String SHARE_DIR_NAME = "share";
+
+    private ImageFileUtil() {}
+
+    /**
+     * Returns the cached source file of this image, downloads it if cache missed.
+     * <p>
+     * Images in this app are loaded with {@link com.bumptech.glide.load.engine.DiskCacheStrategy#SOURCE},
+     * so this would be a disk cache hit for the images the user has seen.
+     */
+    @WorkerThread
+    @NonNull
+    public static File getSourceFile(Context context, String url) throws IOException {
+        try {
+            return Glide.with(context.getApplicationContext())
+                    .load(url)
+                    .downloadOnly(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL)
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Saves the image to the public download directory, with a new name
+     * if there is a file of the same name.
+     *
+     * @return An {@link Observable} emits the saved file.
+     */
+    public static Observable<File> saveImage(Context context, String url) {
+        Context appContext = context.getApplicationContext();
+        return Observable.fromCallable(() -> {
+            File dir = Environment.getExternalStoragePublicDirectory(
+                    Environment.DIRECTORY_DOWNLOADS);
+            File source = getSourceFile(appContext, url);
+            File file = createUniqueFile(dir, getFileName(url));
+            try {
+                copyFile(source, file);
+            } catch (IOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                throw e;
+            }
+            MediaScannerConnection.scanFile(appContext, new String[]{file.getPath()}, null, null);
+            return file;
+        }).subscribeOn(AppSchedulers.network());
+    }
+
+    /**
+     * Saves all the images with at most {@link #MAX_CONCURRENT_SAVING} images at the same time.
+     * Images which fail to be saved are skipped.
+     *
+     * @return An {@link Observable} emits each saved file, the order is not guaranteed.
+     * @see #saveImage(Context, String)
+     */
+    public static Observable<File> saveImages(Context context, List<String> urls) {
+        return Observable.from(urls)
+                .flatMap(url -> saveImage(context, url).onErrorResumeNext(throwable -> {
+                    L.e("Failed to save " + url, throwable);
+                    return Observable.empty();
+                }), MAX_CONCURRENT_SAVING);
+    }
+
+    /**
+     * Copies the image to external cache directory and builds the share {@link Intent}.
+     *
+     * @return An {@link Observable} emits the {@link Intent} to share this image.
+     */
+    public static Observable<Intent> shareImage(Context context, String url) {
+        Context appContext = context.getApplicationContext();
+        return Observable.fromCallable(() -> {
+            File dir = new File(appContext.getExternalCacheDir(), SHARE_DIR_NAME);
+            String fileName = getFileName(url);
+            File file = copyFile(getSourceFile(appContext, url), new File(dir, fileName));
+
+            Intent intent = new Intent(Intent.ACTION_SEND);
+            intent.putExtra(Intent.EXTRA_STREAM, Uri.fromFile(file));
+            intent.setType(getMimeType(fileName));
+            return intent;
+        }).subscribeOn(AppSchedulers.network());
+    }
+
+    /**
+     * Copies file with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+     * in order to avoid copying bytes through Java heap.
+     *
+     * @return The destination file.
+     */
+    @WorkerThread
+    public static File copyFile(File source, File dest) throws IOException {
+        File parent = dest.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        FileInputStream inputStream = null;
+        FileOutputStream outputStream = null;
+        try {
+            inputStream = new FileInputStream(source);
+            outputStream = new FileOutputStream(dest);
+            FileChannel inChannel = inputStream.getChannel();
+            FileChannel outChannel = outputStream.getChannel();
+            long size = inChannel.size();
+            long position = 0;
+            while (position < size) {
+                position += inChannel.transferTo(position, size - position, outChannel);
+            }
+        } finally {
+            closeQuietly(inputStream);
+            closeQuietly(outputStream);
+        }
+
+        return dest;
+    }
+
+    /**
+     * Creates an empty file named {@code fileName} in this directory,
+     * or {@code name (1).ext}, {@code name (2).ext}... if it exists.
+     */
+    @WorkerThread
+    private static File createUniqueFile(File dir, String fileName) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory " + dir);
+        }
+        int dotIndex = fileName.lastIndexOf('.');
+        String name = dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName;
+        String extension = dotIndex > 0 ? fileName.substring(dotIndex) : "";
+        File file = new File(dir, fileName);
+        // createNewFile() is atomic, so images saved at the same time never get the same name
+        for (int i = 1; !file.createNewFile(); i++) {
+            file = new File(dir, name + " (" + i + ")" + extension);
+        }
+        return file;
+    }
+
+    private static String getFileName(String url) {
+        String fileName = url.substring(url.lastIndexOf("/") + 1);
+        int queryIndex = fileName.indexOf('?');
+        if (queryIndex >= 0) {
+            fileName = fileName.substring(0, queryIndex);
+        }
+        return fileName;
+    }
+
+    private static String getMimeType(String fileName) {
+        String extension = MimeTypeMap.getFileExtensionFromUrl(fileName);
+        String mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
+        return mimeType == null ? "image/*" : mimeType;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+
+            }
+        }
+    }
+}
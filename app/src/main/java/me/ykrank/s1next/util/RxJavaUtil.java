@@ -3,12 +3,12 @@ package me.ykrank.s1next.util;
 import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.functions.Action0;
 import rx.functions.Action1;
 import rx.functions.Func0;
-import rx.schedulers.Schedulers;
 
 public final class RxJavaUtil {
 
@@ -44,9 +44,22 @@ public final class RxJavaUtil {
      * @return 订单
      */
     public static Subscription workWithUiThread(Action0 workAction, Action0 uiAction, Action1<Throwable> error) {
+        return workWithUiThread(AppSchedulers.parse(), workAction, uiAction, error);
+    }
+
+    /**
+     * 快速发送工作线程和UI回调
+     *
+     * @param scheduler  工作线程所在的线程池，见{@link AppSchedulers}
+     * @param workAction 工作线程
+     * @param uiAction   主线程
+     * @param error      错误回调
+     * @return 订单
+     */
+    public static Subscription workWithUiThread(Scheduler scheduler, Action0 workAction, Action0 uiAction, Action1<Throwable> error) {
         return Observable.just(null)
                 .doOnNext(i -> workAction.call())
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(scheduler)
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(o -> uiAction.call(), error::call);
     }
@@ -73,15 +86,32 @@ public final class RxJavaUtil {
      * @return 订单
      */
     public static <R> Subscription workWithUiResult(Func0<R> workAction, Action1<R> uiAction, Action1<Throwable> error) {
+        return workWithUiResult(AppSchedulers.parse(), workAction, uiAction, error);
+    }
+
+    /**
+     * 快速发送工作线程和有返回值的UI回调
+     *
+     * @param scheduler  工作线程所在的线程池，见{@link AppSchedulers}
+     * @param workAction 工作线程
+     * @param uiAction   主线程
+     * @param error      错误回调
+     * @param <R>        返回值的类型
+     * @return 订单
+     */
+    public static <R> Subscription workWithUiResult(Scheduler scheduler, Func0<R> workAction, Action1<R> uiAction, Action1<Throwable> error) {
         return Observable.just(null)
                 .map(n -> workAction.call())
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(scheduler)
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(uiAction::call, error::call);
     }
 
+    /**
+     * Runs network requests in {@link AppSchedulers#network()} and observes on main thread.
+     */
     public static <T> Observable.Transformer<T, T> iOTransformer() {
-        return observable -> observable.subscribeOn(Schedulers.io())
+        return observable -> observable.subscribeOn(AppSchedulers.network())
                 .observeOn(AndroidSchedulers.mainThread());
     }
 
@@ -25,6 +25,14 @@ public final class TransformationUtil {
 
     private TransformationUtil() {}
 
+    /**
+     * Returns the OpenGL texture size limit, a {@link Bitmap} larger than
+     * this could not be drawn in hardware accelerated {@link Canvas}.
+     */
+    public static int getGlMaxTextureSize() {
+        return GlMaxTextureSizeBitmapTransformation.GlMaxTextureCalculator.INSTANCE.glMaxTextureSize;
+    }
+
     /**
      * Applies a multiplier to the {@code toTransform}'s size.
      * <p>
@@ -32,7 +32,6 @@ import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.User;
 import me.ykrank.s1next.data.event.FontSizeChangeEvent;
 import me.ykrank.s1next.data.event.ThemeChangeEvent;
-import me.ykrank.s1next.data.pref.DownloadPreferencesManager;
 import me.ykrank.s1next.data.pref.ThemeManager;
 import me.ykrank.s1next.util.RxJavaUtil;
 import me.ykrank.s1next.view.dialog.ThreadGoDialogFragment;
@@ -61,9 +60,6 @@ public abstract class BaseActivity extends AppCompatActivity
     @Inject
     User mUser;
 
-    @Inject
-    DownloadPreferencesManager mDownloadPreferencesManager;
-
     @Inject
     ThemeManager mThemeManager;
 
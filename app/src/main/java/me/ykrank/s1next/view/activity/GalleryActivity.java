@@ -3,7 +3,6 @@ package me.ykrank.s1next.view.activity;
 import android.Manifest;
 import android.app.Activity;
 import android.app.ActivityOptions;
-import android.app.DownloadManager;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
@@ -11,13 +10,13 @@ import android.databinding.DataBindingUtil;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Environment;
 import android.support.annotation.NonNull;
 import android.support.annotation.RequiresPermission;
 import android.support.design.widget.CoordinatorLayout;
 import android.support.design.widget.Snackbar;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.view.ViewCompat;
+import android.support.v4.view.ViewPager;
 import android.support.v4.view.WindowInsetsCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.view.Menu;
@@ -26,29 +25,53 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.target.Target;
+
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
 
+import me.ykrank.s1next.App;
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.databinding.ActivityGalleryBinding;
+import me.ykrank.s1next.util.ErrorUtil;
+import me.ykrank.s1next.util.ImageFileUtil;
 import me.ykrank.s1next.util.IntentUtil;
+import me.ykrank.s1next.util.RxJavaUtil;
+import me.ykrank.s1next.view.adapter.GalleryPagerAdapter;
 import me.ykrank.s1next.view.internal.ToolbarDelegate;
-import me.ykrank.s1next.viewmodel.ImageViewModel;
 import me.ykrank.s1next.widget.PhotoView;
+import me.ykrank.s1next.widget.RequestPriority;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
 
 /**
- * An Activity shows an ImageView that supports multi-touch.
+ * An Activity shows ImageViews that support multi-touch.
+ * <p>
+ * If a list of images is given, the user could swipe between them.
  */
 public final class GalleryActivity extends AppCompatActivity {
 
     private static final int REQUEST_CODE_WRITE_EXTERNAL_STORAGE = 0;
+    private static final int REQUEST_CODE_WRITE_EXTERNAL_STORAGE_ALL = 1;
 
     private static final String ARG_IMAGE_URL = "image_url";
     private static final String ARG_IMAGE_THUMB_URL = "image_thumb_url";
+    private static final String ARG_IMAGE_URLS = "image_urls";
+    private static final String ARG_POSITION = "position";
+
+    /**
+     * Neighbours within this distance are instantiated by {@link ViewPager}
+     * so they have been decoded before the user swipes to them.
+     */
+    private static final int OFFSCREEN_PAGE_LIMIT = 1;
+
+    private ViewPager mViewPager;
+    private GalleryPagerAdapter mPagerAdapter;
 
-    private String mImageUrl;
-    private String mImageThumbUrl;
-    
-    private PhotoView mPhotoView;
+    private Subscription mDownloadSubscription;
+    private Subscription mShareSubscription;
 
     public static void startGalleryActivity(Context context, String imageUrl) {
         Intent intent = new Intent(context, GalleryActivity.class);
@@ -63,6 +86,18 @@ public final class GalleryActivity extends AppCompatActivity {
         context.startActivity(intent);
     }
 
+    /**
+     * Starts this Activity to show a list of images, such as all images of a post.
+     *
+     * @param position The position of the image to show first.
+     */
+    public static void startGalleryActivity(Context context, ArrayList<String> imageUrls, int position) {
+        Intent intent = new Intent(context, GalleryActivity.class);
+        intent.putStringArrayListExtra(ARG_IMAGE_URLS, imageUrls);
+        intent.putExtra(ARG_POSITION, position);
+        context.startActivity(intent);
+    }
+
     public static void startGalleryActivity(Context context, String imageUrl, final View transitionView) {
         Intent intent = new Intent(context, GalleryActivity.class);
         intent.putExtra(ARG_IMAGE_URL, imageUrl);
@@ -84,7 +119,7 @@ public final class GalleryActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         ActivityGalleryBinding binding = DataBindingUtil.setContentView(this,
                 R.layout.activity_gallery);
-        mPhotoView = binding.photoView;
+        mViewPager = binding.viewPager;
 
         ToolbarDelegate toolbarDelegate = new ToolbarDelegate(this, binding.toolbar);
         setTitle(null);
@@ -116,9 +151,63 @@ public final class GalleryActivity extends AppCompatActivity {
             return insets.consumeSystemWindowInsets();
         });
 
-        mImageUrl = getIntent().getStringExtra(ARG_IMAGE_URL);
-        mImageThumbUrl = getIntent().getStringExtra(ARG_IMAGE_THUMB_URL);
-        binding.setImageViewModel(new ImageViewModel(mImageUrl, mImageThumbUrl));
+        Intent intent = getIntent();
+        ArrayList<String> imageUrls = intent.getStringArrayListExtra(ARG_IMAGE_URLS);
+        int position = intent.getIntExtra(ARG_POSITION, 0);
+        if (imageUrls == null) {
+            imageUrls = new ArrayList<>(Collections.singletonList(
+                    intent.getStringExtra(ARG_IMAGE_URL)));
+            position = 0;
+        }
+        mPagerAdapter = new GalleryPagerAdapter(this, imageUrls,
+                intent.getStringExtra(ARG_IMAGE_THUMB_URL), position);
+        mViewPager.setOffscreenPageLimit(OFFSCREEN_PAGE_LIMIT);
+        mViewPager.setAdapter(mPagerAdapter);
+        mViewPager.addOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+
+            @Override
+            public void onPageSelected(int position) {
+                onImageSelected(position);
+            }
+        });
+        if (savedInstanceState == null) {
+            mViewPager.setCurrentItem(position, false);
+        }
+        onImageSelected(mViewPager.getCurrentItem());
+    }
+
+    private void onImageSelected(int position) {
+        int count = mPagerAdapter.getCount();
+        if (count > 1) {
+            setTitle(getString(R.string.gallery_title_position, position + 1, count));
+        }
+
+        // neighbours within this distance (but out of OFFSCREEN_PAGE_LIMIT)
+        // are downloaded to disk cache in advance
+        int prefetchDistance = App.getAppComponent(this).getNetworkQualityEstimator()
+                .getPrefetchDistance();
+        for (int i = OFFSCREEN_PAGE_LIMIT + 1; i <= prefetchDistance; i++) {
+            prefetchImage(position + i);
+            prefetchImage(position - i);
+        }
+    }
+
+    /**
+     * Downloads the image source into disk cache.
+     *
+     * @see me.ykrank.s1next.binding.PhotoViewBindingAdapter#loadImage(PhotoView, String, String)
+     */
+    private void prefetchImage(int position) {
+        if (position >= 0 && position < mPagerAdapter.getCount()) {
+            Glide.with(this)
+                    .load(RequestPriority.PREFETCH.toGlideUrl(mPagerAdapter.getImageUrl(position)))
+                    .downloadOnly(Target.SIZE_ORIGINAL,
+                            Target.SIZE_ORIGINAL);
+        }
+    }
+
+    private String getCurrentImageUrl() {
+        return mPagerAdapter.getImageUrl(mViewPager.getCurrentItem());
     }
 
     @Override
@@ -135,21 +224,23 @@ public final class GalleryActivity extends AppCompatActivity {
                 supportFinishAfterTransition();
                 return true;
             case R.id.menu_download:
-                if (ActivityCompat.checkSelfPermission(this,
-                        Manifest.permission.WRITE_EXTERNAL_STORAGE) !=
-                        PackageManager.PERMISSION_GRANTED) {
-                    ActivityCompat.requestPermissions(this,
-                            new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE},
-                            REQUEST_CODE_WRITE_EXTERNAL_STORAGE);
-
-                    return true;
+                if (checkWriteExternalStoragePermission(REQUEST_CODE_WRITE_EXTERNAL_STORAGE)) {
+                    downloadImage();
                 }
 
-                downloadImage();
+                return true;
+            case R.id.menu_download_all:
+                if (checkWriteExternalStoragePermission(REQUEST_CODE_WRITE_EXTERNAL_STORAGE_ALL)) {
+                    downloadAllImages();
+                }
+
+                return true;
+            case R.id.menu_share:
+                shareImage();
 
                 return true;
             case R.id.menu_browser:
-                IntentUtil.startViewIntentExcludeOurApp(this, Uri.parse(mImageUrl));
+                IntentUtil.startViewIntentExcludeOurApp(this, Uri.parse(getCurrentImageUrl()));
 
                 return true;
             default:
@@ -157,12 +248,41 @@ public final class GalleryActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.menu_download_all).setVisible(mPagerAdapter.getCount() > 1);
+
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    /**
+     * @return Whether we have got the permission, if not, requests it.
+     */
+    private boolean checkWriteExternalStoragePermission(int requestCode) {
+        if (ActivityCompat.checkSelfPermission(this,
+                Manifest.permission.WRITE_EXTERNAL_STORAGE) !=
+                PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE},
+                    requestCode);
+
+            return false;
+        }
+
+        return true;
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
-        if (requestCode == REQUEST_CODE_WRITE_EXTERNAL_STORAGE) {
+        if (requestCode == REQUEST_CODE_WRITE_EXTERNAL_STORAGE
+                || requestCode == REQUEST_CODE_WRITE_EXTERNAL_STORAGE_ALL) {
             if (grantResults.length == 1 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
                 try {
-                    downloadImage();
+                    if (requestCode == REQUEST_CODE_WRITE_EXTERNAL_STORAGE) {
+                        downloadImage();
+                    } else {
+                        downloadAllImages();
+                    }
                 } catch (SecurityException e) {
                     Toast.makeText(GalleryActivity.this, R.string.message_permission_denied, Toast.LENGTH_SHORT).show();
                 }
@@ -172,27 +292,67 @@ public final class GalleryActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Copies the image from Glide's disk cache, only downloads it if cache missed.
+     */
     @RequiresPermission(Manifest.permission.WRITE_EXTERNAL_STORAGE)
     private void downloadImage() {
-        DownloadManager downloadManager = (DownloadManager)
-                getSystemService(Context.DOWNLOAD_SERVICE);
-        DownloadManager.Request request = new DownloadManager.Request(Uri.parse(mImageUrl));
-        request.setNotificationVisibility(
-                DownloadManager.Request.VISIBILITY_VISIBLE_NOTIFY_COMPLETED);
-        request.setDestinationInExternalPublicDir(Environment.DIRECTORY_DOWNLOADS,
-                mImageUrl.substring(mImageUrl.lastIndexOf("/") + 1));
-        downloadManager.enqueue(request);
+        showShortSnackbar(getString(R.string.snackbar_action_downloading));
+        RxJavaUtil.unsubscribeIfNotNull(mDownloadSubscription);
+        mDownloadSubscription = ImageFileUtil.saveImage(this, getCurrentImageUrl())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(file -> showShortSnackbar(getString(R.string.snackbar_image_saved,
+                        file.getPath())), this::onDownloadError);
+    }
+
+    /**
+     * Saves all the images in this gallery (all images of the post).
+     *
+     * @see #downloadImage()
+     */
+    @RequiresPermission(Manifest.permission.WRITE_EXTERNAL_STORAGE)
+    private void downloadAllImages() {
+        showShortSnackbar(getString(R.string.snackbar_action_downloading));
+        RxJavaUtil.unsubscribeIfNotNull(mDownloadSubscription);
+        int total = mPagerAdapter.getImageUrls().size();
+        mDownloadSubscription = ImageFileUtil.saveImages(this, mPagerAdapter.getImageUrls())
+                .count()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(count -> showShortSnackbar(count == total
+                        ? getString(R.string.snackbar_images_saved, count)
+                        : getString(R.string.snackbar_images_saved_partially, count, total - count)),
+                        this::onDownloadError);
+    }
 
-        Snackbar.make(findViewById(R.id.coordinator_layout),
-                R.string.snackbar_action_downloading, Snackbar.LENGTH_SHORT).show();
+    private void shareImage() {
+        RxJavaUtil.unsubscribeIfNotNull(mShareSubscription);
+        mShareSubscription = ImageFileUtil.shareImage(this, getCurrentImageUrl())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(intent -> startActivity(Intent.createChooser(intent,
+                        getString(R.string.menu_title_share))), this::onDownloadError);
+    }
+
+    private void onDownloadError(Throwable throwable) {
+        showShortSnackbar(getString(ErrorUtil.parse(throwable)));
+    }
+
+    private void showShortSnackbar(CharSequence text) {
+        Snackbar.make(findViewById(R.id.coordinator_layout), text, Snackbar.LENGTH_SHORT).show();
     }
 
     @Override
     protected void onDestroy() {
+        RxJavaUtil.unsubscribeIfNotNull(mDownloadSubscription);
+        RxJavaUtil.unsubscribeIfNotNull(mShareSubscription);
         // Clean up views and other components
-        if (mPhotoView != null) {
-            mPhotoView.clear();
-            mPhotoView = null;
+        if (mViewPager != null) {
+            for (int i = 0; i < mViewPager.getChildCount(); i++) {
+                View child = mViewPager.getChildAt(i);
+                if (child instanceof PhotoView) {
+                    ((PhotoView) child).clear();
+                }
+            }
+            mViewPager = null;
         }
         super.onDestroy();
     }
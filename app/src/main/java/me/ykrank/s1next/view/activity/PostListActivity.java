@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.provider.Browser;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.TaskStackBuilder;
 import android.view.MenuItem;
@@ -14,26 +15,27 @@ import android.view.View;
 import javax.inject.Inject;
 
 import me.ykrank.s1next.App;
+import me.ykrank.s1next.AppComponent;
 import me.ykrank.s1next.R;
+import me.ykrank.s1next.data.api.Api;
 import me.ykrank.s1next.data.api.model.Thread;
 import me.ykrank.s1next.data.api.model.ThreadLink;
 import me.ykrank.s1next.data.db.ReadProgressDbWrapper;
 import me.ykrank.s1next.data.db.dbmodel.ReadProgress;
 import me.ykrank.s1next.data.pref.ReadProgressPreferencesManager;
+import me.ykrank.s1next.util.AppSchedulers;
 import me.ykrank.s1next.util.L;
+import me.ykrank.s1next.util.MathUtil;
 import me.ykrank.s1next.util.OnceClickUtil;
 import me.ykrank.s1next.view.fragment.PostListFragment;
-import me.ykrank.s1next.widget.WifiBroadcastReceiver;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 /**
  * An Activity which includes {@link android.support.v4.view.ViewPager}
  * to represent each page of post lists.
  */
-public final class PostListActivity extends BaseActivity
-        implements WifiBroadcastReceiver.NeedMonitorWifi {
+public final class PostListActivity extends BaseActivity {
     public static final int RESULT_BLACKLIST = 11;
 
     private static final String ARG_THREAD = "thread";
@@ -44,10 +46,15 @@ public final class PostListActivity extends BaseActivity
 
     private static final String ARG_READ_PROGRESS = "read_progress";
 
+    private static final String ARG_AUTHOR_ID = "author_id";
+    private static final String ARG_REVERSE = "reverse";
+
     @Inject
     ReadProgressPreferencesManager mReadProgressPrefManager;
 
     public static void startPostListActivity(Context context, Thread thread, boolean shouldGoToLastPage) {
+        prefetchPosts(context, thread, shouldGoToLastPage, null);
+
         Intent intent = new Intent(context, PostListActivity.class);
         intent.putExtra(ARG_THREAD, thread);
         intent.putExtra(ARG_SHOULD_GO_TO_LAST_PAGE, shouldGoToLastPage);
@@ -57,6 +64,20 @@ public final class PostListActivity extends BaseActivity
         else context.startActivity(intent);
     }
 
+    /**
+     * Opens this thread with only the posts of this author, or with newest posts first.
+     * The new Activity has its own pages, so the current one is kept as it is when we go back.
+     */
+    public static void startPostListActivity(Context context, Thread thread, @Nullable String authorId,
+                                             boolean reverse) {
+        Intent intent = new Intent(context, PostListActivity.class);
+        intent.putExtra(ARG_THREAD, thread);
+        intent.putExtra(ARG_AUTHOR_ID, authorId);
+        intent.putExtra(ARG_REVERSE, reverse);
+
+        context.startActivity(intent);
+    }
+
     public static void startPostListActivity(Activity activity, ThreadLink threadLink) {
         // see android.text.style.URLSpan#onClick(View)
         String appId = activity.getIntent().getStringExtra(Browser.EXTRA_APPLICATION_ID);
@@ -83,11 +104,12 @@ public final class PostListActivity extends BaseActivity
         ReadProgressPreferencesManager preferencesManager = App.getAppComponent(view.getContext()).getReadProgressPreferencesManager();
         if (preferencesManager.isLoadAuto()){
             return OnceClickUtil.onceClickObservable(view, 1000)
-                    .observeOn(Schedulers.io())
+                    .observeOn(AppSchedulers.database())
                     .map(vo -> ReadProgressDbWrapper.getInstance().getWithThreadId(thread.getId()))
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(progress -> {
                         Context context = view.getContext();
+                        prefetchPosts(context, thread, false, progress);
                         Intent intent = new Intent(context, PostListActivity.class);
                         intent.putExtra(ARG_THREAD, thread);
                         intent.putExtra(ARG_READ_PROGRESS, progress);
@@ -100,7 +122,27 @@ public final class PostListActivity extends BaseActivity
                 PostListActivity.startPostListActivity(v.getContext(), thread, false);
             });
         }
-        
+
+    }
+
+    /**
+     * Starts to load the page which {@link PostListFragment} is going to show,
+     * so the request overlaps with the Activity transition.
+     * The page is computed in the same way as {@link PostListFragment}.
+     */
+    private static void prefetchPosts(Context context, Thread thread, boolean shouldGoToLastPage,
+                                      @Nullable ReadProgress progress) {
+        AppComponent appComponent = App.getAppComponent(context);
+        int postsPerPage = appComponent.getPageSizePolicy().getPostsPerPage();
+        int page = 1;
+        if (progress != null) {
+            page = progress.convertPageSize(Api.POSTS_PER_PAGE, postsPerPage).page;
+        } else if (shouldGoToLastPage) {
+            // +1 for original post
+            page = MathUtil.divide(thread.getReplies() + 1, postsPerPage);
+        }
+        appComponent.getNavigationPrefetcher().prefetchPosts(thread.getId(), Math.max(page, 1),
+                postsPerPage);
     }
 
     @Override
@@ -115,8 +157,12 @@ public final class PostListActivity extends BaseActivity
             Intent intent = getIntent();
             Thread thread = intent.getParcelableExtra(ARG_THREAD);
             ReadProgress progress = intent.getParcelableExtra(ARG_READ_PROGRESS);
+            String authorId = intent.getStringExtra(ARG_AUTHOR_ID);
+            boolean reverse = intent.getBooleanExtra(ARG_REVERSE, false);
             if (thread == null) {//通过链接打开
                 fragment = PostListFragment.newInstance(intent.getParcelableExtra(ARG_THREAD_LINK));
+            } else if (authorId != null || reverse) {//只看某人或倒序
+                fragment = PostListFragment.newInstance(thread, authorId, reverse);
             } else if (progress != null){//有进度信息
                 fragment = PostListFragment.newInstance(thread, progress);
             } else {//没有进度信息
@@ -37,16 +37,13 @@ import android.widget.ImageButton;
 import android.widget.SearchView;
 import android.widget.TextView;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.inject.Inject;
 
 import me.ykrank.s1next.App;
 import me.ykrank.s1next.R;
-import me.ykrank.s1next.data.User;
-import me.ykrank.s1next.data.api.ApiFlatTransformer;
-import me.ykrank.s1next.data.api.S1Service;
-import me.ykrank.s1next.data.api.UserValidator;
 import me.ykrank.s1next.data.api.model.Search;
 import me.ykrank.s1next.data.api.model.wrapper.SearchWrapper;
 import me.ykrank.s1next.databinding.ActivitySearchBinding;
@@ -56,20 +53,23 @@ import me.ykrank.s1next.util.RxJavaUtil;
 import me.ykrank.s1next.util.TransitionUtils;
 import me.ykrank.s1next.view.adapter.SearchRecyclerViewAdapter;
 import me.ykrank.s1next.view.transition.CircularReveal;
+import me.ykrank.s1next.widget.SearchResultCache;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
 
 /**
  * Created by ykrank on 2016/9/28 0028.
  */
 
 public class SearchActivity extends BaseActivity {
+
+    /**
+     * Prefetches the next page when user has scrolled to this many results before the end.
+     */
+    private static final int PREFETCH_THRESHOLD = 5;
+
     @Inject
-    S1Service mS1Service;
-    @Inject
-    UserValidator mUserValidator;
-    @Inject
-    User mUser;
-    @Inject
-    S1Service s1Service;
+    SearchResultCache mSearchResultCache;
 
     private ActivitySearchBinding binding;
 
@@ -80,8 +80,15 @@ public class SearchActivity extends BaseActivity {
 
     private SparseArray<Transition> transitions = new SparseArray<>();
 
-    private SearchWrapper searchWrapper;
     private SearchRecyclerViewAdapter adapter;
+    private LinearLayoutManager layoutManager;
+
+    private String query;
+    private int page;
+    private boolean hasNextPage;
+    private List<Search> results = new ArrayList<>();
+    private Subscription searchSubscription;
+    private boolean loadingNextPage;
 
     public static void start(Context context) {
         context.startActivity(new Intent(context, SearchActivity.class));
@@ -109,8 +116,15 @@ public class SearchActivity extends BaseActivity {
         compatBackIcon();
 
         adapter = new SearchRecyclerViewAdapter(this);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                onResultsScrolled();
+            }
+        });
 
         searchBack.setOnClickListener(v -> dismiss());
     }
@@ -128,6 +142,7 @@ public class SearchActivity extends BaseActivity {
 
     @Override
     protected void onDestroy() {
+        RxJavaUtil.unsubscribeIfNotNull(searchSubscription);
         super.onDestroy();
     }
 
@@ -295,16 +310,58 @@ public class SearchActivity extends BaseActivity {
         binding.progressBar.setVisibility(View.VISIBLE);
         ImeUtils.hideIme(searchView);
         searchView.clearFocus();
-//        dataManager.searchFor(query);
-
-        s1Service.searchForum(mUser.getAuthenticityToken(), "yes", query)
-                .compose(ApiFlatTransformer.AuthenticityTokenTransformer(mS1Service, mUserValidator))
-                .map(source -> {
-                    searchWrapper = SearchWrapper.fromSource(source);
-                    return searchWrapper;
-                })
-                .compose(RxJavaUtil.iOTransformer())
-                .subscribe(wrapper -> setResults(wrapper.getSearches()), L::e);
+
+        RxJavaUtil.unsubscribeIfNotNull(searchSubscription);
+        loadingNextPage = false;
+        this.query = query;
+        // served from memory if user has searched this recently
+        searchSubscription = mSearchResultCache.search(query, 1)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(wrapper -> {
+                    results = new ArrayList<>(wrapper.getSearches());
+                    onPageLoaded(wrapper);
+                    setResults(results);
+                }, L::e);
+    }
+
+    /**
+     * Prefetches the next page when user is near the end of the results,
+     * and shows it when user reaches the end.
+     */
+    private void onResultsScrolled() {
+        if (!hasNextPage || loadingNextPage) {
+            return;
+        }
+        if (layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_THRESHOLD) {
+            mSearchResultCache.prefetch(query, page + 1);
+        }
+        if (!recyclerView.canScrollVertically(1)) {
+            loadNextPage();
+        }
+    }
+
+    private void loadNextPage() {
+        loadingNextPage = true;
+        searchSubscription = mSearchResultCache.search(query, page + 1)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(wrapper -> {
+                    loadingNextPage = false;
+                    List<Search> newResults = new ArrayList<>(results);
+                    newResults.addAll(wrapper.getSearches());
+                    results = newResults;
+                    onPageLoaded(wrapper);
+                    adapter.refreshDataSet(results, false);
+                }, throwable -> {
+                    // try again when user scrolls
+                    loadingNextPage = false;
+                    L.e(throwable);
+                });
+    }
+
+    private void onPageLoaded(SearchWrapper wrapper) {
+        // the page is 0 if there is only one page
+        page = Math.max(wrapper.getPage(), 1);
+        hasNextPage = page < wrapper.getMaxPage() && !TextUtils.isEmpty(wrapper.getHref());
     }
 
     @RequiresApi(api = Build.VERSION_CODES.KITKAT)
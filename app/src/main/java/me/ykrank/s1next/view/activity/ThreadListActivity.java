@@ -18,13 +18,12 @@ import me.ykrank.s1next.data.api.model.Forum;
 import me.ykrank.s1next.view.adapter.SubForumArrayAdapter;
 import me.ykrank.s1next.view.fragment.ThreadListFragment;
 import me.ykrank.s1next.view.fragment.ThreadListPagerFragment;
-import me.ykrank.s1next.widget.WifiBroadcastReceiver;
 
 /**
  * An Activity shows the thread lists.
  */
 public final class ThreadListActivity extends BaseActivity
-        implements ThreadListPagerFragment.SubForumsCallback, WifiBroadcastReceiver.NeedMonitorWifi {
+        implements ThreadListPagerFragment.SubForumsCallback {
 
     private static final String ARG_FORUM = "forum";
 
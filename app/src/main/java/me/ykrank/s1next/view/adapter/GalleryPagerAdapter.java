@@ -0,0 +1,81 @@
+package me.ykrank.s1next.view.adapter;
+
+import android.app.Activity;
+import android.databinding.DataBindingUtil;
+import android.support.annotation.Nullable;
+import android.support.v4.view.PagerAdapter;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.List;
+
+import me.ykrank.s1next.R;
+import me.ykrank.s1next.databinding.ItemGalleryPhotoBinding;
+import me.ykrank.s1next.viewmodel.ImageViewModel;
+import me.ykrank.s1next.widget.PhotoView;
+
+/**
+ * Shows each image of a post in a {@link PhotoView}.
+ * <p>
+ * Pages which are destroyed by {@link android.support.v4.view.ViewPager}
+ * (out of its offscreen page limit) release their bitmaps immediately.
+ */
+public final class GalleryPagerAdapter extends PagerAdapter {
+
+    private final LayoutInflater mLayoutInflater;
+
+    private final List<String> mImageUrls;
+    /**
+     * The thumbnail of the first shown image, may be {@code null}.
+     */
+    @Nullable
+    private final String mThumbUrl;
+    private final int mThumbPosition;
+
+    public GalleryPagerAdapter(Activity activity, List<String> imageUrls, @Nullable String thumbUrl,
+                               int thumbPosition) {
+        this.mLayoutInflater = activity.getLayoutInflater();
+        this.mImageUrls = imageUrls;
+        this.mThumbUrl = thumbUrl;
+        this.mThumbPosition = thumbPosition;
+    }
+
+    @Override
+    public int getCount() {
+        return mImageUrls.size();
+    }
+
+    public String getImageUrl(int position) {
+        return mImageUrls.get(position);
+    }
+
+    public List<String> getImageUrls() {
+        return mImageUrls;
+    }
+
+    @Override
+    public Object instantiateItem(ViewGroup container, int position) {
+        ItemGalleryPhotoBinding binding = DataBindingUtil.inflate(mLayoutInflater,
+                R.layout.item_gallery_photo, container, false);
+        binding.setImageViewModel(new ImageViewModel(mImageUrls.get(position),
+                position == mThumbPosition ? mThumbUrl : null));
+        binding.executePendingBindings();
+
+        container.addView(binding.photoView);
+
+        return binding.photoView;
+    }
+
+    @Override
+    public void destroyItem(ViewGroup container, int position, Object object) {
+        PhotoView photoView = (PhotoView) object;
+        container.removeView(photoView);
+        photoView.clear();
+    }
+
+    @Override
+    public boolean isViewFromObject(View view, Object object) {
+        return view == object;
+    }
+}
@@ -4,6 +4,8 @@ import android.app.Activity;
 
 import com.google.common.base.Preconditions;
 
+import java.util.List;
+
 import me.ykrank.s1next.data.api.model.Post;
 import me.ykrank.s1next.view.adapter.delegate.PostAdapterDelegate;
 import me.ykrank.s1next.view.adapter.delegate.PostFooterProgressAdapterDelegate;
@@ -39,6 +41,64 @@ public final class PostListRecyclerViewAdapter extends BaseRecyclerViewAdapter {
         }
     }
 
+    /**
+     * Returns the largest post id in this page, or {@code -1} if we have no posts.
+     */
+    public long getLastPostId() {
+        long lastPostId = -1;
+        for (Object object : getDataSet()) {
+            if (object instanceof Post) {
+                lastPostId = Math.max(lastPostId, Long.parseLong(((Post) object).getId()));
+            }
+        }
+        return lastPostId;
+    }
+
+    /**
+     * Appends new posts (before the pending posts and the footer progress if they are shown).
+     */
+    public void appendPosts(List<Post> posts) {
+        if (posts.isEmpty()) {
+            return;
+        }
+        int position = getItemCount();
+        if (position > 0 && getItem(position - 1) instanceof FooterProgressItem) {
+            position--;
+        }
+        while (position > 0 && getItem(position - 1) instanceof Post
+                && ((Post) getItem(position - 1)).isPending()) {
+            position--;
+        }
+        getDataSet().addAll(position, posts);
+        notifyItemRangeInserted(position, posts.size());
+    }
+
+    /**
+     * Replaces the pending posts (see {@link Post#isPending()}) at the end of this page
+     * (before the footer progress if it is shown), in the data set itself
+     * as {@link #appendPosts(List)} does.
+     */
+    public void setPendingPosts(List<Post> pendingPosts) {
+        List<Object> dataSet = getDataSet();
+        int end = dataSet.size();
+        if (end > 0 && dataSet.get(end - 1) instanceof FooterProgressItem) {
+            end--;
+        }
+        int start = end;
+        while (start > 0 && dataSet.get(start - 1) instanceof Post
+                && ((Post) dataSet.get(start - 1)).isPending()) {
+            start--;
+        }
+        if (start < end) {
+            dataSet.subList(start, end).clear();
+            notifyItemRangeRemoved(start, end - start);
+        }
+        if (!pendingPosts.isEmpty()) {
+            dataSet.addAll(start, pendingPosts);
+            notifyItemRangeInserted(start, pendingPosts.size());
+        }
+    }
+
     public void showFooterProgress() {
         int position = getItemCount() - 1;
         Preconditions.checkState(getItem(position) != null);
@@ -0,0 +1,118 @@
+package me.ykrank.s1next.view.dialog;
+
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.content.Context;
+import android.databinding.DataBindingUtil;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v4.app.DialogFragment;
+import android.support.v4.app.FragmentActivity;
+import android.text.TextUtils;
+import android.widget.Toast;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.ykrank.s1next.R;
+import me.ykrank.s1next.data.db.ContentFilterDbWrapper;
+import me.ykrank.s1next.data.db.dbmodel.BlackList;
+import me.ykrank.s1next.data.db.dbmodel.ContentFilter;
+import me.ykrank.s1next.databinding.DialogContentFilterBinding;
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.util.L;
+import me.ykrank.s1next.util.RxJavaUtil;
+import rx.Subscription;
+
+/**
+ * A dialog lets the user edit the {@link ContentFilter}s, one keyword per line
+ * and {@code /pattern/} for regular expression.
+ */
+public final class ContentFilterDialogFragment extends DialogFragment {
+
+    private static final String TAG = ContentFilterDialogFragment.class.getName();
+
+    private Subscription mSubscription;
+
+    public static void showContentFilterDialog(FragmentActivity fragmentActivity) {
+        new ContentFilterDialogFragment().show(fragmentActivity.getSupportFragmentManager(),
+                ContentFilterDialogFragment.TAG);
+    }
+
+    @NonNull
+    @Override
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+        DialogContentFilterBinding binding = DataBindingUtil.inflate(getActivity().getLayoutInflater(),
+                R.layout.dialog_content_filter, null, false);
+        if (savedInstanceState == null) {
+            mSubscription = RxJavaUtil.workWithUiResult(AppSchedulers.database(),
+                    () -> ContentFilterDbWrapper.getInstance().getAllContentFilters(),
+                    filters -> {
+                        List<String> lines = new ArrayList<>();
+                        boolean delete = false;
+                        for (ContentFilter filter : filters) {
+                            lines.add(filter.regex ? "/" + filter.word + "/" : filter.word);
+                            delete |= filter.post == BlackList.DEL_POST;
+                        }
+                        binding.words.setText(TextUtils.join("\n", lines));
+                        binding.switchDelete.setChecked(delete);
+                    }, L::e);
+        }
+
+        Context context = getContext().getApplicationContext();
+        return new AlertDialog.Builder(getContext())
+                .setTitle(R.string.pref_content_filters)
+                .setView(binding.getRoot())
+                .setPositiveButton(android.R.string.ok, (dialog, which) -> {
+                    List<ContentFilter> filters = parse(binding.words.getText().toString(),
+                            binding.switchDelete.isChecked());
+                    RxJavaUtil.workWithUiThread(AppSchedulers.database(), () -> save(filters),
+                            () -> Toast.makeText(context, R.string.content_filter_refresh_warn,
+                                    Toast.LENGTH_SHORT).show(), L::e);
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .create();
+    }
+
+    @Override
+    public void onDestroy() {
+        RxJavaUtil.unsubscribeIfNotNull(mSubscription);
+        super.onDestroy();
+    }
+
+    private static List<ContentFilter> parse(String text, boolean delete) {
+        @BlackList.PostFLag int post = delete ? BlackList.DEL_POST : BlackList.HIDE_POST;
+        @BlackList.ForumFLag int forum = delete ? BlackList.DEL_FORUM : BlackList.HIDE_FORUM;
+        List<ContentFilter> filters = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            line = line.trim();
+            boolean regex = line.length() > 2 && line.startsWith("/") && line.endsWith("/");
+            String word = regex ? line.substring(1, line.length() - 1) : line;
+            if (!word.isEmpty()) {
+                filters.add(new ContentFilter(word, regex, post, forum));
+            }
+        }
+        return filters;
+    }
+
+    /**
+     * Only saves the rules which are new or changed, so the matcher is updated incrementally.
+     */
+    private static void save(List<ContentFilter> filters) {
+        ContentFilterDbWrapper dbWrapper = ContentFilterDbWrapper.getInstance();
+        Map<String, ContentFilter> oldFilters = new LinkedHashMap<>();
+        for (ContentFilter filter : dbWrapper.getAllContentFilters()) {
+            oldFilters.put(filter.word, filter);
+        }
+        for (ContentFilter filter : filters) {
+            ContentFilter oldFilter = oldFilters.remove(filter.word);
+            if (oldFilter == null || oldFilter.regex != filter.regex
+                    || oldFilter.post != filter.post || oldFilter.forum != filter.forum) {
+                dbWrapper.saveContentFilter(filter);
+            }
+        }
+        dbWrapper.delContentFilters(new ArrayList<>(oldFilters.values()));
+    }
+}
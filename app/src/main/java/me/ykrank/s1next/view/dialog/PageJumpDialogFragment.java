@@ -8,15 +8,22 @@ import android.databinding.DataBindingUtil;
 import android.os.Bundle;
 import android.support.annotation.CallSuper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.DialogFragment;
 import android.text.TextUtils;
+import android.view.View;
 import android.widget.EditText;
 import android.widget.SeekBar;
 
+import me.ykrank.s1next.BR;
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.databinding.DialogPageJumpBinding;
+import me.ykrank.s1next.util.L;
+import me.ykrank.s1next.util.RxJavaUtil;
 import me.ykrank.s1next.util.ViewUtil;
 import me.ykrank.s1next.viewmodel.PageJumpViewModel;
+import rx.Observable;
+import rx.Subscription;
 
 /**
  * A dialog shows {@link SeekBar} and {@link EditText} to
@@ -24,6 +31,13 @@ import me.ykrank.s1next.viewmodel.PageJumpViewModel;
  * <p>
  * Host class should implement {@link OnPageJumpedListener}
  * in order to to handle the page jump event.
+ * <p>
+ * If floor jump is enabled, it also shows an {@link EditText} for the floor
+ * number ({@link me.ykrank.s1next.data.api.model.Post#getCount()}) and
+ * host class should implement {@link OnFloorJumpedListener} as well.
+ * <p>
+ * If host class implements {@link PageSummaryProvider}, what the selected page
+ * looks like is shown while user drags the {@link SeekBar}.
  */
 public final class PageJumpDialogFragment extends DialogFragment {
 
@@ -31,6 +45,7 @@ public final class PageJumpDialogFragment extends DialogFragment {
 
     private static final String ARG_TOTAL_PAGES = "total_pages";
     private static final String ARG_CURRENT_PAGE = "current_page";
+    private static final String ARG_FLOOR_JUMP_ENABLED = "floor_jump_enabled";
 
     /**
      * The serialization (saved instance state) Bundle key representing
@@ -40,16 +55,21 @@ public final class PageJumpDialogFragment extends DialogFragment {
 
     private PageJumpViewModel mPageJumpViewModel;
 
+    private DialogPageJumpBinding mBinding;
+
+    private Subscription mSamplingSubscription;
+
     public PageJumpDialogFragment() {
         // Every fragment must have an empty constructor, so it
         // can be instantiated when restoring its activity's state.
     }
 
     @SuppressLint("ValidFragment")
-    public PageJumpDialogFragment(int totalPages, int currentPage) {
+    public PageJumpDialogFragment(int totalPages, int currentPage, boolean floorJumpEnabled) {
         Bundle bundle = new Bundle();
         bundle.putInt(ARG_TOTAL_PAGES, totalPages);
         bundle.putInt(ARG_CURRENT_PAGE, currentPage);
+        bundle.putBoolean(ARG_FLOOR_JUMP_ENABLED, floorJumpEnabled);
         setArguments(bundle);
     }
 
@@ -70,12 +90,33 @@ public final class PageJumpDialogFragment extends DialogFragment {
         mPageJumpViewModel = new PageJumpViewModel(getArguments().getInt(ARG_TOTAL_PAGES) - 1,
                 seekBarProgress);
         binding.setPageJumpViewModel(mPageJumpViewModel);
+        boolean floorJumpEnabled = getArguments().getBoolean(ARG_FLOOR_JUMP_ENABLED);
+        binding.floor.setVisibility(floorJumpEnabled ? View.VISIBLE : View.GONE);
+        mBinding = binding;
+        if (getParentFragment() instanceof PageSummaryProvider) {
+            showPageSummary();
+            mPageJumpViewModel.addOnPropertyChangedCallback(
+                    new android.databinding.Observable.OnPropertyChangedCallback() {
+                        @Override
+                        public void onPropertyChanged(android.databinding.Observable sender,
+                                                      int propertyId) {
+                            if (propertyId == BR.seekBarProgressText
+                                    || propertyId == BR.seekBarProgress) {
+                                showPageSummary();
+                            }
+                        }
+                    });
+        }
 
         AlertDialog alertDialog = new AlertDialog.Builder(getContext())
                 .setTitle(R.string.menu_page_jump)
                 .setView(binding.getRoot())
                 .setPositiveButton(R.string.dialog_button_text_jump, (dialog, which) -> {
-                    if (!TextUtils.isEmpty(binding.value.getText())) {
+                    if (floorJumpEnabled && !TextUtils.isEmpty(binding.floor.getText())) {
+                        // the floor wins if user has entered both
+                        ((OnFloorJumpedListener) getParentFragment()).onFloorJumped(
+                                Integer.parseInt(binding.floor.getText().toString()));
+                    } else if (!TextUtils.isEmpty(binding.value.getText())) {
                         ((OnPageJumpedListener) getParentFragment()).onPageJumped(
                                 mPageJumpViewModel.getSeekBarProgress());
                     }
@@ -84,9 +125,36 @@ public final class PageJumpDialogFragment extends DialogFragment {
                 .create();
         ViewUtil.consumeRunnableWhenImeActionPerformed(binding.value, () ->
                 alertDialog.getButton(DialogInterface.BUTTON_POSITIVE).performClick());
+        ViewUtil.consumeRunnableWhenImeActionPerformed(binding.floor, () ->
+                alertDialog.getButton(DialogInterface.BUTTON_POSITIVE).performClick());
         return alertDialog;
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+
+        if (getParentFragment() instanceof PageSummaryProvider) {
+            mSamplingSubscription = ((PageSummaryProvider) getParentFragment())
+                    .samplePageSummaries()
+                    .subscribe(v -> showPageSummary(), L::e);
+        }
+    }
+
+    @Override
+    public void onStop() {
+        RxJavaUtil.unsubscribeIfNotNull(mSamplingSubscription);
+
+        super.onStop();
+    }
+
+    private void showPageSummary() {
+        CharSequence summary = ((PageSummaryProvider) getParentFragment()).getPageSummary(
+                mPageJumpViewModel.getSeekBarProgress());
+        mBinding.summary.setVisibility(summary == null ? View.GONE : View.VISIBLE);
+        mBinding.summary.setText(summary);
+    }
+
     @Override
     @CallSuper
     public void onSaveInstanceState(Bundle outState) {
@@ -107,4 +175,37 @@ public final class PageJumpDialogFragment extends DialogFragment {
          */
         void onPageJumped(int position);
     }
+
+    /**
+     * Callback interface for responding to floor jump.
+     */
+    public interface OnFloorJumpedListener {
+
+        /**
+         * This method will be invoked when a floor is entered.
+         *
+         * @param floor The 1-based floor number.
+         */
+        void onFloorJumped(int floor);
+    }
+
+    /**
+     * Provides what each page looks like without loading it.
+     */
+    public interface PageSummaryProvider {
+
+        /**
+         * @param position Position index of the page.
+         * @return The summary of this page, or {@code null} if we don't know.
+         */
+        @Nullable
+        CharSequence getPageSummary(int position);
+
+        /**
+         * Loads the summaries of more pages in background.
+         *
+         * @return Emits after each summary is loaded.
+         */
+        Observable<Void> samplePageSummaries();
+    }
 }
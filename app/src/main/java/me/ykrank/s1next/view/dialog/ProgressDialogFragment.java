@@ -7,27 +7,32 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.support.annotation.CallSuper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.design.widget.Snackbar;
 import android.support.v4.app.DialogFragment;
 import android.widget.Toast;
 
 import me.ykrank.s1next.App;
 import me.ykrank.s1next.AppComponent;
+import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.User;
 import me.ykrank.s1next.data.api.ApiFlatTransformer;
 import me.ykrank.s1next.data.api.S1Service;
 import me.ykrank.s1next.data.api.UserValidator;
 import me.ykrank.s1next.data.api.model.wrapper.ResultWrapper;
+import me.ykrank.s1next.data.db.dbmodel.OutboxItem;
+import me.ykrank.s1next.util.AppSchedulers;
 import me.ykrank.s1next.util.ErrorUtil;
 import me.ykrank.s1next.util.RxJavaUtil;
 import me.ykrank.s1next.view.activity.BaseActivity;
 import me.ykrank.s1next.view.fragment.BaseRecyclerViewFragment;
 import me.ykrank.s1next.view.internal.CoordinatorLayoutAnchorDelegate;
+import me.ykrank.s1next.widget.Outbox;
+import me.ykrank.s1next.widget.PostFormPrefetcher;
 import rx.Observable;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.functions.Func1;
-import rx.schedulers.Schedulers;
 
 /**
  * A dialog shows {@link ProgressDialog}.
@@ -44,8 +49,12 @@ abstract class ProgressDialogFragment<D> extends DialogFragment {
 
     UserValidator mUserValidator;
 
+    PostFormPrefetcher mPostFormPrefetcher;
+
     private User mUser;
 
+    private Outbox mOutbox;
+
     private Subscription mSubscription;
 
     @Override
@@ -56,6 +65,8 @@ abstract class ProgressDialogFragment<D> extends DialogFragment {
         mS1Service = appComponent.getS1Service();
         mUser = appComponent.getUser();
         mUserValidator = appComponent.getUserValidator();
+        mPostFormPrefetcher = appComponent.getPostFormPrefetcher();
+        mOutbox = appComponent.getOutbox();
 
         // retain this Fragment
         setRetainInstance(true);
@@ -95,7 +106,7 @@ abstract class ProgressDialogFragment<D> extends DialogFragment {
      * @see BaseRecyclerViewFragment#load()
      */
     private void request() {
-        mSubscription = getSourceObservable().subscribeOn(Schedulers.io())
+        mSubscription = getSourceObservable().subscribeOn(AppSchedulers.network())
                 .observeOn(AndroidSchedulers.mainThread())
                 .doAfterTerminate(this::finallyDo)
                 .subscribe(this::onNext, this::onError);
@@ -107,10 +118,13 @@ abstract class ProgressDialogFragment<D> extends DialogFragment {
     abstract Observable<D> getSourceObservable();
 
     /**
-     * @see ApiFlatTransformer#flatMappedWithAuthenticityToken(S1Service, UserValidator, User, Func1) 
+     * Joins the authenticity token request started by {@link PostFormPrefetcher} if any.
+     *
+     * @see ApiFlatTransformer#flatMappedWithAuthenticityToken(Observable, UserValidator, User, Func1)
      */
     final Observable<ResultWrapper> flatMappedWithAuthenticityToken(Func1<String, Observable<ResultWrapper>> func) {
-        return ApiFlatTransformer.flatMappedWithAuthenticityToken(mS1Service, mUserValidator, mUser, func);
+        return ApiFlatTransformer.flatMappedWithAuthenticityToken(
+                mPostFormPrefetcher.refreshAuthenticityToken(), mUserValidator, mUser, func);
     }
 
     /**
@@ -122,7 +136,31 @@ abstract class ProgressDialogFragment<D> extends DialogFragment {
      * @see BaseRecyclerViewFragment#onError(Throwable)
      */
     void onError(Throwable throwable) {
-        showShortText(getString(ErrorUtil.parse(throwable)));
+        OutboxItem outboxItem = Outbox.isNotSent(throwable) ? getOutboxItem() : null;
+        if (outboxItem != null) {
+            mOutbox.enqueue(outboxItem);
+            onQueued();
+        } else {
+            showShortText(getString(ErrorUtil.parse(throwable)));
+        }
+    }
+
+    /**
+     * Returns what to send later if this request fails before it reaches the server
+     * (see {@link Outbox#isNotSent(Throwable)}), or {@code null} if it should not be sent later.
+     *
+     * @see Outbox
+     */
+    @Nullable
+    OutboxItem getOutboxItem() {
+        return null;
+    }
+
+    /**
+     * Called after this request is queued in {@link Outbox}, see {@link #getOutboxItem()}.
+     */
+    void onQueued() {
+        showShortTextAndFinishCurrentActivity(getText(R.string.message_outbox_queued));
     }
 
     /**
@@ -8,9 +8,9 @@ import org.apache.commons.lang3.StringUtils;
 
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.api.Api;
-import me.ykrank.s1next.data.api.model.Quote;
 import me.ykrank.s1next.data.api.model.Result;
 import me.ykrank.s1next.data.api.model.wrapper.ResultWrapper;
+import me.ykrank.s1next.data.db.dbmodel.OutboxItem;
 import rx.Observable;
 
 /**
@@ -51,13 +51,12 @@ public final class ReplyRequestDialogFragment extends ProgressDialogFragment<Res
         if (TextUtils.isEmpty(quotePostId)) {
             return flatMappedWithAuthenticityToken(s -> mS1Service.reply(s, threadId, reply));
         } else {
-            return mS1Service.getQuoteInfo(threadId, quotePostId).flatMap(s -> {
-                Quote quote = Quote.fromXmlString(s);
-                return flatMappedWithAuthenticityToken(token ->
-                        mS1Service.replyQuote(token, threadId, reply, quote.getEncodedUserId(),
-                                quote.getQuoteMessage(), StringUtils.abbreviate(reply,
-                                        Api.REPLY_NOTIFICATION_MAX_LENGTH)));
-            });
+            // usually loaded when user started to write, see ReplyFragment
+            return mPostFormPrefetcher.getQuote(threadId, quotePostId).flatMap(quote ->
+                    flatMappedWithAuthenticityToken(token ->
+                            mS1Service.replyQuote(token, threadId, reply, quote.getEncodedUserId(),
+                                    quote.getQuoteMessage(), StringUtils.abbreviate(reply,
+                                            Api.REPLY_NOTIFICATION_MAX_LENGTH))));
         }
     }
 
@@ -70,4 +69,10 @@ public final class ReplyRequestDialogFragment extends ProgressDialogFragment<Res
             showShortText(result.getMessage());
         }
     }
+
+    @Override
+    OutboxItem getOutboxItem() {
+        return OutboxItem.newReply(getArguments().getString(ARG_THREAD_ID),
+                getArguments().getString(ARG_QUOTE_POST_ID), getArguments().getString(ARG_REPLY));
+    }
 }
@@ -0,0 +1,51 @@
+package me.ykrank.s1next.view.dialog;
+
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v4.app.DialogFragment;
+import android.support.v4.app.FragmentActivity;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.TypefaceSpan;
+
+import me.ykrank.s1next.App;
+import me.ykrank.s1next.AppComponent;
+import me.ykrank.s1next.R;
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.widget.StartupTimeline;
+
+/**
+ * A debug dialog shows {@link StartupTimeline}, page load stats, network quality,
+ * thread pool metrics and JSON parse stats.
+ */
+public final class StartupTimelineDialogFragment extends DialogFragment {
+
+    private static final String TAG = StartupTimelineDialogFragment.class.getName();
+
+    public static void showStartupTimelineDialog(FragmentActivity fragmentActivity) {
+        new StartupTimelineDialogFragment().show(fragmentActivity.getSupportFragmentManager(),
+                StartupTimelineDialogFragment.TAG);
+    }
+
+    @NonNull
+    @Override
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+        AppComponent appComponent = App.getAppComponent(getContext());
+        String text = StartupTimeline.dump() + "\n"
+                + appComponent.getRequestScheduler().getPageLoadStats() + "\n\n"
+                + appComponent.getNetworkQualityEstimator() + "\n\n"
+                + AppSchedulers.dumpMetrics() + "\n\n"
+                + appComponent.getApiConverterFactory().dumpStats();
+        SpannableString message = new SpannableString(text);
+        message.setSpan(new TypefaceSpan("monospace"), 0, text.length(),
+                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+        return new AlertDialog.Builder(getContext())
+                .setTitle(R.string.pref_startup_timeline)
+                .setMessage(message)
+                .setPositiveButton(android.R.string.ok, null)
+                .create();
+    }
+}
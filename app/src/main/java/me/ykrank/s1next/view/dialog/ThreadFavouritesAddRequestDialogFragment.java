@@ -5,6 +5,7 @@ import android.os.Bundle;
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.api.model.Result;
 import me.ykrank.s1next.data.api.model.wrapper.ResultWrapper;
+import me.ykrank.s1next.data.db.dbmodel.OutboxItem;
 import rx.Observable;
 
 /**
@@ -51,6 +52,19 @@ public final class ThreadFavouritesAddRequestDialogFragment
         showShortText(result.getMessage());
     }
 
+    @Override
+    OutboxItem getOutboxItem() {
+        return OutboxItem.newFavourite(getArguments().getString(ARG_THREAD_ID),
+                getArguments().getString(ARG_REMARK));
+    }
+
+    @Override
+    void onQueued() {
+        ((ThreadFavouritesAddDialogFragment) getFragmentManager().findFragmentByTag(
+                ThreadFavouritesAddDialogFragment.TAG)).dismissAllowingStateLoss();
+        showShortText(getText(R.string.message_outbox_queued));
+    }
+
     @Override
     protected CharSequence getProgressMessage() {
         return getText(R.string.dialog_progress_message_favourites_add);
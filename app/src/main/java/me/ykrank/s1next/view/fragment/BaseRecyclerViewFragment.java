@@ -2,8 +2,11 @@ package me.ykrank.s1next.view.fragment;
 
 import android.databinding.DataBindingUtil;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.CallSuper;
+import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
+import android.support.annotation.WorkerThread;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
 import android.support.v4.widget.SwipeRefreshLayout;
@@ -18,20 +21,28 @@ import android.view.ViewGroup;
 
 import com.google.common.base.Preconditions;
 
+import java.util.concurrent.TimeUnit;
+
 import me.ykrank.s1next.App;
 import me.ykrank.s1next.AppComponent;
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.api.S1Service;
 import me.ykrank.s1next.data.api.model.Result;
 import me.ykrank.s1next.databinding.FragmentBaseBinding;
+import me.ykrank.s1next.util.AppSchedulers;
 import me.ykrank.s1next.util.ErrorUtil;
+import me.ykrank.s1next.util.L;
 import me.ykrank.s1next.util.RxJavaUtil;
 import me.ykrank.s1next.view.fragment.headless.DataRetainedFragment;
 import me.ykrank.s1next.view.internal.LoadingViewModelBindingDelegate;
 import me.ykrank.s1next.view.internal.LoadingViewModelBindingDelegateBaseImpl;
 import me.ykrank.s1next.viewmodel.LoadingViewModel;
+import me.ykrank.s1next.widget.PageLoadStats;
+import me.ykrank.s1next.widget.RequestScheduler;
+import me.ykrank.s1next.widget.UiSnapshotStore;
 import rx.Observable;
 import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
 
 /**
  * A base Fragment includes {@link SwipeRefreshLayout} to refresh when loading data.
@@ -39,6 +50,14 @@ import rx.Subscription;
  * <p>
  * We must call {@link #destroyRetainedFragment()}) if used in {@link android.support.v4.view.ViewPager}
  * otherwise leads memory leak.
+ * <p>
+ * Pages which are not visible to user (offscreen pages in {@link android.support.v4.view.ViewPager})
+ * don't load until they become visible or the network is idle,
+ * and their loading is cancelled once they are destroyed.
+ * <p>
+ * The data is also persisted by {@link UiSnapshotStore} when saving instance state
+ * (if {@link #getUiSnapshotType()} is provided), so if our process is killed in background,
+ * this page is recreated with the same data (and scroll position) without loading.
  *
  * @param <D> The data we want to load.
  */
@@ -50,8 +69,21 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
      */
     private static final String STATE_LOADING_VIEW_MODEL = "loading_view_model";
 
+    private static final String STATE_UI_SNAPSHOT_KEY = "ui_snapshot_key";
+    private static final String STATE_PROCESS_TOKEN = "process_token";
+
+    /**
+     * Wait a moment after the network became idle before loading an invisible page,
+     * in case the user is flinging through pages.
+     */
+    private static final long DEFERRED_LOAD_DELAY_MILLIS = 300;
+
     S1Service mS1Service;
 
+    private RequestScheduler mRequestScheduler;
+    private PageLoadStats mPageLoadStats;
+    private UiSnapshotStore mUiSnapshotStore;
+
     private LoadingViewModelBindingDelegate mLoadingViewModelBindingDelegate;
     private LoadingViewModel mLoadingViewModel;
 
@@ -60,8 +92,28 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
      */
     private DataRetainedFragment<D> mDataRetainedFragment;
 
+    /**
+     * The key of this page's data in {@link UiSnapshotStore}.
+     */
+    private String mUiSnapshotKey;
+
     private Subscription mSubscription;
 
+    /**
+     * Subscribes to the network idle when we deferred loading.
+     */
+    private Subscription mDeferredLoadSubscription;
+    /**
+     * Whether the running load is a prefetch, as this page was not visible when it started.
+     */
+    private boolean mPrefetching;
+    /**
+     * Whether to load when this page becomes visible, as its prefetch failed.
+     */
+    private boolean mLoadWhenVisible;
+    private Subscription mSnapshotSubscription;
+    private long mLoadStartTime;
+
 
     @Override
     public final View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -76,6 +128,9 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
         super.onViewCreated(view, savedInstanceState);
         AppComponent appComponent = App.getAppComponent(getContext());
         mS1Service = appComponent.getS1Service();
+        mRequestScheduler = appComponent.getRequestScheduler();
+        mPageLoadStats = mRequestScheduler.getPageLoadStats();
+        mUiSnapshotStore = appComponent.getUiSnapshotStore();
 
         mLoadingViewModelBindingDelegate.getSwipeRefreshLayout().setOnRefreshListener(
                 this::startSwipeRefresh);
@@ -94,6 +149,10 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
             mLoadingViewModel = new LoadingViewModel();
         } else {
             mLoadingViewModel = savedInstanceState.getParcelable(STATE_LOADING_VIEW_MODEL);
+            mUiSnapshotKey = savedInstanceState.getString(STATE_UI_SNAPSHOT_KEY);
+        }
+        if (mUiSnapshotKey == null) {
+            mUiSnapshotKey = UiSnapshotStore.newKey();
         }
 
         // because we can't retain Fragments that are nested in other Fragments
@@ -109,8 +168,11 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
             fragmentManager.beginTransaction().add(mDataRetainedFragment, dataRetainedFragmentTag)
                     .commitAllowingStateLoss();
 
-            // start to load data because we start this Fragment the first time
-            mLoadingViewModel.setLoading(LoadingViewModel.LOADING_FIRST_TIME);
+            if (!shouldRestoreUiSnapshot(savedInstanceState) || !restoreUiSnapshot()) {
+                // start to load data because we start this Fragment the first time
+                mLoadingViewModel.setLoading(LoadingViewModel.LOADING_FIRST_TIME);
+                showSnapshot();
+            }
         } else {
             mDataRetainedFragment = (DataRetainedFragment<D>) fragment;
 
@@ -119,8 +181,8 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
                 int loading = mLoadingViewModel.getLoading();
                 onNext(mDataRetainedFragment.data);
                 mLoadingViewModel.setLoading(loading);
-            } else {
-                if (!mDataRetainedFragment.stale) {
+            } else if (!mDataRetainedFragment.stale) {
+                if (!shouldRestoreUiSnapshot(savedInstanceState) || !restoreUiSnapshot()) {
                     // start to load data because the retained Fragment was killed by system
                     // and we have no data to load
                     mLoadingViewModel.setLoading(LoadingViewModel.LOADING_FIRST_TIME);
@@ -129,8 +191,32 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
         }
 
         mLoadingViewModelBindingDelegate.setLoadingViewModel(mLoadingViewModel);
+        startLoadingIfNeeded();
+    }
+
+    private void startLoadingIfNeeded() {
         if (isLoading()) {
-            load();
+            if (getUserVisibleHint()) {
+                load();
+            } else {
+                deferLoad();
+            }
+        }
+    }
+
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+
+        if (!isVisibleToUser) {
+            return;
+        }
+        if (mDeferredLoadSubscription != null || mLoadWhenVisible) {
+            startDeferredLoad(true);
+        } else if (mPrefetching && mSubscription != null && !mSubscription.isUnsubscribed()) {
+            // user is waiting for it now, load it again as a visible page
+            mSubscription.unsubscribe();
+            subscribeSource(false);
         }
     }
 
@@ -138,7 +224,23 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
     public void onDestroy() {
         //remove OnRefreshListener
         mLoadingViewModelBindingDelegate.getSwipeRefreshLayout().setOnRefreshListener(null);
-        RxJavaUtil.unsubscribeIfNotNull(mSubscription);
+        RxJavaUtil.unsubscribeIfNotNull(mSnapshotSubscription);
+        if (mDeferredLoadSubscription != null) {
+            mDeferredLoadSubscription.unsubscribe();
+            mDeferredLoadSubscription = null;
+            mPageLoadStats.onDeferredLoadDropped();
+        }
+        if (mSubscription != null && !mSubscription.isUnsubscribed()) {
+            // this page left the offscreen window of ViewPager (or was closed)
+            // before loading finished
+            mSubscription.unsubscribe();
+            mPageLoadStats.onLoadCancelled();
+        }
+        if (mUiSnapshotStore != null && (isRemoving() || getActivity().isFinishing())) {
+            // this page will never be recreated from its saved instance state
+            // (or only recreated in this process, which has the retained data)
+            mUiSnapshotStore.delete(mUiSnapshotKey);
+        }
 
         super.onDestroy();
     }
@@ -175,6 +277,61 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
         super.onSaveInstanceState(outState);
 
         outState.putParcelable(STATE_LOADING_VIEW_MODEL, mLoadingViewModel);
+        if (mUiSnapshotKey != null) {
+            outState.putString(STATE_UI_SNAPSHOT_KEY, mUiSnapshotKey);
+            outState.putString(STATE_PROCESS_TOKEN, UiSnapshotStore.getProcessToken());
+            // our process may be killed in background after this
+            mUiSnapshotStore.commit(mUiSnapshotKey);
+        }
+    }
+
+    /**
+     * Whether our process was killed after {@link #onSaveInstanceState(Bundle)},
+     * otherwise the data is retained by {@link DataRetainedFragment} if we have.
+     */
+    private boolean shouldRestoreUiSnapshot(@Nullable Bundle savedInstanceState) {
+        return savedInstanceState != null && !UiSnapshotStore.getProcessToken().equals(
+                savedInstanceState.getString(STATE_PROCESS_TOKEN));
+    }
+
+    /**
+     * Reads the data persisted by {@link #onSaveInstanceState(Bundle)} and shows it
+     * before the first layout, the loading state is restored as well.
+     *
+     * @return Whether there is such data.
+     */
+    private boolean restoreUiSnapshot() {
+        Class<D> type = getUiSnapshotType();
+        D data = type == null ? null : mUiSnapshotStore.read(mUiSnapshotKey, type);
+        if (data == null) {
+            return false;
+        }
+        int loading = mLoadingViewModel.getLoading();
+        onNext(data);
+        mLoadingViewModel.setLoading(loading);
+        return true;
+    }
+
+    /**
+     * Serializes this data for {@link UiSnapshotStore} in the thread which loaded it,
+     * before it is handed to main thread where the adapters share (and change) its lists.
+     */
+    @WorkerThread
+    final void stageUiSnapshot(D data) {
+        if (getUiSnapshotType() != null) {
+            mUiSnapshotStore.stage(mUiSnapshotKey, data);
+        }
+    }
+
+    /**
+     * Subclass can override this in order to persist its data by {@link UiSnapshotStore},
+     * the data is read back as this type.
+     *
+     * @return The type of the data, or {@code null} if the data should not be persisted.
+     */
+    @Nullable
+    Class<D> getUiSnapshotType() {
+        return null;
     }
 
     /**
@@ -230,14 +387,74 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
      * in oder to provider its own data source {@link Observable}.
      */
     private void load() {
+        if (mDeferredLoadSubscription != null) {
+            // user refreshed this page before it became visible
+            mDeferredLoadSubscription.unsubscribe();
+            mDeferredLoadSubscription = null;
+        }
+        mPageLoadStats.onLoadStarted(false, true);
+        subscribeSource(false);
+    }
+
+    /**
+     * @param prefetch Whether to load as a {@link me.ykrank.s1next.widget.RequestPriority#PREFETCH}
+     *                 request because this page is not visible.
+     */
+    private void subscribeSource(boolean prefetch) {
         // dismiss Snackbar in order to let user see the ProgressBar
         // when we start to load new data
         mCoordinatorLayoutAnchorDelegate.dismissSnackbarIfExist();
-        mSubscription = getSourceObservable()
+        mLoadStartTime = SystemClock.elapsedRealtime();
+        mPrefetching = prefetch;
+        mLoadWhenVisible = false;
+        Observable<D> source = getSourceObservable();
+        if (prefetch) {
+            source = source.compose(mRequestScheduler.prefetch());
+        }
+        mSubscription = source
+                .doOnNext(this::stageUiSnapshot)
                 .compose(RxJavaUtil.iOTransformer())
                 .doOnNext(mUserValidator::validateIntercept)
-                .doAfterTerminate(this::finallyDo)
-                .subscribe(this::onNext, this::onError);
+                .doOnCompleted(() -> onLoadFinished(true))
+                .doOnError(throwable -> onLoadFinished(false))
+                .doAfterTerminate(() -> {
+                    mPrefetching = false;
+                    if (!mLoadWhenVisible) {
+                        finallyDo();
+                    }
+                })
+                .subscribe(this::onNext, throwable -> {
+                    if (mPrefetching && !getUserVisibleHint()) {
+                        // cancelled (user navigated away) or failed before user saw this page,
+                        // keep loading state and try again when it becomes visible
+                        L.d("Prefetch of page failed", throwable);
+                        mLoadWhenVisible = true;
+                    } else {
+                        onError(throwable);
+                    }
+                });
+    }
+
+    /**
+     * Loads data after this page becomes visible, or prefetches it when the network
+     * is idle (still idle after {@link #DEFERRED_LOAD_DELAY_MILLIS}).
+     */
+    private void deferLoad() {
+        mDeferredLoadSubscription = Observable.timer(DEFERRED_LOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+                .concatMap(t -> mRequestScheduler.idle())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(v -> startDeferredLoad(false), L::e);
+    }
+
+    private void startDeferredLoad(boolean visible) {
+        RxJavaUtil.unsubscribeIfNotNull(mDeferredLoadSubscription);
+        mDeferredLoadSubscription = null;
+        mPageLoadStats.onLoadStarted(true, visible);
+        subscribeSource(!visible);
+    }
+
+    private void onLoadFinished(boolean succeeded) {
+        mPageLoadStats.onLoadFinished(succeeded, SystemClock.elapsedRealtime() - mLoadStartTime);
     }
 
     /**
@@ -251,6 +468,60 @@ public abstract class BaseRecyclerViewFragment<D> extends BaseFragment {
      */
     abstract Observable<D> getSourceObservable();
 
+    /**
+     * Shows the data saved last time (see {@link #loadSnapshotSync()} and {@link #loadSnapshot()})
+     * while the first loading is running, and revalidates it as if user refreshed.
+     */
+    private void showSnapshot() {
+        D snapshot = loadSnapshotSync();
+        if (snapshot != null) {
+            // shown before the first layout, without waiting for the database thread
+            onNext(snapshot);
+            mLoadingViewModel.setLoading(LoadingViewModel.LOADING_SWIPE_REFRESH);
+            return;
+        }
+        mSnapshotSubscription = Observable.fromCallable(this::loadSnapshot)
+                .subscribeOn(AppSchedulers.database())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(snapshot -> {
+                    // the first loading may have finished before
+                    if (snapshot != null && mDataRetainedFragment.data == null
+                            && mLoadingViewModel.getLoading() == LoadingViewModel.LOADING_FIRST_TIME) {
+                        onNext(snapshot);
+                        mLoadingViewModel.setLoading(LoadingViewModel.LOADING_SWIPE_REFRESH);
+                    }
+                }, L::e);
+    }
+
+    /**
+     * Subclass can override this to provide the data saved last time if it is
+     * cheap enough to read in main thread (e.g. a small file without database),
+     * which is shown before the first layout.
+     * <p>
+     * Called in main thread when this Fragment is started the first time.
+     *
+     * @return The snapshot, or {@code null} to fall back to {@link #loadSnapshot()}.
+     */
+    @Nullable
+    D loadSnapshotSync() {
+        return null;
+    }
+
+    /**
+     * Subclass can override this to provide the data saved last time, which is
+     * shown (through {@link #onNext(Object)}) before the first loading finished.
+     * <p>
+     * Called in {@link AppSchedulers#database()} when this Fragment is started
+     * the first time, while the first loading is running, if there is no
+     * {@link #loadSnapshotSync()}.
+     *
+     * @return The snapshot, or {@code null} if there is none.
+     */
+    @Nullable
+    D loadSnapshot() {
+        return null;
+    }
+
     /**
      * Called when a data was emitted from {@link #getSourceObservable()}.
      * <p>
@@ -84,7 +84,7 @@ abstract class BaseViewPagerFragment extends Fragment
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
             case R.id.menu_page_jump:
-                new PageJumpDialogFragment(mTotalPages, getCurrentPage()).show(
+                new PageJumpDialogFragment(mTotalPages, getCurrentPage(), isFloorJumpEnabled()).show(
                         getChildFragmentManager(), PageJumpDialogFragment.TAG);
 
                 return true;
@@ -127,6 +127,14 @@ abstract class BaseViewPagerFragment extends Fragment
         mViewPager.setCurrentItem(position);
     }
 
+    /**
+     * Subclass can override this to let user jump to a floor, in which case
+     * subclass should implement {@link PageJumpDialogFragment.OnFloorJumpedListener}.
+     */
+    boolean isFloorJumpEnabled() {
+        return false;
+    }
+
     /**
      * Disables the page jump menu if only has one page.
      */
@@ -4,10 +4,18 @@ import android.content.Context;
 import android.os.Bundle;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.View;
 
+import java.util.List;
+
+import me.ykrank.s1next.App;
+import me.ykrank.s1next.data.User;
+import me.ykrank.s1next.data.api.model.Favourite;
 import me.ykrank.s1next.data.api.model.collection.Favourites;
 import me.ykrank.s1next.data.api.model.wrapper.FavouritesWrapper;
+import me.ykrank.s1next.data.db.FavouriteMirrorDbWrapper;
+import me.ykrank.s1next.util.AppSchedulers;
 import me.ykrank.s1next.util.MathUtil;
 import me.ykrank.s1next.view.adapter.FavouriteRecyclerViewAdapter;
 import me.ykrank.s1next.view.internal.PagerCallback;
@@ -16,6 +24,9 @@ import rx.Observable;
 /**
  * A Fragment representing one of the pages of favourites.
  * <p>
+ * The page synced last time (see {@link me.ykrank.s1next.widget.FavouriteSyncJobService})
+ * is shown while loading, and each favourite shows how many replies the user hasn't seen.
+ * <p>
  * Activity or Fragment containing this must implement {@link PagerCallback}.
  */
 public final class FavouriteListPagerFragment extends BaseRecyclerViewFragment<FavouritesWrapper> {
@@ -28,6 +39,8 @@ public final class FavouriteListPagerFragment extends BaseRecyclerViewFragment<F
 
     private PagerCallback mPagerCallback;
 
+    private User mUser;
+
     public static FavouriteListPagerFragment newInstance(int pageNum) {
         FavouriteListPagerFragment fragment = new FavouriteListPagerFragment();
         Bundle bundle = new Bundle();
@@ -50,6 +63,7 @@ public final class FavouriteListPagerFragment extends BaseRecyclerViewFragment<F
         super.onViewCreated(view, savedInstanceState);
 
         mPageNum = getArguments().getInt(ARG_PAGE_NUM);
+        mUser = App.getAppComponent(getContext()).getUser();
 
         RecyclerView recyclerView = getRecyclerView();
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
@@ -64,9 +78,42 @@ public final class FavouriteListPagerFragment extends BaseRecyclerViewFragment<F
         mPagerCallback = null;
     }
 
+    @Override
+    FavouritesWrapper loadSnapshot() {
+        List<Favourite> favouriteList = FavouriteMirrorDbWrapper.getInstance().getFavourites(
+                mUser.getUid(), mPageNum);
+        if (favouriteList.isEmpty()) {
+            return null;
+        }
+        Favourites favourites = new Favourites();
+        favourites.setFavouriteList(favouriteList);
+        FavouritesWrapper wrapper = new FavouritesWrapper();
+        wrapper.setFavourites(favourites);
+        return wrapper;
+    }
+
+    @Override
+    Class<FavouritesWrapper> getUiSnapshotType() {
+        return FavouritesWrapper.class;
+    }
+
     @Override
     Observable<FavouritesWrapper> getSourceObservable() {
-        return mS1Service.getFavouritesWrapper(mPageNum);
+        String uid = mUser.getUid();
+        return mS1Service.getFavouritesWrapper(mPageNum)
+                .observeOn(AppSchedulers.database())
+                .doOnNext(wrapper -> {
+                    Favourites favourites = wrapper.getFavourites();
+                    if (favourites.getFavouriteList() != null && !TextUtils.isEmpty(uid)) {
+                        FavouriteMirrorDbWrapper dbWrapper = FavouriteMirrorDbWrapper.getInstance();
+                        // also sets how many new replies each favourite has
+                        dbWrapper.mergeFavourites(uid, mPageNum, favourites.getFavouriteList());
+                        if (favourites.getFavouritesPerPage() > 0) {
+                            dbWrapper.deletePagesAfter(uid, MathUtil.divide(favourites.getTotal(),
+                                    favourites.getFavouritesPerPage()));
+                        }
+                    }
+                });
     }
 
     @Override
@@ -79,9 +126,11 @@ public final class FavouriteListPagerFragment extends BaseRecyclerViewFragment<F
 
             mRecyclerAdapter.refreshDataSet(favourites.getFavouriteList(), true);
 
-            // update total page
-            mPagerCallback.setTotalPages(MathUtil.divide(favourites.getTotal(),
-                    favourites.getFavouritesPerPage()));
+            // update total page, the snapshot doesn't know it
+            if (favourites.getFavouritesPerPage() > 0) {
+                mPagerCallback.setTotalPages(MathUtil.divide(favourites.getTotal(),
+                        favourites.getFavouritesPerPage()));
+            }
         }
     }
 }
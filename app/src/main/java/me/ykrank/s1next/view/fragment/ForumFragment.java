@@ -13,16 +13,21 @@ import android.view.View;
 
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.api.Api;
+import me.ykrank.s1next.data.api.ForumGroupsSnapshot;
 import me.ykrank.s1next.data.api.model.collection.ForumGroups;
 import me.ykrank.s1next.data.api.model.wrapper.ForumGroupsWrapper;
 import me.ykrank.s1next.util.IntentUtil;
 import me.ykrank.s1next.view.activity.SearchActivity;
 import me.ykrank.s1next.view.adapter.ForumRecyclerViewAdapter;
 import me.ykrank.s1next.view.internal.ToolbarDropDownInterface;
+import me.ykrank.s1next.widget.StartupTimeline;
 import rx.Observable;
 
 /**
  * A Fragment represents forum list.
+ * <p>
+ * The forum list of last time (see {@link ForumGroupsSnapshot}) is shown at once
+ * when the app starts, then only the changed forums are updated after it's revalidated.
  */
 public final class ForumFragment extends BaseRecyclerViewFragment<ForumGroupsWrapper>
         implements ToolbarDropDownInterface.OnItemSelectedListener {
@@ -31,6 +36,7 @@ public final class ForumFragment extends BaseRecyclerViewFragment<ForumGroupsWra
 
     private ForumRecyclerViewAdapter mRecyclerAdapter;
     private ForumGroups mForumGroups;
+    private int mSelectedPosition;
 
     private ToolbarDropDownInterface.Callback mToolbarCallback;
 
@@ -80,18 +86,44 @@ public final class ForumFragment extends BaseRecyclerViewFragment<ForumGroupsWra
         }
     }
 
+    @Override
+    ForumGroupsWrapper loadSnapshotSync() {
+        ForumGroups forumGroups = ForumGroupsSnapshot.read(getContext());
+        if (forumGroups == null) {
+            return null;
+        }
+        ForumGroupsWrapper wrapper = new ForumGroupsWrapper();
+        wrapper.setForumGroups(forumGroups);
+        return wrapper;
+    }
+
     @Override
     Observable<ForumGroupsWrapper> getSourceObservable() {
-        return mS1Service.getForumGroupsWrapper();
+        Context context = getContext().getApplicationContext();
+        return mS1Service.getForumGroupsWrapper()
+                .doOnNext(wrapper -> {
+                    if (wrapper.getForumGroups() != null) {
+                        ForumGroupsSnapshot.write(context, wrapper.getForumGroups());
+                    }
+                });
     }
 
     @Override
     void onNext(ForumGroupsWrapper data) {
         super.onNext(data);
 
+        ForumGroups oldForumGroups = mForumGroups;
         mForumGroups = data.getForumGroups();
-        // host activity would call #onToolbarDropDownItemSelected(int) after
-        mToolbarCallback.setupToolbarDropDown(mForumGroups.getForumGroupNameList());
+        if (oldForumGroups != null && oldForumGroups.getForumGroupNameList().equals(
+                mForumGroups.getForumGroupNameList())) {
+            // categories unchanged (usually the snapshot was revalidated)
+            // so keep the drop down and let the adapter diff update the changed forums
+            onToolbarDropDownItemSelected(mSelectedPosition);
+        } else {
+            // host activity would call #onToolbarDropDownItemSelected(int) after
+            mToolbarCallback.setupToolbarDropDown(mForumGroups.getForumGroupNameList());
+        }
+        StartupTimeline.mark("First forum list");
     }
 
     /**
@@ -100,6 +132,7 @@ public final class ForumFragment extends BaseRecyclerViewFragment<ForumGroupsWra
      */
     @Override
     public void onToolbarDropDownItemSelected(int position) {
+        mSelectedPosition = position;
         if (position == 0) {
             mRecyclerAdapter.refreshDataSet(mForumGroups.getForumList(), true);
         } else {
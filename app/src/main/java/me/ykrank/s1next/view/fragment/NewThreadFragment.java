@@ -16,7 +16,6 @@ import javax.inject.Inject;
 
 import me.ykrank.s1next.App;
 import me.ykrank.s1next.R;
-import me.ykrank.s1next.data.api.S1Service;
 import me.ykrank.s1next.data.api.model.ThreadType;
 import me.ykrank.s1next.databinding.FragmentNewThreadBinding;
 import me.ykrank.s1next.util.L;
@@ -24,6 +23,7 @@ import me.ykrank.s1next.util.RxJavaUtil;
 import me.ykrank.s1next.view.adapter.ThreadTypeSpinnerAdapter;
 import me.ykrank.s1next.view.dialog.NewThreadRequestDialogFragment;
 import me.ykrank.s1next.view.dialog.ReplyRequestDialogFragment;
+import me.ykrank.s1next.widget.PostFormPrefetcher;
 import rx.Subscription;
 
 /**
@@ -38,7 +38,7 @@ public final class NewThreadFragment extends BasePostFragment {
     private int mForumId;
 
     @Inject
-    S1Service mS1Service;
+    PostFormPrefetcher mPostFormPrefetcher;
 
     private Subscription mSubscription;
 
@@ -68,6 +68,8 @@ public final class NewThreadFragment extends BasePostFragment {
         mForumId = getArguments().getInt(ARG_FORUM_ID);
 
         App.getAppComponent(getContext()).inject(this);
+        // load the authenticity token along with thread types, so sending is only one request
+        mPostFormPrefetcher.prefetchNewThread(mForumId);
         init();
     }
 
@@ -121,16 +123,9 @@ public final class NewThreadFragment extends BasePostFragment {
     }
 
     private void init() {
-        mSubscription = mS1Service.getNewThreadInfo(mForumId)
-                .map(ThreadType::fromXmlString)
+        mSubscription = mPostFormPrefetcher.getThreadTypes(mForumId)
                 .compose(RxJavaUtil.iOTransformer())
-                .subscribe(types -> {
-                    if (types == null || types.isEmpty()) {
-                        showRetrySnackbar(getString(R.string.message_network_error), v -> init());
-                    } else {
-                        setSpinner(types);
-                    }
-                }, e -> {
+                .subscribe(this::setSpinner, e -> {
                     L.e(e);
                     showRetrySnackbar(getString(R.string.message_network_error), v -> init());
                 });
@@ -8,6 +8,7 @@ import android.support.annotation.MainThread;
 import android.support.annotation.Nullable;
 import android.support.v4.app.FragmentManager;
 import android.text.TextUtils;
+import android.text.format.DateUtils;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -22,6 +23,7 @@ import me.ykrank.s1next.App;
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.User;
 import me.ykrank.s1next.data.api.Api;
+import me.ykrank.s1next.data.api.PageSizePolicy;
 import me.ykrank.s1next.data.api.model.Thread;
 import me.ykrank.s1next.data.api.model.ThreadLink;
 import me.ykrank.s1next.data.api.model.collection.Posts;
@@ -31,17 +33,25 @@ import me.ykrank.s1next.data.db.dbmodel.ReadProgress;
 import me.ykrank.s1next.data.event.BlackListAddEvent;
 import me.ykrank.s1next.data.event.QuoteEvent;
 import me.ykrank.s1next.data.pref.ReadProgressPreferencesManager;
+import me.ykrank.s1next.util.AppSchedulers;
 import me.ykrank.s1next.util.ClipboardUtil;
 import me.ykrank.s1next.util.IntentUtil;
+import me.ykrank.s1next.util.L;
 import me.ykrank.s1next.util.MathUtil;
 import me.ykrank.s1next.util.RxJavaUtil;
 import me.ykrank.s1next.util.StringUtil;
+import me.ykrank.s1next.view.activity.PostListActivity;
 import me.ykrank.s1next.view.activity.ReplyActivity;
 import me.ykrank.s1next.view.dialog.LoginPromptDialogFragment;
+import me.ykrank.s1next.view.dialog.PageJumpDialogFragment;
 import me.ykrank.s1next.view.dialog.ThreadAttachmentDialogFragment;
 import me.ykrank.s1next.view.dialog.ThreadFavouritesAddDialogFragment;
 import me.ykrank.s1next.view.internal.CoordinatorLayoutAnchorDelegate;
 import me.ykrank.s1next.widget.EventBus;
+import me.ykrank.s1next.widget.NavigationPrefetcher;
+import me.ykrank.s1next.widget.NetworkQualityEstimator;
+import me.ykrank.s1next.widget.PageSummaryCache;
+import rx.Observable;
 import rx.Subscription;
 
 
@@ -50,7 +60,8 @@ import rx.Subscription;
  * to represent each page of post lists.
  */
 public final class PostListFragment extends BaseViewPagerFragment
-        implements PostListPagerFragment.PagerCallback, View.OnClickListener {
+        implements PostListPagerFragment.PagerCallback, View.OnClickListener,
+        PageJumpDialogFragment.OnFloorJumpedListener, PageJumpDialogFragment.PageSummaryProvider {
 
     public static final String TAG = PostListFragment.class.getName();
 
@@ -59,12 +70,37 @@ public final class PostListFragment extends BaseViewPagerFragment
 
     /**
      * ARG_JUMP_PAGE takes precedence over {@link #ARG_SHOULD_GO_TO_LAST_PAGE}.
+     * <p>
+     * In website page size, and converted to {@link #ARG_POSTS_PER_PAGE} when this is created.
      */
     private static final String ARG_JUMP_PAGE = "jump_page";
     private static final String ARG_QUOTE_POST_ID = "quote_post_id";
 
+    /**
+     * In website page size, see {@link ReadProgress#page}.
+     */
     private static final String ARG_READ_PROGRESS = "read_progress";
 
+    /**
+     * Decided by {@link PageSizePolicy} once, and kept across configuration changes.
+     */
+    private static final String ARG_POSTS_PER_PAGE = "posts_per_page";
+
+    /**
+     * Only shows the posts of this author (filtered by server).
+     */
+    private static final String ARG_AUTHOR_ID = "author_id";
+    /**
+     * Shows newest posts first (sorted by server).
+     */
+    private static final String ARG_REVERSE = "reverse";
+
+    /**
+     * The serialization (saved instance state) Bundle key representing
+     * whether we are in live mode.
+     */
+    private static final String STATE_LIVE = "live";
+
     @Inject
     EventBus mEventBus;
 
@@ -74,7 +110,31 @@ public final class PostListFragment extends BaseViewPagerFragment
     @Inject
     ReadProgressPreferencesManager mReadProgressPrefManager;
 
+    @Inject
+    PageSizePolicy mPageSizePolicy;
+
+    @Inject
+    NavigationPrefetcher mNavigationPrefetcher;
+
+    @Inject
+    NetworkQualityEstimator mNetworkQualityEstimator;
+
+    @Inject
+    PageSummaryCache mPageSummaryCache;
+
     private String mThreadId;
+    private int mPostsPerPage;
+    @Nullable
+    private String mAuthorId;
+    private boolean mReverse;
+    /**
+     * Polls new posts when the last page is visible.
+     */
+    private boolean mLive;
+    /**
+     * 0 until we know how many posts this thread has.
+     */
+    private int mTotalPosts;
     @Nullable
     private String mThreadTitle;
 
@@ -97,6 +157,21 @@ public final class PostListFragment extends BaseViewPagerFragment
         return fragment;
     }
 
+    /**
+     * Page numbers in these modes have nothing to do with the normal mode,
+     * so jump pages and read progress are not supported.
+     */
+    public static PostListFragment newInstance(Thread thread, @Nullable String authorId, boolean reverse) {
+        PostListFragment fragment = new PostListFragment();
+        Bundle bundle = new Bundle();
+        bundle.putParcelable(ARG_THREAD, thread);
+        bundle.putString(ARG_AUTHOR_ID, authorId);
+        bundle.putBoolean(ARG_REVERSE, reverse);
+        fragment.setArguments(bundle);
+
+        return fragment;
+    }
+
     public static PostListFragment newInstance(ThreadLink threadLink) {
         Thread thread = new Thread();
         thread.setId(threadLink.getThreadId());
@@ -135,7 +210,21 @@ public final class PostListFragment extends BaseViewPagerFragment
         mThreadId = thread.getId();
         Bugsnag.leaveBreadcrumb("PostListFragment##ThreadTitle:"+mThreadTitle+",ThreadId:"+mThreadId);
 
-        if (savedInstanceState == null) {
+        if (!bundle.containsKey(ARG_POSTS_PER_PAGE)) {
+            bundle.putInt(ARG_POSTS_PER_PAGE, mPageSizePolicy.getPostsPerPage());
+            int jumpPage = bundle.getInt(ARG_JUMP_PAGE, 0);
+            if (jumpPage != 0) {
+                bundle.putInt(ARG_JUMP_PAGE, PageSizePolicy.convertPage(jumpPage,
+                        Api.POSTS_PER_PAGE, bundle.getInt(ARG_POSTS_PER_PAGE)));
+            }
+        }
+        mPostsPerPage = bundle.getInt(ARG_POSTS_PER_PAGE);
+        mAuthorId = bundle.getString(ARG_AUTHOR_ID);
+        mReverse = bundle.getBoolean(ARG_REVERSE, false);
+        mLive = savedInstanceState != null && savedInstanceState.getBoolean(STATE_LIVE);
+
+        if (savedInstanceState == null && mAuthorId == null) {
+            // we don't know how many posts this author has until the first page is loaded
             final int jumpPage = bundle.getInt(ARG_JUMP_PAGE, 0);
             if (jumpPage != 0) {
                 // we do not know the total page if we open this thread by URL
@@ -155,8 +244,9 @@ public final class PostListFragment extends BaseViewPagerFragment
                 R.drawable.ic_insert_comment_black_24dp, this);
 
         //读取进度
-        readProgress = bundle.getParcelable(ARG_READ_PROGRESS);
-        if (readProgress != null) {
+        ReadProgress progress = bundle.getParcelable(ARG_READ_PROGRESS);
+        if (progress != null) {
+            readProgress = progress.convertPageSize(Api.POSTS_PER_PAGE, mPostsPerPage);
             readProgress.scrollState = ReadProgress.BEFORE_SCROLL_PAGE;
             setCurrentPage(readProgress.page-1);
         }
@@ -172,13 +262,14 @@ public final class PostListFragment extends BaseViewPagerFragment
                 startReplyActivity(quoteEvent.getQuotePostId(), quoteEvent.getQuotePostCount());
             } else if (o instanceof BlackListAddEvent) {
                 BlackListAddEvent blackListEvent = (BlackListAddEvent) o;
-                BlackListDbWrapper dbWrapper = BlackListDbWrapper.getInstance();
                 if (blackListEvent.isAdd()) {
-                    RxJavaUtil.workWithUiThread(() -> dbWrapper.saveDefaultBlackList(blackListEvent.getAuthorPostId(), blackListEvent.getAuthorPostName()),
-                            this::afterBlackListChange);
+                    RxJavaUtil.workWithUiThread(AppSchedulers.database(), () -> BlackListDbWrapper.getInstance()
+                                    .saveDefaultBlackList(blackListEvent.getAuthorPostId(), blackListEvent.getAuthorPostName()),
+                            this::afterBlackListChange, L::e);
                 } else {
-                    RxJavaUtil.workWithUiThread(() -> dbWrapper.delDefaultBlackList(blackListEvent.getAuthorPostId(), blackListEvent.getAuthorPostName()),
-                            this::afterBlackListChange);
+                    RxJavaUtil.workWithUiThread(AppSchedulers.database(), () -> BlackListDbWrapper.getInstance()
+                                    .delDefaultBlackList(blackListEvent.getAuthorPostId(), blackListEvent.getAuthorPostName()),
+                            this::afterBlackListChange, L::e);
                 }
             }
 
@@ -203,10 +294,17 @@ public final class PostListFragment extends BaseViewPagerFragment
             mMenuThreadAttachment.setVisible(false);
         }
 
-        if (mReadProgressPrefManager.isSaveAuto()) {
+        if (mReadProgressPrefManager.isSaveAuto() || isFiltered()) {
             MenuItem saveMenu = menu.findItem(R.id.menu_save_progress);
             saveMenu.setVisible(false);
         }
+        menu.findItem(R.id.menu_live).setChecked(mLive);
+        if (isFiltered()) {
+            menu.findItem(R.id.menu_live).setVisible(!mReverse);
+            menu.findItem(R.id.menu_load_progress).setVisible(false);
+            menu.findItem(R.id.menu_only_author).setVisible(false);
+            menu.findItem(R.id.menu_reverse_order).setVisible(false);
+        }
     }
 
     @Override
@@ -228,14 +326,14 @@ public final class PostListFragment extends BaseViewPagerFragment
                 return true;
             case R.id.menu_link:
                 ClipboardUtil.copyText(getContext(), Api.getPostListUrlForBrowser(mThreadId,
-                        getCurrentPage()));
+                        getCurrentPageForBrowser()));
                 ((CoordinatorLayoutAnchorDelegate) getActivity()).showShortSnackbar(
                         R.string.message_thread_link_copy);
 
                 return true;
             case R.id.menu_share:
                 String value;
-                String url = Api.getPostListUrlForBrowser(mThreadId, getCurrentPage());
+                String url = Api.getPostListUrlForBrowser(mThreadId, getCurrentPageForBrowser());
                 if (TextUtils.isEmpty(mThreadTitle)) {
                     value = url;
                 } else {
@@ -251,7 +349,36 @@ public final class PostListFragment extends BaseViewPagerFragment
                 return true;
             case R.id.menu_browser:
                 IntentUtil.startViewIntentExcludeOurApp(getContext(), Uri.parse(
-                        Api.getPostListUrlForBrowser(mThreadId, getCurrentPage() + 1)));
+                        Api.getPostListUrlForBrowser(mThreadId, getCurrentPageForBrowser())));
+
+                return true;
+            case R.id.menu_only_author:
+                Thread thread = getArguments().getParcelable(ARG_THREAD);
+                if (thread.getAuthorid() == 0) {
+                    // we don't know who the original poster is until the first page is loaded
+                    ((CoordinatorLayoutAnchorDelegate) getActivity()).showShortSnackbar(
+                            R.string.message_wait_for_loading);
+                } else {
+                    PostListActivity.startPostListActivity(getContext(), thread,
+                            String.valueOf(thread.getAuthorid()), false);
+                }
+
+                return true;
+            case R.id.menu_reverse_order:
+                PostListActivity.startPostListActivity(getContext(),
+                        getArguments().getParcelable(ARG_THREAD), null, true);
+
+                return true;
+            case R.id.menu_live:
+                mLive = !mLive;
+                item.setChecked(mLive);
+                if (mLive) {
+                    followLiveTail();
+                }
+                PostListPagerFragment fragment = getCurPostPageFragment();
+                if (fragment != null) {
+                    fragment.updateLivePolling();
+                }
 
                 return true;
             case R.id.menu_save_progress:
@@ -281,7 +408,8 @@ public final class PostListFragment extends BaseViewPagerFragment
 
     @Override
     public void setTotalPageByPosts(int threads) {
-        setTotalPages(MathUtil.divide(threads, Api.POSTS_PER_PAGE));
+        mTotalPosts = threads;
+        setTotalPages(MathUtil.divide(threads, mPostsPerPage));
     }
 
     @Override
@@ -292,6 +420,29 @@ public final class PostListFragment extends BaseViewPagerFragment
         setTitleWithPosition(getCurrentPage());
     }
 
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+
+        outState.putBoolean(STATE_LIVE, mLive);
+    }
+
+    @Override
+    public boolean isLive() {
+        return mLive;
+    }
+
+    @Override
+    public void followLiveTail() {
+        setCurrentPage(getTotalPages() - 1);
+    }
+
+    @Override
+    public void setThreadAuthorId(int authorId) {
+        Thread thread = Preconditions.checkNotNull(getArguments().getParcelable(ARG_THREAD));
+        thread.setAuthorid(authorId);
+    }
+
     @Override
     public void setupThreadAttachment(Posts.ThreadAttachment threadAttachment) {
         this.mThreadAttachment = threadAttachment;
@@ -310,6 +461,89 @@ public final class PostListFragment extends BaseViewPagerFragment
         startReplyActivity(null, null);
     }
 
+    /**
+     * Whether we only show some posts or show posts in another order.
+     */
+    private boolean isFiltered() {
+        return mAuthorId != null || mReverse;
+    }
+
+    /**
+     * Returns the website page which contains the first post of current page,
+     * or the first page if {@link #isFiltered()}.
+     */
+    private int getCurrentPageForBrowser() {
+        if (isFiltered()) {
+            return 1;
+        }
+        return PageSizePolicy.convertPage(getCurrentPage() + 1, mPostsPerPage, Api.POSTS_PER_PAGE);
+    }
+
+    @Override
+    boolean isFloorJumpEnabled() {
+        // floors are not in order if filtered
+        return !isFiltered();
+    }
+
+    /**
+     * Floor {@code n} is the {@code n}th post, so we know its page without any request.
+     * Also warms the neighbouring page which the floor is closer to if we are going
+     * to a page far away (neighbours of current page have been loaded by ViewPager).
+     */
+    @Override
+    public void onFloorJumped(int floor) {
+        int index = Math.max(floor, 1) - 1;
+        int page = Math.min(PageSizePolicy.toPage(index, mPostsPerPage), getTotalPages());
+        if (Math.abs(page - 1 - getCurrentPage()) > 1
+                && mNetworkQualityEstimator.isUnmeteredAndNotPoor()) {
+            int neighbour = PageSizePolicy.toPosition(index, mPostsPerPage) < mPostsPerPage / 2
+                    ? page - 1 : page + 1;
+            if (neighbour >= 1 && neighbour <= getTotalPages()) {
+                mNavigationPrefetcher.prefetchPosts(mThreadId, neighbour, mPostsPerPage);
+            }
+        }
+        if (getCurrentPage() != page - 1) {
+            setCurrentPage(page - 1);
+        }
+        getCurPostPageFragment().jumpToFloor(floor);
+    }
+
+    /**
+     * Shows the last post we know at or before the end of this page, so user could
+     * see where the page is in this thread's timeline.
+     */
+    @Nullable
+    @Override
+    public CharSequence getPageSummary(int position) {
+        if (isFiltered()) {
+            return null;
+        }
+        PageSummaryCache.Summary summary = mPageSummaryCache.getFloorOrBefore(mThreadId,
+                (position + 1) * mPostsPerPage);
+        if (summary == null) {
+            return null;
+        }
+        return getString(R.string.page_summary, summary.floor, summary.authorName,
+                DateUtils.formatDateTime(getContext(), summary.datetime,
+                        DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_YEAR
+                                | DateUtils.FORMAT_SHOW_TIME),
+                summary.snippet);
+    }
+
+    /**
+     * Samples posts of this thread in background if the network is good
+     * and this thread has too many pages to load.
+     */
+    @Override
+    public Observable<Void> samplePageSummaries() {
+        if (isFiltered() || getTotalPages() <= 2
+                || !mNetworkQualityEstimator.isUnmeteredAndNotPoor()) {
+            return Observable.empty();
+        }
+        int totalPosts = mTotalPosts != 0 ? mTotalPosts : getTotalPages() * mPostsPerPage;
+        return mPageSummaryCache.sample(mThreadId, totalPosts);
+    }
+
     /**
      * 获取当前的具体帖子fragment
      *
@@ -322,12 +556,13 @@ public final class PostListFragment extends BaseViewPagerFragment
      * 读取阅读进度
      */
     void loadReadProgress() {
-        ReadProgressDbWrapper dbWrapper = ReadProgressDbWrapper.getInstance();
-        mreadProgressSubscription = RxJavaUtil.workWithUiThread(() -> {
-            readProgress = dbWrapper.getWithThreadId(mThreadId);
-            if (readProgress != null)
+        mreadProgressSubscription = RxJavaUtil.workWithUiThread(AppSchedulers.database(), () -> {
+            readProgress = ReadProgressDbWrapper.getInstance().getWithThreadId(mThreadId);
+            if (readProgress != null) {
+                readProgress = readProgress.convertPageSize(Api.POSTS_PER_PAGE, mPostsPerPage);
                 readProgress.scrollState = ReadProgress.BEFORE_SCROLL_PAGE;
-        }, this::afterLoadReadProgress);
+            }
+        }, this::afterLoadReadProgress, L::e);
     }
 
     /**
@@ -372,19 +607,23 @@ public final class PostListFragment extends BaseViewPagerFragment
 
         @Override
         public PostListPagerFragment getItem(int i) {
+            if (isFiltered()) {
+                return PostListPagerFragment.newInstance(mThreadId, i + 1, mPostsPerPage,
+                        mAuthorId, mReverse);
+            }
             Bundle bundle = getArguments();
             int jumpPage = bundle.getInt(ARG_JUMP_PAGE, -1);
             String quotePostId = bundle.getString(ARG_QUOTE_POST_ID);
             if (jumpPage == i + 1 && !TextUtils.isEmpty(quotePostId)) {
                 // clear this arg string because we only need to tell PostListPagerFragment once
                 bundle.putString(ARG_QUOTE_POST_ID, null);
-                return PostListPagerFragment.newInstance(mThreadId, jumpPage, quotePostId);
+                return PostListPagerFragment.newInstance(mThreadId, jumpPage, mPostsPerPage, quotePostId);
             } else if (readProgress != null && readProgress.page == i + 1
                     && readProgress.scrollState == ReadProgress.BEFORE_SCROLL_PAGE) {
                 readProgress.scrollState = ReadProgress.BEFORE_SCROLL_POSITION;
-                return PostListPagerFragment.newInstance(mThreadId, i + 1, readProgress);
+                return PostListPagerFragment.newInstance(mThreadId, i + 1, mPostsPerPage, readProgress);
             } else {
-                return PostListPagerFragment.newInstance(mThreadId, i + 1);
+                return PostListPagerFragment.newInstance(mThreadId, i + 1, mPostsPerPage);
             }
         }
     }
@@ -3,6 +3,7 @@ package me.ykrank.s1next.view.fragment;
 import android.content.Context;
 import android.databinding.DataBindingUtil;
 import android.os.Bundle;
+import android.support.annotation.Nullable;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
@@ -14,25 +15,36 @@ import com.bugsnag.android.Bugsnag;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import me.ykrank.s1next.App;
 import me.ykrank.s1next.R;
+import me.ykrank.s1next.data.api.Api;
 import me.ykrank.s1next.data.api.model.Post;
 import me.ykrank.s1next.data.api.model.Thread;
 import me.ykrank.s1next.data.api.model.collection.Posts;
 import me.ykrank.s1next.data.api.model.wrapper.PostsWrapper;
 import me.ykrank.s1next.data.db.ReadProgressDbWrapper;
 import me.ykrank.s1next.data.db.dbmodel.ReadProgress;
+import me.ykrank.s1next.data.event.OutboxChangeEvent;
 import me.ykrank.s1next.data.pref.ReadProgressPreferencesManager;
 import me.ykrank.s1next.databinding.FragmentBaseCardViewContainerBinding;
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.util.L;
 import me.ykrank.s1next.util.RxJavaUtil;
 import me.ykrank.s1next.view.adapter.PostListRecyclerViewAdapter;
 import me.ykrank.s1next.view.internal.LoadingViewModelBindingDelegate;
 import me.ykrank.s1next.view.internal.LoadingViewModelBindingDelegateBaseCardViewContainerImpl;
+import me.ykrank.s1next.widget.AdaptiveBackoff;
+import me.ykrank.s1next.widget.EventBus;
+import me.ykrank.s1next.widget.NavigationPrefetcher;
+import me.ykrank.s1next.widget.Outbox;
+import me.ykrank.s1next.widget.PageSummaryCache;
 import rx.Observable;
 import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
 
 /**
  * A Fragment representing one of the pages of posts.
@@ -43,6 +55,12 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
 
     private static final String ARG_THREAD_ID = "thread_id";
     private static final String ARG_PAGE_NUM = "page_num";
+    private static final String ARG_POSTS_PER_PAGE = "posts_per_page";
+    private static final String ARG_AUTHOR_ID = "author_id";
+    private static final String ARG_REVERSE = "reverse";
+    /**
+     * In {@link #ARG_POSTS_PER_PAGE} page size.
+     */
     private static final String ARG_READ_PROGRESS = "read_progress";
 
     /**
@@ -50,11 +68,32 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
      */
     private static final String ARG_QUOTE_POST_ID = "quote_post_id";
 
+    /**
+     * The floor ({@link Post#getCount()}) to scroll to after loading.
+     */
+    private static final String ARG_JUMP_FLOOR = "jump_floor";
+
     @Inject
     ReadProgressPreferencesManager mReadProgressPrefManager;
 
+    @Inject
+    NavigationPrefetcher mNavigationPrefetcher;
+
+    @Inject
+    PageSummaryCache mPageSummaryCache;
+
+    @Inject
+    Outbox mOutbox;
+
+    @Inject
+    EventBus mEventBus;
+
     private String mThreadId;
     private int mPageNum;
+    private int mPostsPerPage;
+    @Nullable
+    private String mAuthorId;
+    private boolean mReverse;
     /**
      * 之前记录的阅读进度
      */
@@ -69,19 +108,38 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
 
     private Subscription saveReadProgressSubscription;
 
-    public static PostListPagerFragment newInstance(String threadId, int pageNum) {
-        return newInstance(threadId, pageNum, null, null);
+    private Subscription mOutboxSubscription;
+
+    /**
+     * Polls new posts of the last page in live mode, see {@link PagerCallback#isLive()}.
+     */
+    private Subscription mLiveSubscription;
+    private final AdaptiveBackoff mLiveBackoff = new AdaptiveBackoff();
+
+    public static PostListPagerFragment newInstance(String threadId, int pageNum, int postsPerPage) {
+        return newInstance(threadId, pageNum, postsPerPage, null, null);
+    }
+
+    public static PostListPagerFragment newInstance(String threadId, int pageNum, int postsPerPage, ReadProgress progress) {
+        return newInstance(threadId, pageNum, postsPerPage, null, progress);
     }
 
-    public static PostListPagerFragment newInstance(String threadId, int pageNum, ReadProgress progress) {
-        return newInstance(threadId, pageNum, null, progress);
+    public static PostListPagerFragment newInstance(String threadId, int pageNum, int postsPerPage, String postId) {
+        return newInstance(threadId, pageNum, postsPerPage, postId, null);
     }
 
-    public static PostListPagerFragment newInstance(String threadId, int pageNum, String postId) {
-        return newInstance(threadId, pageNum, postId, null);
+    /**
+     * Only the posts of this author, or newest posts first, see {@link me.ykrank.s1next.data.api.S1Service#getPostsWrapper}.
+     */
+    public static PostListPagerFragment newInstance(String threadId, int pageNum, int postsPerPage,
+                                                    @Nullable String authorId, boolean reverse) {
+        PostListPagerFragment fragment = newInstance(threadId, pageNum, postsPerPage, null, null);
+        fragment.getArguments().putString(ARG_AUTHOR_ID, authorId);
+        fragment.getArguments().putBoolean(ARG_REVERSE, reverse);
+        return fragment;
     }
 
-    private static PostListPagerFragment newInstance(String threadId, int pageNum, String postId, ReadProgress progress) {
+    private static PostListPagerFragment newInstance(String threadId, int pageNum, int postsPerPage, String postId, ReadProgress progress) {
         PostListPagerFragment fragment = new PostListPagerFragment();
         Bundle bundle = new Bundle();
         bundle.putString(ARG_THREAD_ID, threadId);
@@ -89,6 +147,7 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
             bundle.putString(ARG_QUOTE_POST_ID, postId);
         }
         bundle.putInt(ARG_PAGE_NUM, pageNum);
+        bundle.putInt(ARG_POSTS_PER_PAGE, postsPerPage);
         bundle.putParcelable(ARG_READ_PROGRESS, progress);
         fragment.setArguments(bundle);
 
@@ -102,6 +161,9 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
 
         mThreadId = getArguments().getString(ARG_THREAD_ID);
         mPageNum = getArguments().getInt(ARG_PAGE_NUM);
+        mPostsPerPage = getArguments().getInt(ARG_POSTS_PER_PAGE);
+        mAuthorId = getArguments().getString(ARG_AUTHOR_ID);
+        mReverse = getArguments().getBoolean(ARG_REVERSE, false);
         if (readProgress == null){
             readProgress = getArguments().getParcelable(ARG_READ_PROGRESS);
         }
@@ -118,7 +180,9 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
 
             @Override
             public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
-                if (!isPullUpToRefresh()
+                // new posts are in the first page if newest first
+                if (!mReverse
+                        && !isPullUpToRefresh()
                         && mPageNum == mPagerCallback.getTotalPages()
                         && !isLoading()
                         && mRecyclerAdapter.getItemCount() != 0
@@ -143,10 +207,39 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
         mPagerCallback = null;
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+
+        updateLivePolling();
+        // user may have queued a reply in ReplyActivity
+        updatePendingReplies();
+        mOutboxSubscription = mEventBus.get().ofType(OutboxChangeEvent.class)
+                .filter(event -> mThreadId.equals(event.getThreadId()))
+                .subscribe(this::onOutboxChanged);
+    }
+
+    @Override
+    public void onPause() {
+        stopLivePolling();
+        RxJavaUtil.unsubscribeIfNotNull(mOutboxSubscription);
+
+        super.onPause();
+    }
+
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+
+        updateLivePolling();
+    }
+
     @Override
     public void onDestroy() {
-        if (mReadProgressPrefManager.isSaveAuto())
-            saveReadProgressBack(mThreadId, mPageNum, findMidItemPosition());
+        stopLivePolling();
+        // positions in filtered pages don't map to floors
+        if (mReadProgressPrefManager.isSaveAuto() && mAuthorId == null && !mReverse)
+            saveReadProgressBack(mThreadId, mPageNum, mPostsPerPage, findMidItemPosition());
         RxJavaUtil.unsubscribeIfNotNull(saveReadProgressSubscription);
         super.onDestroy();
     }
@@ -183,28 +276,139 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
         }
     }
 
+    /**
+     * Scrolls to the post of this floor, after this page is loaded if it's loading.
+     */
+    void jumpToFloor(int floor) {
+        if (!isLoading() && mRecyclerAdapter.getItemCount() != 0) {
+            mRecyclerView.scrollToPosition(findPositionOfFloor(
+                    mRecyclerAdapter.getDataSet(), floor));
+            return;
+        }
+        getArguments().putInt(ARG_JUMP_FLOOR, floor);
+        if (!isLoading()) {
+            // failed to load this page last time
+            startSwipeRefresh();
+        }
+    }
+
+    /**
+     * Returns the position of the post of this floor, or the next post
+     * if it has been deleted.
+     */
+    private static int findPositionOfFloor(List<?> posts, int floor) {
+        for (int i = 0, size = posts.size(); i < size; i++) {
+            Object object = posts.get(i);
+            if (object instanceof Post) {
+                String count = ((Post) object).getCount();
+                if (!TextUtils.isEmpty(count) && TextUtils.isDigitsOnly(count)
+                        && Integer.parseInt(count) >= floor) {
+                    return i;
+                }
+            }
+        }
+        return Math.max(posts.size() - 1, 0);
+    }
+
+    /**
+     * Starts polling new posts if this is the last page which is visible in live mode,
+     * otherwise stops polling.
+     */
+    void updateLivePolling() {
+        boolean shouldPoll = isResumed() && getUserVisibleHint()
+                && mPagerCallback != null && mPagerCallback.isLive()
+                && !mReverse && mPageNum == mPagerCallback.getTotalPages();
+        if (!shouldPoll) {
+            stopLivePolling();
+        } else if (mLiveSubscription == null) {
+            scheduleLivePoll();
+        }
+    }
+
+    private void stopLivePolling() {
+        RxJavaUtil.unsubscribeIfNotNull(mLiveSubscription);
+        mLiveSubscription = null;
+    }
+
+    private void scheduleLivePoll() {
+        mLiveSubscription = Observable.timer(mLiveBackoff.getIntervalMillis(), TimeUnit.MILLISECONDS,
+                AppSchedulers.network())
+                .flatMap(t -> getSourceObservable())
+                // the polled page has all the posts we append
+                .doOnNext(this::stageUiSnapshot)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::onLivePolled, throwable -> {
+                    // try again later, don't bother user with network errors
+                    mLiveSubscription = null;
+                    mLiveBackoff.onIdle();
+                    updateLivePolling();
+                });
+    }
+
+    /**
+     * Appends the posts which are newer than our last post only,
+     * so we don't need to diff (and rebind) the whole page.
+     */
+    private void onLivePolled(PostsWrapper data) {
+        mLiveSubscription = null;
+        Posts posts = data.getPosts();
+        // the refreshing (started by user) will show new posts
+        if (isLoading() || posts.getPostList().isEmpty()) {
+            updateLivePolling();
+            return;
+        }
+
+        long lastPostId = mRecyclerAdapter.getLastPostId();
+        List<Post> newPosts = new ArrayList<>();
+        for (Post post : posts.getPostList()) {
+            if (Long.parseLong(post.getId()) > lastPostId) {
+                newPosts.add(post);
+            }
+        }
+        if (newPosts.isEmpty()) {
+            mLiveBackoff.onIdle();
+        } else {
+            mLiveBackoff.onActive();
+            // also appends to the retained data because the adapter shares its list
+            // (unless pending replies are shown, then the next poll appends them after rotation)
+            mRecyclerAdapter.appendPosts(newPosts);
+            if (mAuthorId == null) {
+                mPageSummaryCache.putAppended(mThreadId, newPosts);
+            }
+        }
+
+        mPagerCallback.setTotalPageByPosts(posts.getPostListInfo().getReplies() + 1);
+        if (mPagerCallback.getTotalPages() > mPageNum) {
+            // this page is full, new posts go to the next page
+            mPagerCallback.followLiveTail();
+        }
+        updateLivePolling();
+    }
+
     /**
      * 保存当前阅读进度
      */
     void saveReadProgress() {
-        saveReadProgressSubscription = RxJavaUtil.workWithUiThread(() -> {
+        saveReadProgressSubscription = RxJavaUtil.workWithUiThread(AppSchedulers.database(), () -> {
 //            LooperUtil.enforceOnWorkThread();
             int visiblePosition = findMidItemPosition();
-            ReadProgress readProgress = new ReadProgress(mThreadId, mPageNum, visiblePosition);
+            ReadProgress readProgress = new ReadProgress(mThreadId, mPageNum, visiblePosition)
+                    .convertPageSize(mPostsPerPage, Api.POSTS_PER_PAGE);
             ReadProgressDbWrapper dbWrapper = ReadProgressDbWrapper.getInstance();
             dbWrapper.saveReadProgress(readProgress);
         }, () -> {
 //            LooperUtil.enforceOnMainThread();
             showShortText(R.string.save_read_progress_success);
-        });
+        }, L::e);
     }
 
-    static void saveReadProgressBack(String threadId, int page, int position){
-        new java.lang.Thread(()->{
-            ReadProgress readProgress = new ReadProgress(threadId, page, position);
+    static void saveReadProgressBack(String threadId, int page, int postsPerPage, int position){
+        AppSchedulers.databaseExecutor().execute(() -> {
+            ReadProgress readProgress = new ReadProgress(threadId, page, position)
+                    .convertPageSize(postsPerPage, Api.POSTS_PER_PAGE);
             ReadProgressDbWrapper dbWrapper = ReadProgressDbWrapper.getInstance();
             dbWrapper.saveReadProgress(readProgress);
-        }).start();
+        });
     }
 
     /**
@@ -217,9 +421,23 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
                 + mLayoutManager.findLastCompletelyVisibleItemPosition()) / 2;
     }
 
+    @Override
+    Class<PostsWrapper> getUiSnapshotType() {
+        return PostsWrapper.class;
+    }
+
     @Override
     Observable<PostsWrapper> getSourceObservable() {
-        return mS1Service.getPostsWrapper(mThreadId, mPageNum);
+        if (mAuthorId == null && !mReverse) {
+            // this page may have been requested when the thread was tapped
+            Observable<PostsWrapper> prefetched = mNavigationPrefetcher.takePosts(mThreadId,
+                    mPageNum, mPostsPerPage);
+            if (prefetched != null) {
+                return prefetched;
+            }
+        }
+        return mS1Service.getPostsWrapper(mThreadId, mPageNum, mPostsPerPage, mAuthorId,
+                mReverse ? Api.ORDER_TYPE_REVERSE : null);
     }
 
     @Override
@@ -240,12 +458,25 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
             consumeResult(data.getResult());
         } else {
             super.onNext(data);
+            // the page has been (re)loaded, poll it at the initial pace again
+            mLiveBackoff.reset();
 
             mRecyclerAdapter.refreshDataSet(postList, true);
+            if (mAuthorId == null && !mReverse) {
+                mPageSummaryCache.put(mThreadId, postList);
+            }
             if (blacklistChanged) {
                 blacklistChanged = false;
             } else if (pullUpToRefresh) {
 
+            } else if (getArguments().getInt(ARG_JUMP_FLOOR) != 0) {
+                mRecyclerView.scrollToPosition(findPositionOfFloor(postList,
+                        getArguments().getInt(ARG_JUMP_FLOOR)));
+                // clear this argument after jumping, user wants this floor rather than the progress
+                getArguments().putInt(ARG_JUMP_FLOOR, 0);
+                if (readProgress != null) {
+                    readProgress.scrollState = ReadProgress.FREE;
+                }
             } else if (readProgress != null && readProgress.scrollState == ReadProgress.BEFORE_SCROLL_POSITION) {
                 mRecyclerView.scrollToPosition(readProgress.position);
                 readProgress.scrollState = ReadProgress.FREE;
@@ -269,10 +500,35 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
             if (TextUtils.isEmpty(getActivity().getTitle())) {
                 mPagerCallback.setThreadTitle(postListInfo.getTitle());
             }
+            mPagerCallback.setThreadAuthorId(postListInfo.getAuthorid());
             mPagerCallback.setTotalPageByPosts(postListInfo.getReplies() + 1);
             if (posts.getThreadAttachment() != null) {
                 mPagerCallback.setupThreadAttachment(posts.getThreadAttachment());
             }
+            updatePendingReplies();
+        }
+    }
+
+    /**
+     * Shows the replies to this thread which are waiting in {@link Outbox}
+     * at the end of the last page.
+     */
+    private void updatePendingReplies() {
+        if (mRecyclerAdapter.getItemCount() == 0) {
+            return;
+        }
+        boolean lastPage = mAuthorId == null && !mReverse && mPagerCallback != null
+                && mPageNum == mPagerCallback.getTotalPages();
+        mRecyclerAdapter.setPendingPosts(lastPage ? mOutbox.getPendingReplies(mThreadId)
+                : new ArrayList<>());
+    }
+
+    private void onOutboxChanged(OutboxChangeEvent event) {
+        updatePendingReplies();
+        // load the reply which has just been sent
+        if (event.isSent() && !mReverse && mPageNum == mPagerCallback.getTotalPages()
+                && !isLoading() && mRecyclerAdapter.getItemCount() != 0) {
+            startPullToRefresh();
         }
     }
 
@@ -316,6 +572,21 @@ public final class PostListPagerFragment extends BaseRecyclerViewFragment<PostsW
 
         void setThreadTitle(CharSequence title);
 
+        /**
+         * Sets the user id of the original poster, we don't know it if we open a thread link.
+         */
+        void setThreadAuthorId(int authorId);
+
         void setupThreadAttachment(Posts.ThreadAttachment threadAttachment);
+
+        /**
+         * Whether we should poll new posts when the last page is visible.
+         */
+        boolean isLive();
+
+        /**
+         * Called in live mode when the last page is full and there is a new last page.
+         */
+        void followLiveTail();
     }
 }
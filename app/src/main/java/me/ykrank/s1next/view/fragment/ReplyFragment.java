@@ -5,6 +5,7 @@ import android.support.annotation.Nullable;
 import android.view.View;
 import android.widget.EditText;
 
+import me.ykrank.s1next.App;
 import me.ykrank.s1next.util.DeviceUtil;
 import me.ykrank.s1next.view.dialog.ReplyRequestDialogFragment;
 
@@ -36,6 +37,10 @@ public final class ReplyFragment extends BasePostFragment {
         super.onViewCreated(view, savedInstanceState);
         mThreadId = getArguments().getString(ARG_THREAD_ID);
         mQuotePostId = getArguments().getString(ARG_QUOTE_POST_ID);
+
+        // so sending is only one request
+        App.getAppComponent(getContext()).getPostFormPrefetcher().prefetchReply(mThreadId,
+                mQuotePostId);
     }
 
     @Override
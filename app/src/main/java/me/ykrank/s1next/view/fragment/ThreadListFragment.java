@@ -12,8 +12,10 @@ import android.view.View;
 import com.bugsnag.android.Bugsnag;
 import com.google.common.base.Preconditions;
 
+import me.ykrank.s1next.App;
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.api.Api;
+import me.ykrank.s1next.data.api.PageSizePolicy;
 import me.ykrank.s1next.data.api.model.Forum;
 import me.ykrank.s1next.util.IntentUtil;
 import me.ykrank.s1next.util.MathUtil;
@@ -29,8 +31,14 @@ public final class ThreadListFragment extends BaseViewPagerFragment
 
     private static final String ARG_FORUM = "forum";
 
+    /**
+     * Decided by {@link PageSizePolicy} once, and kept across configuration changes.
+     */
+    private static final String ARG_THREADS_PER_PAGE = "threads_per_page";
+
     private String mForumName;
     private String mForumId;
+    private int mThreadsPerPage;
 
     public static ThreadListFragment newInstance(Forum forum) {
         ThreadListFragment fragment = new ThreadListFragment();
@@ -45,7 +53,13 @@ public final class ThreadListFragment extends BaseViewPagerFragment
     public void onViewCreated(View view, Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        Forum forum = Preconditions.checkNotNull(getArguments().getParcelable(ARG_FORUM));
+        Bundle bundle = getArguments();
+        Forum forum = Preconditions.checkNotNull(bundle.getParcelable(ARG_FORUM));
+        if (!bundle.containsKey(ARG_THREADS_PER_PAGE)) {
+            bundle.putInt(ARG_THREADS_PER_PAGE,
+                    App.getAppComponent(getContext()).getPageSizePolicy().getThreadsPerPage());
+        }
+        mThreadsPerPage = bundle.getInt(ARG_THREADS_PER_PAGE);
         mForumName = forum.getName();
         mForumId = forum.getId();
         Bugsnag.leaveBreadcrumb("ThreadListFragment##ForumName:"+mForumName+",ForumId:"+mForumId);
@@ -68,7 +82,8 @@ public final class ThreadListFragment extends BaseViewPagerFragment
         switch (item.getItemId()) {
             case R.id.menu_browser:
                 IntentUtil.startViewIntentExcludeOurApp(getContext(), Uri.parse(
-                        Api.getThreadListUrlForBrowser(mForumId, getCurrentPage() + 1)));
+                        Api.getThreadListUrlForBrowser(mForumId, PageSizePolicy.convertPage(
+                                getCurrentPage() + 1, mThreadsPerPage, Api.THREADS_PER_PAGE))));
 
                 return true;
             default:
@@ -88,7 +103,7 @@ public final class ThreadListFragment extends BaseViewPagerFragment
 
     @Override
     public void setTotalPageByThreads(int threads) {
-        setTotalPages(MathUtil.divide(threads, Api.THREADS_PER_PAGE));
+        setTotalPages(MathUtil.divide(threads, mThreadsPerPage));
     }
 
     /**
@@ -102,7 +117,7 @@ public final class ThreadListFragment extends BaseViewPagerFragment
 
         @Override
         public Fragment getItem(int i) {
-            return ThreadListPagerFragment.newInstance(mForumId, i + 1);
+            return ThreadListPagerFragment.newInstance(mForumId, i + 1, mThreadsPerPage);
         }
     }
 }
@@ -27,20 +27,23 @@ public final class ThreadListPagerFragment extends BaseRecyclerViewFragment<Thre
 
     private static final String ARG_FORUM_ID = "forum_id";
     private static final String ARG_PAGE_NUM = "page_num";
+    private static final String ARG_THREADS_PER_PAGE = "threads_per_page";
 
     private String mForumId;
     private int mPageNum;
+    private int mThreadsPerPage;
 
     private ThreadRecyclerViewAdapter mRecyclerAdapter;
 
     private PagerCallback mPagerCallback;
     private SubForumsCallback mSubForumsCallback;
 
-    public static ThreadListPagerFragment newInstance(String forumId, int pageNum) {
+    public static ThreadListPagerFragment newInstance(String forumId, int pageNum, int threadsPerPage) {
         ThreadListPagerFragment fragment = new ThreadListPagerFragment();
         Bundle bundle = new Bundle();
         bundle.putString(ARG_FORUM_ID, forumId);
         bundle.putInt(ARG_PAGE_NUM, pageNum);
+        bundle.putInt(ARG_THREADS_PER_PAGE, threadsPerPage);
         fragment.setArguments(bundle);
 
         return fragment;
@@ -61,6 +64,7 @@ public final class ThreadListPagerFragment extends BaseRecyclerViewFragment<Thre
 
         mForumId = getArguments().getString(ARG_FORUM_ID);
         mPageNum = getArguments().getInt(ARG_PAGE_NUM);
+        mThreadsPerPage = getArguments().getInt(ARG_THREADS_PER_PAGE);
         Bugsnag.leaveBreadcrumb("ThreadListPagerFragment##ForumId:"+mForumId+",PageNum:"+mPageNum);
 
         RecyclerView recyclerView = getRecyclerView();
@@ -78,9 +82,14 @@ public final class ThreadListPagerFragment extends BaseRecyclerViewFragment<Thre
         mSubForumsCallback = null;
     }
 
+    @Override
+    Class<ThreadsWrapper> getUiSnapshotType() {
+        return ThreadsWrapper.class;
+    }
+
     @Override
     Observable<ThreadsWrapper> getSourceObservable() {
-        return mS1Service.getThreadsWrapper(mForumId, mPageNum);
+        return mS1Service.getThreadsWrapper(mForumId, mPageNum, mThreadsPerPage);
     }
 
     @Override
@@ -13,6 +13,7 @@ import com.activeandroid.ActiveAndroid;
 import me.ykrank.s1next.BuildConfig;
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.util.LooperUtil;
+import me.ykrank.s1next.widget.AppStartup;
 import me.ykrank.s1next.widget.BackupDelegate;
 import me.ykrank.s1next.widget.BackupDelegate.BackupResult;
 
@@ -49,6 +50,7 @@ public final class BackupPreferenceFragment extends BasePreferenceFragment
                 backupAgent.backup(this);
                 return true;
             case PREF_KEY_BACKUP_RESTORE:
+                AppStartup.await(AppStartup.TASK_DATABASE);
                 ActiveAndroid.dispose();
                 backupAgent.restore(this);
                 return true;
@@ -26,6 +26,7 @@ import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.db.BlackListDbWrapper;
 import me.ykrank.s1next.data.db.dbmodel.BlackList;
 import me.ykrank.s1next.databinding.FragmentBlacklistBinding;
+import me.ykrank.s1next.util.AppSchedulers;
 import me.ykrank.s1next.util.L;
 import me.ykrank.s1next.view.adapter.BlackListCursorListViewAdapter;
 import me.ykrank.s1next.view.dialog.BlacklistDialogFragment;
@@ -33,7 +34,6 @@ import rx.Observable;
 import rx.Subscriber;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 /**
  * An Activity includes download settings that allow users
@@ -99,7 +99,7 @@ public final class BlackListSettingFragment extends Fragment {
      */
     private void load() {
         mSubscription = getSourceObservable()
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(AppSchedulers.database())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(
                         mListViewAdapter::changeCursor
@@ -3,11 +3,13 @@ package me.ykrank.s1next.view.fragment.setting;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.support.v7.preference.Preference;
+import android.support.v7.preference.PreferenceCategory;
 import android.text.Html;
 
 import javax.inject.Inject;
 
 import me.ykrank.s1next.App;
+import me.ykrank.s1next.BuildConfig;
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.event.FontSizeChangeEvent;
 import me.ykrank.s1next.data.event.ThemeChangeEvent;
@@ -16,6 +18,8 @@ import me.ykrank.s1next.data.pref.ThemeManager;
 import me.ykrank.s1next.util.DeviceUtil;
 import me.ykrank.s1next.util.ResourceUtil;
 import me.ykrank.s1next.view.activity.SettingsActivity;
+import me.ykrank.s1next.view.dialog.ContentFilterDialogFragment;
+import me.ykrank.s1next.view.dialog.StartupTimelineDialogFragment;
 import me.ykrank.s1next.widget.EventBus;
 
 /**
@@ -32,8 +36,11 @@ public final class GeneralPreferenceFragment extends BasePreferenceFragment
 
     private static final String PREF_KEY_DOWNLOADS = "pref_key_downloads";
     private static final String PREF_KEY_BLACKLIST = "pref_key_blacklists";
+    private static final String PREF_KEY_CONTENT_FILTERS = "pref_key_content_filters";
     private static final String PREF_KEY_READ_PROGRESS = "pref_key_post_read_progress";
     private static final String PREF_KEY_BACKUP = "pref_key_backup";
+    private static final String PREF_KEY_ADVANCED = "pref_key_advanced";
+    private static final String PREF_KEY_STARTUP_TIMELINE = "pref_key_startup_timeline";
 
     @Inject
     EventBus mEventBus;
@@ -51,8 +58,15 @@ public final class GeneralPreferenceFragment extends BasePreferenceFragment
 
         findPreference(PREF_KEY_DOWNLOADS).setOnPreferenceClickListener(this);
         findPreference(PREF_KEY_BLACKLIST).setOnPreferenceClickListener(this);
+        findPreference(PREF_KEY_CONTENT_FILTERS).setOnPreferenceClickListener(this);
         findPreference(PREF_KEY_READ_PROGRESS).setOnPreferenceClickListener(this);
         findPreference(PREF_KEY_BACKUP).setOnPreferenceClickListener(this);
+        if (BuildConfig.DEBUG) {
+            findPreference(PREF_KEY_STARTUP_TIMELINE).setOnPreferenceClickListener(this);
+        } else {
+            ((PreferenceCategory) findPreference(PREF_KEY_ADVANCED)).removePreference(
+                    findPreference(PREF_KEY_STARTUP_TIMELINE));
+        }
         
         findPreference(PREF_KEY_SIGNATURE).setSummary(Html.fromHtml(DeviceUtil.getSignature(getActivity())));
     }
@@ -91,12 +105,18 @@ public final class GeneralPreferenceFragment extends BasePreferenceFragment
             case PREF_KEY_BLACKLIST:
                 SettingsActivity.startBlackListSettingsActivity(preference.getContext());
                 return true;
+            case PREF_KEY_CONTENT_FILTERS:
+                ContentFilterDialogFragment.showContentFilterDialog(getActivity());
+                return true;
             case PREF_KEY_READ_PROGRESS:
                 SettingsActivity.startReadProgressSettingsActivity(preference.getContext());
                 return true;
             case PREF_KEY_BACKUP:
                 SettingsActivity.startBackupSettingsActivity(preference.getContext());
                 return true;
+            case PREF_KEY_STARTUP_TIMELINE:
+                StartupTimelineDialogFragment.showStartupTimelineDialog(getActivity());
+                return true;
             default:
                 return false;
         }
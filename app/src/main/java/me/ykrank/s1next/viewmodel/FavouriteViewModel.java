@@ -3,8 +3,13 @@ package me.ykrank.s1next.viewmodel;
 import android.databinding.ObservableField;
 import android.view.View;
 
+import me.ykrank.s1next.App;
 import me.ykrank.s1next.data.api.model.Favourite;
 import me.ykrank.s1next.data.api.model.Thread;
+import me.ykrank.s1next.data.db.FavouriteMirrorDbWrapper;
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.util.L;
+import me.ykrank.s1next.util.RxJavaUtil;
 import me.ykrank.s1next.view.activity.PostListActivity;
 import rx.Subscription;
 import rx.functions.Func1;
@@ -23,6 +28,15 @@ public final class FavouriteViewModel {
             thread.setId(favourite.getId());
             thread.setTitle(favourite.getTitle());
 
+            if (favourite.getNewReplies() > 0) {
+                favourite.setNewReplies(0);
+                this.favourite.notifyChange();
+                String uid = App.getAppComponent(v.getContext()).getUser().getUid();
+                RxJavaUtil.workWithUiThread(AppSchedulers.database(),
+                        () -> FavouriteMirrorDbWrapper.getInstance().markSeen(uid, favourite.getId()),
+                        () -> {}, L::e);
+            }
+
             return PostListActivity.clickStartPostListActivity(v, thread);
         });
     }
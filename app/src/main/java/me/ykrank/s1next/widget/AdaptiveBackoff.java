@@ -0,0 +1,46 @@
+package me.ykrank.s1next.widget;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The polling interval of a live thread: polls more often while there are new posts,
+ * and less often while there are none (or polling failed).
+ * <p>
+ * Not thread safe, used in main thread only.
+ */
+public final class AdaptiveBackoff {
+
+    private static final long MIN_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long MAX_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    private static final long INITIAL_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(15);
+
+    private long mIntervalMillis = INITIAL_INTERVAL_MILLIS;
+
+    /**
+     * Returns how long to wait before next poll.
+     */
+    public long getIntervalMillis() {
+        return mIntervalMillis;
+    }
+
+    /**
+     * Called after a poll found new posts, halves the interval.
+     */
+    public void onActive() {
+        mIntervalMillis = Math.max(MIN_INTERVAL_MILLIS, mIntervalMillis / 2);
+    }
+
+    /**
+     * Called after a poll found nothing (or failed), increases the interval by half.
+     */
+    public void onIdle() {
+        mIntervalMillis = Math.min(MAX_INTERVAL_MILLIS, mIntervalMillis * 3 / 2);
+    }
+
+    /**
+     * Called when the user refreshed (so we know this thread is still alive).
+     */
+    public void reset() {
+        mIntervalMillis = INITIAL_INTERVAL_MILLIS;
+    }
+}
@@ -5,6 +5,8 @@ import android.app.Application;
 import android.content.Context;
 import android.os.Bundle;
 
+import me.ykrank.s1next.App;
+
 public final class AppActivityLifecycleCallbacks implements Application.ActivityLifecycleCallbacks {
 
     /**
@@ -12,11 +14,10 @@ public final class AppActivityLifecycleCallbacks implements Application.Activity
      */
     private int mVisibleCount;
 
-    private final WifiBroadcastReceiver mWifiBroadcastReceiver;
-    private int mNeedMonitorWifiActivityCount;
+    private final RequestScheduler mRequestScheduler;
 
     public AppActivityLifecycleCallbacks(Context context) {
-        mWifiBroadcastReceiver = new WifiBroadcastReceiver(context);
+        mRequestScheduler = App.getAppComponent(context).getRequestScheduler();
     }
 
     @Override
@@ -25,31 +26,24 @@ public final class AppActivityLifecycleCallbacks implements Application.Activity
     @Override
     public void onActivityStarted(Activity activity) {
         mVisibleCount++;
+        mRequestScheduler.onPageStarted();
     }
 
     @Override
-    public void onActivityResumed(Activity activity) {
-        if (activity instanceof WifiBroadcastReceiver.NeedMonitorWifi) {
-            if (mNeedMonitorWifiActivityCount == 0) {
-                mWifiBroadcastReceiver.registerIfNeeded();
-            }
-            mNeedMonitorWifiActivityCount++;
-        }
-    }
+    public void onActivityResumed(Activity activity) {}
 
     @Override
-    public void onActivityPaused(Activity activity) {
-        if (activity instanceof WifiBroadcastReceiver.NeedMonitorWifi) {
-            mNeedMonitorWifiActivityCount--;
-            if (mNeedMonitorWifiActivityCount == 0) {
-                mWifiBroadcastReceiver.unregisterIfNeeded();
-            }
-        }
-    }
+    public void onActivityPaused(Activity activity) {}
 
     @Override
     public void onActivityStopped(Activity activity) {
         mVisibleCount--;
+        if (mVisibleCount == 0) {
+            // the app goes to background, nothing we prefetched is for a page on screen
+            mRequestScheduler.onPageStarted();
+        }
+        // the user has left this page, drop what we prefetched for it
+        mRequestScheduler.onNavigatedAway();
     }
 
     @Override
@@ -6,6 +6,7 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.GlideBuilder;
 import com.bumptech.glide.load.DecodeFormat;
 import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.executor.FifoPriorityThreadPoolExecutor;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.module.GlideModule;
 import com.bumptech.glide.request.target.ViewTarget;
@@ -27,6 +28,10 @@ public final class AppGlideModule implements GlideModule {
                 context, App.getAppComponent(context).getDownloadPreferencesManager()
                 .getTotalDownloadCacheSize()));
 
+        // fetch images in the image lane, Glide runs higher priority loads first
+        builder.setResizeService(new FifoPriorityThreadPoolExecutor(
+                RequestScheduler.MAX_IMAGE_REQUESTS));
+
         ViewTarget.setTagId(R.id.tag_glide);
 
         //从默认的RGB_565改为ARGB_8888显示
@@ -37,6 +42,6 @@ public final class AppGlideModule implements GlideModule {
     public void registerComponents(Context context, Glide glide) {
         // register the OkHttp for Glide
         glide.register(GlideUrl.class, InputStream.class, new OkHttpUrlLoader.Factory(
-                App.getAppComponent(context).getOkHttpClient()));
+                App.getAppComponent(context).getImageOkHttpClient()));
     }
 }
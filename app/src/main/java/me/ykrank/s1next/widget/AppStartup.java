@@ -0,0 +1,95 @@
+package me.ykrank.s1next.widget;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import me.ykrank.s1next.util.AppSchedulers;
+
+/**
+ * Runs the initializations which the first frame doesn't need
+ * off the critical path of {@link me.ykrank.s1next.App#onCreate()},
+ * either in a background thread or when the main thread is idle.
+ * <p>
+ * Code depending on a deferred initialization should call {@link #await(String)} first.
+ * Each task is traced in {@link StartupTimeline}.
+ */
+public final class AppStartup {
+
+    public static final String TASK_DATABASE = "ActiveAndroid";
+    public static final String TASK_COOKIES = "Cookies";
+    public static final String TASK_LEAK_CANARY = "LeakCanary";
+    public static final String TASK_JSON = "Jackson";
+    public static final String TASK_FAVOURITE_SYNC = "Favourite sync";
+    public static final String TASK_OUTBOX = "Outbox";
+
+    private static final Map<String, CountDownLatch> sTasks = new ConcurrentHashMap<>();
+
+    private AppStartup() {}
+
+    /**
+     * Runs this task in background thread ({@link AppSchedulers#startupExecutor()}) now.
+     */
+    public static void runInBackground(String name, Runnable runnable) {
+        CountDownLatch latch = register(name);
+        AppSchedulers.startupExecutor().execute(() -> run(name, runnable, latch));
+    }
+
+    /**
+     * Runs this task in main thread when it has nothing to do
+     * (usually after the first frame is drawn).
+     */
+    public static void runWhenIdle(String name, Runnable runnable) {
+        CountDownLatch latch = register(name);
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+
+            @Override
+            public boolean queueIdle() {
+                run(name, runnable, latch);
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Blocks until this task has finished, returns immediately if
+     * this task has finished or was never scheduled.
+     * <p>
+     * Never await a task which runs when idle in main thread.
+     */
+    public static void await(String name) {
+        CountDownLatch latch = sTasks.get(name);
+        if (latch == null || latch.getCount() == 0) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static CountDownLatch register(String name) {
+        CountDownLatch latch = new CountDownLatch(1);
+        sTasks.put(name, latch);
+        return latch;
+    }
+
+    private static void run(String name, Runnable runnable, CountDownLatch latch) {
+        try {
+            StartupTimeline.trace(name, runnable);
+        } finally {
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package me.ykrank.s1next.widget;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.signature.StringSignature;
+import com.google.common.base.Strings;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import me.ykrank.s1next.data.api.Api;
+import me.ykrank.s1next.data.pref.DownloadPreferencesManager;
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.util.L;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.internal.http.HttpDate;
+import rx.Observable;
+
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.net.HttpURLConnection.HTTP_OK;
+
+/**
+ * Keeps avatars in Glide's cache across the avatar cache invalidation intervals
+ * and revalidates them with conditional requests instead.
+ * <p>
+ * Each avatar URL has a version which is mixed into its Glide cache key,
+ * the version only changes if the server tells us the avatar has changed.
+ * When an avatar is shown and it has not been validated in the last interval,
+ * we send a request with {@code If-None-Match}/{@code If-Modified-Since}.
+ * A {@code 304} only refreshes the validated time, so no body is transferred
+ * and nothing is decoded again. A {@code 200} body is handed to Glide
+ * (see {@link #takeFreshBody(String)}) so it is not downloaded twice, and a
+ * {@code 404} (the user has no custom avatar) is remembered until next interval.
+ * <p>
+ * Validators of the {@link #MAX_VALIDATORS} most recently shown avatars are kept,
+ * and the changed ones are written to disk in batches.
+ */
+public final class AvatarRevalidator {
+
+    private static final String PREFS_AVATAR_VALIDATORS = "AvatarValidatorsFile";
+
+    private static final int MAX_VALIDATORS = 1024;
+
+    private static final long SAVE_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    /**
+     * Fresh avatars waiting for Glide, avatars are usually a few KB.
+     */
+    private static final int MAX_FRESH_BODIES_BYTES = 512 * 1024;
+    private static final int MAX_FRESH_BODY_BYTES = 128 * 1024;
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private final OkHttpClient mOkHttpClient;
+    private final RequestScheduler mRequestScheduler;
+    private final DownloadPreferencesManager mDownloadPreferencesManager;
+    private final SharedPreferences mValidatorsSP;
+
+    /**
+     * In access order, guarded by itself.
+     */
+    private final LinkedHashMap<String, Validator> mValidators = new LinkedHashMap<String, Validator>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Validator> eldest) {
+            if (size() > MAX_VALIDATORS) {
+                mChangedUrls.add(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+    /**
+     * URLs whose validators were changed or evicted since last save, guarded by {@link #mValidators}.
+     */
+    private final Set<String> mChangedUrls = new HashSet<>();
+    private boolean mSavePending;
+
+    private final LruCache<String, byte[]> mFreshBodies = new LruCache<String, byte[]>(
+            MAX_FRESH_BODIES_BYTES) {
+        @Override
+        protected int sizeOf(String key, byte[] value) {
+            return value.length;
+        }
+    };
+
+    /**
+     * URLs which are being revalidated.
+     */
+    private final Set<String> mRevalidatingUrls = Collections.synchronizedSet(new HashSet<>());
+
+    public AvatarRevalidator(Context context, OkHttpClient okHttpClient, RequestScheduler requestScheduler,
+                             DownloadPreferencesManager downloadPreferencesManager) {
+        this.mOkHttpClient = okHttpClient;
+        this.mRequestScheduler = requestScheduler;
+        this.mDownloadPreferencesManager = downloadPreferencesManager;
+        mValidatorsSP = context.getSharedPreferences(PREFS_AVATAR_VALIDATORS, Context.MODE_PRIVATE);
+        for (Map.Entry<String, ?> entry : mValidatorsSP.getAll().entrySet()) {
+            if (entry.getValue() instanceof String) {
+                mValidators.put(entry.getKey(), Validator.decode((String) entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Gets the signature to mix into the Glide cache key of this avatar.
+     */
+    public Key getSignature(String url) {
+        return new StringSignature(String.valueOf(getValidator(url).version));
+    }
+
+    /**
+     * Revalidates this avatar in background if it has not been
+     * validated in the avatar cache invalidation interval.
+     */
+    public void revalidateIfNeeded(String url) {
+        Validator validator = getValidator(url);
+        long now = System.currentTimeMillis();
+        if (validator.validatedAt == 0) {
+            // we know nothing about the avatar in Glide's cache, assume it was validated just now
+            putValidator(url, new Validator(validator.version, now, null, null, false));
+            return;
+        }
+        if (now - validator.validatedAt < mDownloadPreferencesManager.getAvatarCacheInvalidationIntervalMillis()
+                || !mRevalidatingUrls.add(url)) {
+            return;
+        }
+
+        Request.Builder builder = new Request.Builder().url(url)
+                .header(RequestPriority.HEADER_NAME, RequestPriority.BACKGROUND.name());
+        if (!TextUtils.isEmpty(validator.etag)) {
+            builder.header(HEADER_IF_NONE_MATCH, validator.etag);
+        }
+        builder.header(HEADER_IF_MODIFIED_SINCE, TextUtils.isEmpty(validator.lastModified)
+                ? HttpDate.format(new Date(validator.validatedAt)) : validator.lastModified);
+
+        Call call = mOkHttpClient.newCall(builder.build());
+        mRequestScheduler.enqueue(call, RequestPriority.BACKGROUND, new Callback() {
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                mRevalidatingUrls.remove(url);
+                L.d("Failed to revalidate avatar " + url, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    onRevalidated(url, response);
+                } finally {
+                    response.close();
+                    mRevalidatingUrls.remove(url);
+                }
+            }
+        });
+    }
+
+    private void onRevalidated(String url, Response response) {
+        Validator current = getValidator(url);
+        long now = System.currentTimeMillis();
+        int avatarUid = Api.getAvatarUserId(url);
+        switch (response.code()) {
+            case HTTP_NOT_MODIFIED:
+                putValidator(url, new Validator(current.version, now,
+                        headerOrDefault(response, HEADER_ETAG, current.etag),
+                        headerOrDefault(response, HEADER_LAST_MODIFIED, current.lastModified),
+                        current.missing));
+                break;
+            case HTTP_NOT_FOUND:
+                if (avatarUid > 0) {
+                    DefaultAvatarUidsCache.put(avatarUid);
+                }
+                // only use a new cache key if we showed a custom avatar before
+                putValidator(url, new Validator(current.missing ? current.version
+                        : current.version + 1, now, null, null, true));
+                break;
+            case HTTP_OK:
+                // the avatar has changed, keep the body for Glide which loads
+                // it with the new cache key, so it is not downloaded again
+                byte[] body = readBody(response);
+                if (body != null) {
+                    mFreshBodies.put(url, body);
+                }
+                if (avatarUid > 0) {
+                    DefaultAvatarUidsCache.remove(avatarUid);
+                }
+                putValidator(url, new Validator(current.version + 1,
+                        body == null ? 0 : now, response.header(HEADER_ETAG),
+                        response.header(HEADER_LAST_MODIFIED), false));
+                break;
+            default:
+                // server errors, try again next time
+                break;
+        }
+    }
+
+    @Nullable
+    private static byte[] readBody(Response response) {
+        ResponseBody body = response.body();
+        if (body == null || body.contentLength() > MAX_FRESH_BODY_BYTES) {
+            return null;
+        }
+        try {
+            byte[] bytes = body.bytes();
+            return bytes.length > MAX_FRESH_BODY_BYTES ? null : bytes;
+        } catch (IOException e) {
+            L.d("Failed to read avatar " + response.request().url(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the avatar which was downloaded while revalidating (only once),
+     * or {@code null} if there is none.
+     *
+     * @see OkHttpStreamFetcher#loadData(com.bumptech.glide.Priority)
+     */
+    @Nullable
+    byte[] takeFreshBody(String url) {
+        return mFreshBodies.remove(url);
+    }
+
+    /**
+     * Records the validators of this avatar after it was downloaded
+     * (or found to be the default avatar).
+     *
+     * @see OkHttpStreamFetcher#loadData(com.bumptech.glide.Priority)
+     */
+    void onAvatarDownloaded(String url, Response response) {
+        Validator current = getValidator(url);
+        putValidator(url, new Validator(current.version, System.currentTimeMillis(),
+                response.header(HEADER_ETAG), response.header(HEADER_LAST_MODIFIED),
+                !response.isSuccessful()));
+    }
+
+    private Validator getValidator(String url) {
+        synchronized (mValidators) {
+            Validator validator = mValidators.get(url);
+            return validator == null ? Validator.decode(null) : validator;
+        }
+    }
+
+    private void putValidator(String url, Validator validator) {
+        synchronized (mValidators) {
+            mValidators.put(url, validator);
+            mChangedUrls.add(url);
+            if (mSavePending) {
+                return;
+            }
+            mSavePending = true;
+        }
+        // one write for all the avatars shown in a while
+        Observable.timer(SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS, AppSchedulers.database())
+                .subscribe(t -> saveValidators(), L::e);
+    }
+
+    /**
+     * Writes the validators which were changed (or removes the evicted ones) since last save.
+     */
+    private void saveValidators() {
+        Map<String, Validator> changes = new HashMap<>();
+        synchronized (mValidators) {
+            mSavePending = false;
+            for (String url : mChangedUrls) {
+                changes.put(url, mValidators.get(url));
+            }
+            mChangedUrls.clear();
+        }
+        SharedPreferences.Editor editor = mValidatorsSP.edit();
+        for (Map.Entry<String, Validator> entry : changes.entrySet()) {
+            if (entry.getValue() == null) {
+                editor.remove(entry.getKey());
+            } else {
+                editor.putString(entry.getKey(), entry.getValue().encode());
+            }
+        }
+        editor.apply();
+    }
+
+    @Nullable
+    private static String headerOrDefault(Response response, String name, @Nullable String defaultValue) {
+        String value = response.header(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private static final class Validator {
+
+        private static final String SEPARATOR = "\n";
+
+        private final int version;
+        /**
+         * The time we last got this avatar or a 304 for it, {@code 0} if unknown.
+         */
+        private final long validatedAt;
+        @Nullable
+        private final String etag;
+        @Nullable
+        private final String lastModified;
+        /**
+         * Whether the user has no custom avatar (we got a 404).
+         */
+        private final boolean missing;
+
+        private Validator(int version, long validatedAt, @Nullable String etag,
+                          @Nullable String lastModified, boolean missing) {
+            this.version = version;
+            this.validatedAt = validatedAt;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.missing = missing;
+        }
+
+        private String encode() {
+            return version + SEPARATOR + validatedAt + SEPARATOR + Strings.nullToEmpty(etag)
+                    + SEPARATOR + Strings.nullToEmpty(lastModified) + SEPARATOR + missing;
+        }
+
+        private static Validator decode(@Nullable String s) {
+            if (s != null) {
+                String[] fields = s.split(SEPARATOR, -1);
+                if (fields.length == 5) {
+                    try {
+                        return new Validator(Integer.parseInt(fields[0]), Long.parseLong(fields[1]),
+                                Strings.emptyToNull(fields[2]), Strings.emptyToNull(fields[3]),
+                                Boolean.parseBoolean(fields[4]));
+                    } catch (NumberFormatException ignored) {
+
+                    }
+                }
+            }
+            return new Validator(0, 0, null, null, false);
+        }
+    }
+}
@@ -17,6 +17,7 @@ import java.io.File;
 import java.io.IOException;
 
 import me.ykrank.s1next.BuildConfig;
+import me.ykrank.s1next.util.AppSchedulers;
 import me.ykrank.s1next.util.FilePickerUtil;
 import me.ykrank.s1next.util.L;
 import me.ykrank.s1next.util.LooperUtil;
@@ -73,7 +74,8 @@ public class BackupDelegate {
             onFilePickResult(resultCode, data, new FilePickerUtil.OnFilePickCallback() {
                 @Override
                 public void success(@NonNull Uri uri) {
-                    RxJavaUtil.workWithUiResult(() -> doBackup(uri), afterBackup::call, this::error);
+                    RxJavaUtil.workWithUiResult(AppSchedulers.database(), () -> doBackup(uri),
+                            afterBackup::call, this::error);
                 }
 
                 @Override
@@ -86,7 +88,8 @@ public class BackupDelegate {
             onFilePickResult(resultCode, data, new FilePickerUtil.OnFilePickCallback() {
                 @Override
                 public void success(@NonNull Uri uri) {
-                    RxJavaUtil.workWithUiResult(() -> doRestore(uri), afterRestore::call, this::error);
+                    RxJavaUtil.workWithUiResult(AppSchedulers.database(), () -> doRestore(uri),
+                            afterRestore::call, this::error);
                 }
 
                 @Override
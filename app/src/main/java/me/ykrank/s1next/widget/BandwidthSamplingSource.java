@@ -0,0 +1,81 @@
+package me.ykrank.s1next.widget;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Source;
+
+/**
+ * Measures the bandwidth of a response body, see {@link NetworkQualityEstimator}.
+ * <p>
+ * The time is the wall time from the first byte to the end of the body, as connection
+ * class samplers do. Only counting the time spent in {@link #read(Buffer, long)} would
+ * inflate the bandwidth, as the bytes which reached the socket buffer while the consumer
+ * was parsing (or decoding) are read almost instantly. The bytes of the first read are
+ * not counted as they arrived before the time started.
+ * <p>
+ * The sample is taken once, at the end of the body or when it is closed.
+ */
+final class BandwidthSamplingSource extends ForwardingSource {
+
+    interface Listener {
+
+        void onSample(long bytes, long nanos);
+    }
+
+    interface Clock {
+
+        long nanoTime();
+    }
+
+    static final Clock SYSTEM_CLOCK = System::nanoTime;
+
+    private final Clock mClock;
+    private final Listener mListener;
+
+    private long mFirstByteNanos = -1;
+    private long mLastByteNanos;
+    private long mBytes;
+    private boolean mSampled;
+
+    BandwidthSamplingSource(Source delegate, Clock clock, Listener listener) {
+        super(delegate);
+        this.mClock = clock;
+        this.mListener = listener;
+    }
+
+    @Override
+    public long read(Buffer sink, long byteCount) throws IOException {
+        long read = super.read(sink, byteCount);
+        if (read == -1) {
+            sample();
+        } else if (read > 0) {
+            long now = mClock.nanoTime();
+            if (mFirstByteNanos == -1) {
+                mFirstByteNanos = now;
+            } else {
+                mBytes += read;
+            }
+            mLastByteNanos = now;
+        }
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sample();
+        super.close();
+    }
+
+    private void sample() {
+        if (mSampled) {
+            return;
+        }
+        mSampled = true;
+        long nanos = mLastByteNanos - mFirstByteNanos;
+        if (mFirstByteNanos != -1 && mBytes > 0 && nanos > 0) {
+            mListener.onSample(mBytes, nanos);
+        }
+    }
+}
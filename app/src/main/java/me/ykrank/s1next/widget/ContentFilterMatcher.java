@@ -0,0 +1,295 @@
+package me.ykrank.s1next.widget;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import me.ykrank.s1next.data.db.dbmodel.BlackList;
+import me.ykrank.s1next.data.db.dbmodel.ContentFilter;
+import me.ykrank.s1next.util.L;
+
+/**
+ * Matches all the {@link ContentFilter}s against a text.
+ * <ul>
+ * <li>Keywords are compiled into an Aho-Corasick automaton, so the cost of a match
+ * is linear in the length of the text regardless of how many keywords there are.
+ * Keywords are case insensitive.</li>
+ * <li>Regular expressions are compiled one by one (so their groups and backreferences
+ * work as written) and tried in turn, so each of them costs a scan of every post
+ * and title (at least linear in its length, more with backtracking). Only the
+ * regular expressions stricter than what has matched are tried.</li>
+ * </ul>
+ * Both match the text with its HTML tags removed.
+ * <p>
+ * Rules are changed in database thread. A regular expression is compiled once when
+ * it is added, but the automaton is rebuilt from all the keywords (linear in their
+ * total length) on next match after any rule changes. Both go into an immutable
+ * {@link Snapshot}, so matching (in parse threads, for every post) needs no lock.
+ */
+public final class ContentFilterMatcher {
+
+    /**
+     * Guarded by {@code this}, in the order they were added.
+     */
+    private final Map<String, Rule> mKeywordRules = new LinkedHashMap<>();
+    private final Map<String, Rule> mRegexRules = new LinkedHashMap<>();
+
+    /**
+     * {@code null} if the rules have changed since it was compiled.
+     */
+    @Nullable
+    private volatile Snapshot mSnapshot;
+
+    public void add(ContentFilter filter) {
+        add(filter.word, filter.regex, filter.post, filter.forum);
+    }
+
+    synchronized void add(@Nullable String word, boolean regex, int post, int forum) {
+        if (word == null || word.isEmpty()) {
+            return;
+        }
+        Pattern pattern = null;
+        if (regex) {
+            try {
+                pattern = Pattern.compile(word, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            } catch (PatternSyntaxException e) {
+                L.e("Invalid content filter " + word, e);
+                return;
+            }
+        }
+        (regex ? mRegexRules : mKeywordRules).put(word, new Rule(word, pattern, post, forum));
+        mSnapshot = null;
+    }
+
+    public void remove(ContentFilter filter) {
+        remove(filter.word, filter.regex);
+    }
+
+    synchronized void remove(String word, boolean regex) {
+        if ((regex ? mRegexRules : mKeywordRules).remove(word) != null) {
+            mSnapshot = null;
+        }
+    }
+
+    public synchronized void clear() {
+        mKeywordRules.clear();
+        mRegexRules.clear();
+        mSnapshot = null;
+    }
+
+    /**
+     * Returns the strictest {@link ContentFilter#post} among the rules which match this reply.
+     */
+    @BlackList.PostFLag
+    @SuppressWarnings("WrongConstant")
+    public int getPostFlag(@Nullable String reply) {
+        return match(reply, true);
+    }
+
+    /**
+     * Returns the strictest {@link ContentFilter#forum} among the rules which match this title.
+     */
+    @BlackList.ForumFLag
+    @SuppressWarnings("WrongConstant")
+    public int getForumFlag(@Nullable String title) {
+        return match(title, false);
+    }
+
+    private int match(@Nullable String text, boolean post) {
+        if (text == null || text.isEmpty()) {
+            return BlackList.NORMAL;
+        }
+        Snapshot snapshot = mSnapshot;
+        if (snapshot == null) {
+            snapshot = compile();
+        }
+        if (snapshot.isEmpty()) {
+            return BlackList.NORMAL;
+        }
+        return snapshot.match(stripTags(text), post);
+    }
+
+    private synchronized Snapshot compile() {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot == null) {
+            snapshot = new Snapshot(mKeywordRules.values(), mRegexRules.values());
+            mSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    static String stripTags(String text) {
+        if (text.indexOf('<') == -1) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean inTag = false;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (inTag) {
+                inTag = c != '>';
+            } else if (c == '<') {
+                inTag = true;
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A rule copied from its {@link ContentFilter}, with the compiled pattern if it's a regex.
+     */
+    private static final class Rule {
+
+        private final String word;
+        @Nullable
+        private final Pattern pattern;
+        private final int post;
+        private final int forum;
+
+        private Rule(String word, @Nullable Pattern pattern, int post, int forum) {
+            this.word = word;
+            this.pattern = pattern;
+            this.post = post;
+            this.forum = forum;
+        }
+    }
+
+    /**
+     * The compiled rules, never changed after constructed.
+     */
+    private static final class Snapshot {
+
+        private final Node mRoot = new Node();
+        private final List<Rule> mRegexRules;
+
+        private Snapshot(Iterable<Rule> keywordRules, Iterable<Rule> regexRules) {
+            for (Rule rule : keywordRules) {
+                addKeyword(rule);
+            }
+            buildLinks();
+
+            mRegexRules = new ArrayList<>();
+            for (Rule rule : regexRules) {
+                mRegexRules.add(rule);
+            }
+        }
+
+        private boolean isEmpty() {
+            return mRoot.children.isEmpty() && mRegexRules.isEmpty();
+        }
+
+        private void addKeyword(Rule rule) {
+            Node node = mRoot;
+            String word = rule.word;
+            for (int i = 0, length = word.length(); i < length; i++) {
+                char c = Character.toLowerCase(word.charAt(i));
+                Node child = node.children.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            // the same keyword in other case
+            node.post = Math.max(node.post, rule.post);
+            node.forum = Math.max(node.forum, rule.forum);
+        }
+
+        /**
+         * Computes the failure link and the output link (the nearest terminal node
+         * in the failure chain) of each node, in BFS order.
+         */
+        private void buildLinks() {
+            Queue<Node> queue = new ArrayDeque<>();
+            mRoot.fail = mRoot;
+            for (Node child : mRoot.children.values()) {
+                child.fail = mRoot;
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+                    char c = entry.getKey();
+                    Node child = entry.getValue();
+                    Node fail = node.fail;
+                    Node next = fail.children.get(c);
+                    while (next == null && fail != mRoot) {
+                        fail = fail.fail;
+                        next = fail.children.get(c);
+                    }
+                    child.fail = next == null ? mRoot : next;
+                    child.output = child.fail.isTerminal() ? child.fail : child.fail.output;
+                    queue.add(child);
+                }
+            }
+        }
+
+        /**
+         * Flags are ordered by strictness in both kinds, so we take the max one.
+         */
+        private int match(String text, boolean post) {
+            int strictest = BlackList.NORMAL;
+            int delete = post ? BlackList.DEL_POST : BlackList.DEL_FORUM;
+
+            if (!mRoot.children.isEmpty()) {
+                Node state = mRoot;
+                for (int i = 0, length = text.length(); i < length; i++) {
+                    char c = Character.toLowerCase(text.charAt(i));
+                    Node next = state.children.get(c);
+                    while (next == null && state != mRoot) {
+                        state = state.fail;
+                        next = state.children.get(c);
+                    }
+                    state = next == null ? mRoot : next;
+                    for (Node output = state.isTerminal() ? state : state.output; output != null;
+                         output = output.output) {
+                        strictest = Math.max(strictest, post ? output.post : output.forum);
+                    }
+                    if (strictest == delete) {
+                        return strictest;
+                    }
+                }
+            }
+
+            for (int i = 0, size = mRegexRules.size(); i < size; i++) {
+                Rule rule = mRegexRules.get(i);
+                int flag = post ? rule.post : rule.forum;
+                if (flag > strictest) {
+                    Matcher matcher = rule.pattern.matcher(text);
+                    if (matcher.find()) {
+                        strictest = flag;
+                        if (strictest == delete) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return strictest;
+        }
+    }
+
+    private static final class Node {
+
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private Node fail;
+        private Node output;
+
+        private int post = BlackList.NORMAL;
+        private int forum = BlackList.NORMAL;
+
+        private boolean isTerminal() {
+            return post != BlackList.NORMAL || forum != BlackList.NORMAL;
+        }
+    }
+}
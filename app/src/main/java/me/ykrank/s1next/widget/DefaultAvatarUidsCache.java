@@ -0,0 +1,242 @@
+package me.ykrank.s1next.widget;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import me.ykrank.s1next.App;
+import me.ykrank.s1next.util.L;
+
+/**
+ * We would get 404 status code if user hasn't set up their
+ * avatar (in this case, we use the default avatar for this user).
+ * So we remember these users in order to not request their avatars
+ * again until the avatar cache invalidation interval has elapsed.
+ * <p>
+ * This is an open addressing hash table of uid -> last checked time (in minutes)
+ * stored in one memory-mapped file, so a lookup is a memory read and survives
+ * app restarts without loading anything. Unlike the avatar URLs, uid does not
+ * change with the avatar cache signature or resolution.
+ * <p>
+ * File layout: a header of {@link #HEADER_INTS} ints ({@link #MAGIC}, capacity, size)
+ * followed by capacity slots of two ints (uid, last checked minutes).
+ * A uid of {@code 0} marks an empty slot.
+ *
+ * @see me.ykrank.s1next.widget.OkHttpStreamFetcher#loadData(com.bumptech.glide.Priority)
+ */
+enum DefaultAvatarUidsCache {
+    INSTANCE;
+
+    private static final String FILE_NAME = "default_avatar_uids";
+    /**
+     * The directory of the former avatar URLs disk cache, which is useless now.
+     */
+    private static final String LEGACY_DISK_CACHE_DIRECTORY = "avatar_urls_disk_cache";
+
+    private static final int MAGIC = 0x53314155;
+    private static final int HEADER_INTS = 4;
+    private static final int HEADER_CAPACITY = 1;
+    private static final int HEADER_SIZE = 2;
+
+    private static final int INITIAL_CAPACITY = 4096;
+    /**
+     * The table will be never larger than 4MB.
+     */
+    private static final int MAX_CAPACITY = 1 << 19;
+    private static final float MAX_LOAD_FACTOR = 0.7f;
+
+    private final File file;
+
+    private FileChannel channel;
+    private IntBuffer table;
+    private int capacity;
+    private int size;
+
+    DefaultAvatarUidsCache() {
+        file = new File(App.get().getFilesDir(), FILE_NAME);
+        deleteLegacyDiskCache(new File(App.get().getCacheDir(), LEGACY_DISK_CACHE_DIRECTORY));
+        try {
+            open();
+        } catch (IOException e) {
+            L.e("Failed to open " + file, e);
+            table = null;
+        }
+    }
+
+    /**
+     * Whether this user was found without custom avatar in the last {@code intervalMillis}.
+     */
+    static boolean has(int uid, long intervalMillis) {
+        return INSTANCE.hasInternal(uid, intervalMillis);
+    }
+
+    /**
+     * Records that this user has no custom avatar now.
+     */
+    static void put(int uid) {
+        INSTANCE.putInternal(uid, currentMinutes());
+    }
+
+    /**
+     * Forgets this user, used when this user's avatar became available.
+     */
+    static void remove(int uid) {
+        INSTANCE.putInternal(uid, 0);
+    }
+
+    private synchronized boolean hasInternal(int uid, long intervalMillis) {
+        if (table == null || uid <= 0) {
+            return false;
+        }
+        int slot = findSlot(uid);
+        if (table.get(slot) != uid) {
+            return false;
+        }
+        int checkedMinutes = table.get(slot + 1);
+        return checkedMinutes != 0
+                && currentMinutes() - checkedMinutes < TimeUnit.MILLISECONDS.toMinutes(intervalMillis);
+    }
+
+    private synchronized void putInternal(int uid, int checkedMinutes) {
+        if (table == null || uid <= 0) {
+            return;
+        }
+        int slot = findSlot(uid);
+        if (table.get(slot) != uid) {
+            if (checkedMinutes == 0) {
+                // nothing to forget
+                return;
+            }
+            if (size + 1 > capacity * MAX_LOAD_FACTOR) {
+                if (!grow()) {
+                    return;
+                }
+                slot = findSlot(uid);
+            }
+            table.put(slot, uid);
+            size++;
+            table.put(HEADER_SIZE, size);
+        }
+        table.put(slot + 1, checkedMinutes);
+    }
+
+    /**
+     * Linear probing.
+     *
+     * @return The index of the slot for this uid, either holding this uid or empty.
+     */
+    private int findSlot(int uid) {
+        int mask = capacity - 1;
+        int i = mix(uid) & mask;
+        while (true) {
+            int index = HEADER_INTS + i * 2;
+            int key = table.get(index);
+            if (key == uid || key == 0) {
+                return index;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void open() throws IOException {
+        boolean exists = file.exists() && file.length() > HEADER_INTS * 4;
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        if (exists) {
+            IntBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_INTS * 4)
+                    .asIntBuffer();
+            int storedCapacity = header.get(HEADER_CAPACITY);
+            if (header.get(0) == MAGIC && Integer.bitCount(storedCapacity) == 1
+                    && storedCapacity <= MAX_CAPACITY
+                    && file.length() >= fileLength(storedCapacity)) {
+                capacity = storedCapacity;
+                table = map(capacity);
+                size = table.get(HEADER_SIZE);
+                return;
+            }
+        }
+
+        // create a new table
+        capacity = INITIAL_CAPACITY;
+        channel.truncate(0);
+        table = map(capacity);
+        table.put(0, MAGIC);
+        table.put(HEADER_CAPACITY, capacity);
+        table.put(HEADER_SIZE, 0);
+        size = 0;
+    }
+
+    /**
+     * Doubles the capacity and rehashes all the entries in the same file.
+     */
+    private boolean grow() {
+        if (capacity >= MAX_CAPACITY) {
+            return false;
+        }
+
+        int[] oldEntries = new int[capacity * 2];
+        table.position(HEADER_INTS);
+        table.get(oldEntries);
+        table.position(0);
+
+        try {
+            int newCapacity = capacity * 2;
+            IntBuffer newTable = map(newCapacity);
+            for (int i = HEADER_INTS; i < HEADER_INTS + newCapacity * 2; i++) {
+                newTable.put(i, 0);
+            }
+            table = newTable;
+            capacity = newCapacity;
+            table.put(HEADER_CAPACITY, capacity);
+            for (int i = 0; i < oldEntries.length; i += 2) {
+                int uid = oldEntries[i];
+                if (uid != 0) {
+                    int slot = findSlot(uid);
+                    table.put(slot, uid);
+                    table.put(slot + 1, oldEntries[i + 1]);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            L.e("Failed to grow " + file, e);
+            return false;
+        }
+    }
+
+    private IntBuffer map(int capacity) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                fileLength(capacity));
+        return buffer.asIntBuffer();
+    }
+
+    private static long fileLength(int capacity) {
+        return (HEADER_INTS + capacity * 2L) * 4;
+    }
+
+    private static void deleteLegacyDiskCache(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+    }
+
+    private static int currentMinutes() {
+        return (int) TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+
+    /**
+     * Spreads sequential uids over the table.
+     */
+    private static int mix(int uid) {
+        int h = uid * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
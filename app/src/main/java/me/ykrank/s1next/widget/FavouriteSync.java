@@ -0,0 +1,22 @@
+package me.ykrank.s1next.widget;
+
+import android.content.Context;
+import android.os.Build;
+
+/**
+ * Schedules {@link FavouriteSyncJobService} if the device supports it.
+ * <p>
+ * This class must not reference {@link android.app.job.JobService} itself, because
+ * it is loaded on all devices, while {@link FavouriteSyncJobService} can't be loaded
+ * below Lollipop.
+ */
+public final class FavouriteSync {
+
+    private FavouriteSync() {}
+
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            FavouriteSyncJobService.schedule(context);
+        }
+    }
+}
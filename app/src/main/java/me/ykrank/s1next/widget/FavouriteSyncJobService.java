@@ -0,0 +1,155 @@
+package me.ykrank.s1next.widget;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.text.TextUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import me.ykrank.s1next.App;
+import me.ykrank.s1next.AppComponent;
+import me.ykrank.s1next.data.User;
+import me.ykrank.s1next.data.api.S1Service;
+import me.ykrank.s1next.data.api.model.Favourite;
+import me.ykrank.s1next.data.api.model.collection.Favourites;
+import me.ykrank.s1next.data.api.model.wrapper.FavouritesWrapper;
+import me.ykrank.s1next.data.db.FavouriteMirrorDbWrapper;
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.util.L;
+import me.ykrank.s1next.util.MathUtil;
+import rx.Observable;
+import rx.Subscription;
+
+/**
+ * Syncs the favourites into {@link FavouriteMirrorDbWrapper} periodically, only on
+ * unmetered networks while the device is charging, so the favourites could be shown
+ * at once (with how many new replies each has) when the user opens them.
+ * <p>
+ * The first page tells how many pages there are, then the others are fetched a few at a time,
+ * as each page is a full forum page request. Only available on Lollipop and above,
+ * scheduled by {@link FavouriteSync}.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public final class FavouriteSyncJobService extends JobService {
+
+    private static final int JOB_ID = 1;
+    private static final long SYNC_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    /**
+     * Stale favourites at the end of a long list are not worth syncing.
+     */
+    private static final int MAX_PAGES = 10;
+    private static final int MAX_CONCURRENT_PAGES = 3;
+
+    private Subscription mSubscription;
+
+    static void schedule(Context context) {
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(
+                Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo jobInfo : jobScheduler.getAllPendingJobs()) {
+            if (jobInfo.getId() == JOB_ID) {
+                return;
+            }
+        }
+        jobScheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, FavouriteSyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setPeriodic(SYNC_INTERVAL_MILLIS)
+                .setPersisted(true)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        AppComponent appComponent = App.getAppComponent(this);
+        User user = appComponent.getUser();
+        if (!user.isLogged() || TextUtils.isEmpty(user.getUid())) {
+            return false;
+        }
+        mSubscription = sync(appComponent.getS1Service(), user.getUid())
+                .subscribe(changed -> L.d("FavouriteSync", changed + " favourites have new replies"),
+                        throwable -> {
+                            L.e(throwable);
+                            jobFinished(params, true);
+                        },
+                        () -> jobFinished(params, false));
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (mSubscription != null) {
+            mSubscription.unsubscribe();
+        }
+        return true;
+    }
+
+    /**
+     * Syncs the first page, then the pages after it in batches of {@link #MAX_CONCURRENT_PAGES}.
+     *
+     * @param uid The user these favourites belong to.
+     * @return How many favourites have new replies since last sync.
+     */
+    private Observable<Integer> sync(S1Service s1Service, String uid) {
+        // only accessed in database thread
+        Set<String> threadIds = new HashSet<>();
+        return fetchPage(s1Service, 1)
+                .concatMap(favourites -> {
+                    FavouriteMirrorDbWrapper dbWrapper = FavouriteMirrorDbWrapper.getInstance();
+                    int changed = mergePage(uid, 1, favourites, threadIds);
+                    int totalPages = favourites.getFavouritesPerPage() == 0 ? 1
+                            : MathUtil.divide(favourites.getTotal(), favourites.getFavouritesPerPage());
+                    dbWrapper.deletePagesAfter(uid, totalPages);
+
+                    int lastPage = Math.min(totalPages, MAX_PAGES);
+                    return Observable.range(2, Math.max(lastPage - 1, 0))
+                            .flatMap(page -> fetchPage(s1Service, page)
+                                    .map(f -> mergePage(uid, page, f, threadIds)), MAX_CONCURRENT_PAGES)
+                            .toList()
+                            .map(changes -> {
+                                // we have seen all the favourites (and not logged out
+                                // meanwhile), so the others were removed
+                                if (lastPage >= totalPages && changes.size() == lastPage - 1) {
+                                    dbWrapper.retainFavourites(uid, threadIds);
+                                }
+                                int sum = changed;
+                                for (int c : changes) {
+                                    sum += c;
+                                }
+                                return sum;
+                            });
+                });
+    }
+
+    /**
+     * @return The favourites of this page (observed in database thread),
+     * or nothing if we have logged out.
+     */
+    private static Observable<Favourites> fetchPage(S1Service s1Service, int page) {
+        return s1Service.getFavouritesWrapper(page)
+                .subscribeOn(AppSchedulers.network())
+                .observeOn(AppSchedulers.database())
+                .map(FavouritesWrapper::getFavourites)
+                .filter(favourites -> favourites != null && favourites.getFavouriteList() != null);
+    }
+
+    /**
+     * @return How many favourites of this page have new replies since last sync.
+     */
+    private static int mergePage(String uid, int page, Favourites favourites, Set<String> threadIds) {
+        for (Favourite favourite : favourites.getFavouriteList()) {
+            threadIds.add(favourite.getId());
+        }
+        return FavouriteMirrorDbWrapper.getInstance().mergeFavourites(uid, page,
+                favourites.getFavouriteList());
+    }
+}
@@ -0,0 +1,97 @@
+package me.ykrank.s1next.widget;
+
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import me.ykrank.s1next.data.api.S1Service;
+import me.ykrank.s1next.data.api.model.wrapper.PostsWrapper;
+import me.ykrank.s1next.util.AppSchedulers;
+import rx.Observable;
+import rx.Subscription;
+import rx.observables.ConnectableObservable;
+
+/**
+ * Starts the request of a page as soon as the user taps a link to it, so the network
+ * time overlaps with the Activity transition. The page which is then created
+ * takes the in-flight (or finished) request by {@link #takePosts(String, int, int)}
+ * rather than starting its own.
+ * <p>
+ * A prefetched result which nobody takes in {@link #MAX_AGE_MILLIS} is dropped.
+ */
+public final class NavigationPrefetcher {
+
+    private static final long MAX_AGE_MILLIS = TimeUnit.SECONDS.toMillis(15);
+
+    private final S1Service mS1Service;
+
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+    public NavigationPrefetcher(S1Service s1Service) {
+        this.mS1Service = s1Service;
+    }
+
+    /**
+     * Starts to load this page of posts (of all authors, in the default order).
+     */
+    public synchronized void prefetchPosts(String threadId, int page, int postsPerPage) {
+        evictExpired();
+        String key = postsKey(threadId, page, postsPerPage);
+        if (mEntries.containsKey(key)) {
+            return;
+        }
+        // replays the response (or the error) to whoever takes it later, and the
+        // connection is the subscription to the request itself, so it could be cancelled
+        ConnectableObservable<PostsWrapper> observable = mS1Service.getPostsWrapper(threadId,
+                page, postsPerPage, null, null)
+                .subscribeOn(AppSchedulers.network())
+                .replay();
+        Subscription connection = observable.connect();
+        mEntries.put(key, new Entry(observable, connection));
+    }
+
+    /**
+     * Returns the prefetched request of this page if there is a fresh one,
+     * each prefetched request is only taken once.
+     */
+    @Nullable
+    public synchronized Observable<PostsWrapper> takePosts(String threadId, int page,
+                                                           int postsPerPage) {
+        evictExpired();
+        Entry entry = mEntries.remove(postsKey(threadId, page, postsPerPage));
+        return entry == null ? null : entry.observable;
+    }
+
+    private void evictExpired() {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.startTime > MAX_AGE_MILLIS) {
+                // nobody took it, cancel the request if it's still running
+                entry.connection.unsubscribe();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String postsKey(String threadId, int page, int postsPerPage) {
+        return "posts_" + threadId + "_" + page + "_" + postsPerPage;
+    }
+
+    private static final class Entry {
+
+        private final Observable<PostsWrapper> observable;
+        private final Subscription connection;
+        private final long startTime = SystemClock.elapsedRealtime();
+
+        private Entry(Observable<PostsWrapper> observable, Subscription connection) {
+            this.observable = observable;
+            this.connection = connection;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package me.ykrank.s1next.widget;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.SystemClock;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import me.ykrank.s1next.util.L;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.Okio;
+import rx.Observable;
+import rx.subjects.BehaviorSubject;
+import rx.subjects.PublishSubject;
+
+/**
+ * Estimates the quality of current network from the real transfers of our
+ * {@link okhttp3.OkHttpClient}s (see {@link #getInterceptor()}), and watches whether
+ * current network is metered.
+ * <p>
+ * All the adaptive fetch policies (page size, prefetch distance, avatar resolution and
+ * whether to download images) should be decided here so they adapt consistently.
+ * Subscribe {@link #observeQuality()} to know when they change.
+ */
+public final class NetworkQualityEstimator {
+
+    /**
+     * Thresholds in kilobits per second, the same as Facebook's network connection class.
+     */
+    private static final double POOR_KBPS = 150;
+    private static final double MODERATE_KBPS = 550;
+    private static final double GOOD_KBPS = 2000;
+
+    /**
+     * Connections with higher latency are poor regardless of its bandwidth.
+     */
+    private static final double POOR_LATENCY_MILLIS = 1500;
+
+    /**
+     * The latency is the minimum of this many recent samples, as a single
+     * sample also includes how long the server took (like a slow search).
+     */
+    private static final int LATENCY_WINDOW = 8;
+
+    /**
+     * Small responses are dominated by latency, so we don't sample their bandwidth.
+     */
+    private static final long MIN_BANDWIDTH_SAMPLE_BYTES = 16 * 1024;
+    private static final int MIN_SAMPLES = 3;
+
+    /**
+     * The weight of a new sample in the exponential moving average.
+     */
+    private static final double SAMPLE_WEIGHT = 0.25;
+
+    private final Context mContext;
+    private final Interceptor mInterceptor = new SamplingInterceptor();
+
+    private final Object mLock = new Object();
+    private double mBandwidthKbps;
+    private int mBandwidthSamples;
+    private final long[] mLatencyWindow = new long[LATENCY_WINDOW];
+    private double mLatencyMillis;
+    private int mLatencySamples;
+
+    private volatile boolean mMetered;
+    private final BehaviorSubject<Quality> mQualitySubject = BehaviorSubject.create(Quality.UNKNOWN);
+    private final PublishSubject<Boolean> mConnectivitySubject = PublishSubject.create();
+
+    public NetworkQualityEstimator(Context context) {
+        this.mContext = context.getApplicationContext();
+
+        mMetered = isActiveNetworkMetered();
+        mContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                onNetworkChanged();
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    /**
+     * Should be added as network interceptor, so responses from cache are not sampled.
+     */
+    public Interceptor getInterceptor() {
+        return mInterceptor;
+    }
+
+    public Quality getQuality() {
+        return mQualitySubject.getValue();
+    }
+
+    /**
+     * Emits current quality immediately, and then emits when the quality
+     * (or whether current network is metered) changes, maybe in any thread.
+     */
+    public Observable<Quality> observeQuality() {
+        return mQualitySubject.asObservable();
+    }
+
+    /**
+     * Emits whether we are connected each time current network changes, maybe in any thread.
+     */
+    public Observable<Boolean> observeConnectivity() {
+        return mConnectivitySubject.asObservable();
+    }
+
+    public boolean isConnected() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) mContext.getSystemService(
+                Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    /**
+     * Whether user may pay for the data (usually mobile network).
+     */
+    public boolean isMetered() {
+        return mMetered;
+    }
+
+    /**
+     * Whether we could request bigger pages (and higher resolution images).
+     * Before we have enough samples, we think an unmetered network is fast.
+     */
+    public boolean isFast() {
+        if (mMetered) {
+            return false;
+        }
+        Quality quality = getQuality();
+        return quality == Quality.UNKNOWN || quality.compareTo(Quality.GOOD) >= 0;
+    }
+
+    /**
+     * Whether we could download something which user hasn't asked for,
+     * like images when user only wants images on Wi-Fi.
+     */
+    public boolean isUnmeteredAndNotPoor() {
+        return !mMetered && getQuality() != Quality.POOR;
+    }
+
+    /**
+     * How many neighbours (of the current one) we should download in advance.
+     */
+    public int getPrefetchDistance() {
+        int distance;
+        switch (getQuality()) {
+            case POOR:
+                distance = 1;
+                break;
+            case GOOD:
+                distance = 3;
+                break;
+            case EXCELLENT:
+                distance = 4;
+                break;
+            default:
+                distance = 2;
+                break;
+        }
+        return mMetered ? Math.min(distance, 2) : distance;
+    }
+
+    /**
+     * Returns current estimates, used for debugging.
+     */
+    @Override
+    public String toString() {
+        synchronized (mLock) {
+            return String.format(java.util.Locale.US,
+                    "Network: %s%s, bandwidth=%.0fkbps (%d samples), latency=%.0fms (%d samples)",
+                    getQuality(), mMetered ? " (metered)" : "", mBandwidthKbps, mBandwidthSamples,
+                    mLatencyMillis, mLatencySamples);
+        }
+    }
+
+    private boolean isActiveNetworkMetered() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) mContext.getSystemService(
+                Context.CONNECTIVITY_SERVICE);
+        return ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+
+    /**
+     * Samples of the previous network are meaningless for the new one.
+     */
+    private void onNetworkChanged() {
+        mMetered = isActiveNetworkMetered();
+        synchronized (mLock) {
+            mBandwidthSamples = 0;
+            mLatencySamples = 0;
+        }
+        mQualitySubject.onNext(Quality.UNKNOWN);
+        mConnectivitySubject.onNext(isConnected());
+    }
+
+    private void addLatencySample(long millis) {
+        synchronized (mLock) {
+            mLatencyWindow[mLatencySamples % LATENCY_WINDOW] = millis;
+            mLatencySamples++;
+            long min = Long.MAX_VALUE;
+            for (int i = 0, n = Math.min(mLatencySamples, LATENCY_WINDOW); i < n; i++) {
+                min = Math.min(min, mLatencyWindow[i]);
+            }
+            mLatencyMillis = min;
+        }
+        updateQuality();
+    }
+
+    private void addBandwidthSample(long bytes, long nanos) {
+        if (bytes < MIN_BANDWIDTH_SAMPLE_BYTES || nanos <= 0) {
+            return;
+        }
+        double kbps = bytes * 8.0 * TimeUnit.MILLISECONDS.toNanos(1) / nanos;
+        synchronized (mLock) {
+            mBandwidthKbps = mBandwidthSamples == 0 ? kbps
+                    : mBandwidthKbps + SAMPLE_WEIGHT * (kbps - mBandwidthKbps);
+            mBandwidthSamples++;
+        }
+        updateQuality();
+    }
+
+    private void updateQuality() {
+        Quality quality;
+        synchronized (mLock) {
+            if (mLatencySamples >= MIN_SAMPLES && mLatencyMillis > POOR_LATENCY_MILLIS) {
+                quality = Quality.POOR;
+            } else if (mBandwidthSamples < MIN_SAMPLES) {
+                quality = Quality.UNKNOWN;
+            } else if (mBandwidthKbps < POOR_KBPS) {
+                quality = Quality.POOR;
+            } else if (mBandwidthKbps < MODERATE_KBPS) {
+                quality = Quality.MODERATE;
+            } else if (mBandwidthKbps < GOOD_KBPS) {
+                quality = Quality.GOOD;
+            } else {
+                quality = Quality.EXCELLENT;
+            }
+        }
+        if (quality != getQuality()) {
+            mQualitySubject.onNext(quality);
+        }
+    }
+
+    public enum Quality {
+        UNKNOWN, POOR, MODERATE, GOOD, EXCELLENT
+    }
+
+    /**
+     * Samples the latency (until the response headers arrived, only for requests
+     * without body so upload time is not included) and the bandwidth (while
+     * reading the response body, see {@link BandwidthSamplingSource}).
+     */
+    private final class SamplingInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            long start = SystemClock.elapsedRealtime();
+            Response response = chain.proceed(chain.request());
+            if (chain.request().body() == null) {
+                addLatencySample(SystemClock.elapsedRealtime() - start);
+            }
+
+            ResponseBody body = response.body();
+            if (body == null) {
+                return response;
+            }
+            return response.newBuilder()
+                    .body(new SamplingResponseBody(body))
+                    .build();
+        }
+    }
+
+    private final class SamplingResponseBody extends ResponseBody {
+
+        private final ResponseBody mResponseBody;
+        private final BufferedSource mSource;
+
+        private SamplingResponseBody(ResponseBody responseBody) {
+            this.mResponseBody = responseBody;
+            this.mSource = Okio.buffer(new BandwidthSamplingSource(responseBody.source(),
+                    BandwidthSamplingSource.SYSTEM_CLOCK, (bytes, nanos) -> {
+                        try {
+                            addBandwidthSample(bytes, nanos);
+                        } catch (RuntimeException e) {
+                            L.e(e);
+                        }
+                    }));
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mResponseBody.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return mResponseBody.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return mSource;
+        }
+    }
+}
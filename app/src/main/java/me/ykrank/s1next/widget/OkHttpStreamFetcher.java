@@ -1,26 +1,19 @@
 package me.ykrank.s1next.widget;
 
 import android.content.res.Resources;
-import android.util.LruCache;
 
 import com.bumptech.glide.Priority;
-import com.bumptech.glide.disklrucache.DiskLruCache;
-import com.bumptech.glide.load.Key;
 import com.bumptech.glide.load.data.DataFetcher;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.util.ContentLengthInputStream;
-import com.bumptech.glide.util.Util;
 import com.google.common.io.Closeables;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 import me.ykrank.s1next.App;
-import me.ykrank.s1next.BuildConfig;
+import me.ykrank.s1next.AppComponent;
 import me.ykrank.s1next.R;
 import me.ykrank.s1next.data.api.Api;
 import me.ykrank.s1next.data.pref.DownloadPreferencesManager;
@@ -54,6 +47,7 @@ final class OkHttpStreamFetcher implements DataFetcher<InputStream> {
 
     private final Resources mResources;
     private final DownloadPreferencesManager mDownloadPreferencesManager;
+    private final AvatarRevalidator mAvatarRevalidator;
 
     private final OkHttpClient mOkHttpClient;
     private final GlideUrl mGlideUrl;
@@ -67,26 +61,35 @@ final class OkHttpStreamFetcher implements DataFetcher<InputStream> {
         this.mGlideUrl = glideUrl;
 
         mResources = App.get().getResources();
-        mDownloadPreferencesManager = App.getAppComponent(App.get()).getDownloadPreferencesManager();
+        AppComponent appComponent = App.getAppComponent(App.get());
+        mDownloadPreferencesManager = appComponent.getDownloadPreferencesManager();
+        mAvatarRevalidator = appComponent.getAvatarRevalidator();
     }
 
     @Override
     public InputStream loadData(Priority priority) throws IOException {
-        Key key = null;
         String url = mGlideUrl.toStringUrl();
-        if (Api.isAvatarUrl(url)) {
-            key = new OriginalKey(url,
-                    mDownloadPreferencesManager.getAvatarCacheInvalidationIntervalSignature());
-            if (AvatarUrlsCache.has(key)) {
-                // already have cached this avatar url
-                mInputStream = mResources.openRawResource(+R.drawable.ic_avatar_placeholder);
-                return mInputStream;
-            }
+        int avatarUid = Api.getAvatarUserId(url);
+        if (avatarUid > 0 && DefaultAvatarUidsCache.has(avatarUid,
+                mDownloadPreferencesManager.getAvatarCacheInvalidationIntervalMillis())) {
+            // we know this user has no custom avatar
+            mInputStream = mResources.openRawResource(+R.drawable.ic_avatar_placeholder);
+            return mInputStream;
+        }
+        byte[] freshBody = avatarUid > 0 ? mAvatarRevalidator.takeFreshBody(url) : null;
+        if (freshBody != null) {
+            // downloaded while revalidating
+            mInputStream = new ByteArrayInputStream(freshBody);
+            return mInputStream;
         }
 
-        Request request = new Request.Builder()
-                .url(url)
-                .build();
+        Request.Builder builder = new Request.Builder()
+                .url(url);
+        String priority = mGlideUrl.getHeaders().get(RequestPriority.HEADER_NAME);
+        if (priority != null) {
+            builder.header(RequestPriority.HEADER_NAME, priority);
+        }
+        Request request = builder.build();
 
         mCall = mOkHttpClient.newCall(request);
         Response response = mCall.execute();
@@ -94,14 +97,20 @@ final class OkHttpStreamFetcher implements DataFetcher<InputStream> {
 
         if (!response.isSuccessful()) {
             // if (this this a avatar URL) && (this URL is cacheable)
-            if (key != null && isCacheable(response)) {
-                AvatarUrlsCache.put(key);
+            if (avatarUid > 0 && isCacheable(response)) {
+                DefaultAvatarUidsCache.put(avatarUid);
+                mAvatarRevalidator.onAvatarDownloaded(url, response);
                 mInputStream = mResources.openRawResource(+R.drawable.ic_avatar_placeholder);
                 return mInputStream;
             }
 
             throw new IOException("Response (status code " + response.code() + ") is unsuccessful.");
         }
+        if (avatarUid > 0) {
+            // this user has set up a custom avatar since last check
+            DefaultAvatarUidsCache.remove(avatarUid);
+            mAvatarRevalidator.onAvatarDownloaded(url, response);
+        }
 
         long contentLength = mResponseBody.contentLength();
         mInputStream = ContentLengthInputStream.obtain(mResponseBody.byteStream(), contentLength);
@@ -172,170 +181,4 @@ final class OkHttpStreamFetcher implements DataFetcher<InputStream> {
 
         return true;
     }
-
-    /**
-     * We would get 404 status code if user hasn't set up their
-     * avatar (in this case, we use the default avatar for this user).
-     * So we can use this mechanism to cache these user avatars
-     * (because they just use the default avatar).
-     * <p>
-     * According to RFC (http://tools.ietf.org/html/rfc7231#section-6.1),
-     * we could cache some responses with specific status codes (like 301, 404 and 405).
-     * Glide only cache the images whose response is successful.
-     * But we also cache those user avatar URLs whose status code
-     * is cacheable in order to tell Glide we use the default
-     * avatar (error placeholder in implementation).
-     * <p>
-     * If this cache contains an avatar URL that Glide requests,
-     * just throw an exception to tell Glide to use the error
-     * placeholder for this image.
-     *
-     * @see me.ykrank.s1next.widget.OkHttpStreamFetcher#loadData(com.bumptech.glide.Priority)
-     */
-    private enum AvatarUrlsCache {
-        INSTANCE;
-
-        private static final int MEMORY_CACHE_MAX_NUMBER = 1000;
-        private static final String DISK_CACHE_DIRECTORY = "avatar_urls_disk_cache";
-        private static final long DISK_CACHE_MAX_SIZE = 1000 * 1000; // 1MB
-
-        /**
-         * We only cache the avatar URLs as keys.
-         * So we use this to represent the
-         * null value because {@link android.util.LruCache}
-         * doesn't accept null as a value.
-         */
-        private static final Object NULL_VALUE = new Object();
-
-        private static final Object DISK_CACHE_LOCK = new Object();
-
-        /**
-         * We use both disk cache and memory cache.
-         */
-        private final DiskLruCache diskLruCache;
-        private final LruCache<String, Object> lruCache;
-        private final KeyGenerator keyGenerator;
-
-        AvatarUrlsCache() {
-            lruCache = new LruCache<>(MEMORY_CACHE_MAX_NUMBER);
-
-            File file = new File(App.get().getCacheDir().getPath()
-                    + File.separator + DISK_CACHE_DIRECTORY);
-            try {
-                diskLruCache = DiskLruCache.open(file, BuildConfig.VERSION_CODE, 1,
-                        DISK_CACHE_MAX_SIZE);
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to open the cache in " + file + ".", e);
-            }
-
-            keyGenerator = new KeyGenerator();
-        }
-
-        private static boolean has(Key key) {
-            String encodedKey = INSTANCE.keyGenerator.getKey(key);
-            if (encodedKey == null) {
-                return false;
-            }
-
-            if (INSTANCE.lruCache.get(encodedKey) != null) {
-                return true;
-            }
-            try {
-                synchronized (DISK_CACHE_LOCK) {
-                    return INSTANCE.diskLruCache.get(encodedKey) != null;
-                }
-            } catch (IOException ignore) {
-                return false;
-            }
-        }
-
-        private static void put(Key key) {
-            String encodedKey = INSTANCE.keyGenerator.getKey(key);
-            if (encodedKey == null) {
-                return;
-            }
-
-            INSTANCE.lruCache.put(encodedKey, NULL_VALUE);
-            try {
-                synchronized (DISK_CACHE_LOCK) {
-                    DiskLruCache.Editor editor = INSTANCE.diskLruCache.edit(encodedKey);
-                    if (editor.getFile(0).createNewFile()) {
-                        editor.commit();
-                    } else {
-                        editor.abort();
-                    }
-                }
-            } catch (IOException ignore) {
-
-            }
-        }
-
-        /**
-         * Forked from {@link com.bumptech.glide.load.engine.cache.SafeKeyGenerator}.
-         */
-        private static final class KeyGenerator {
-
-            private static final int AVATAR_URL_KEYS_MEMORY_CACHE_MAX_NUMBER = 1000;
-
-            private final LruCache<Key, String> lruCache = new LruCache<>(AVATAR_URL_KEYS_MEMORY_CACHE_MAX_NUMBER);
-
-            public String getKey(Key key) {
-                String value = lruCache.get(key);
-                if (value == null) {
-                    try {
-                        // TODO: https://github.com/bumptech/glide/pull/798 when Glide 4 was released
-                        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
-                        key.updateDiskCacheKey(messageDigest);
-                        value = Util.sha256BytesToHex(messageDigest.digest());
-                        lruCache.put(key, value);
-                    } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-
-                return value;
-            }
-        }
-    }
-
-    /**
-     * Forked from {@link com.bumptech.glide.load.engine.OriginalKey}.
-     */
-    private static final class OriginalKey implements Key {
-
-        private final String id;
-        private final Key signature;
-
-        public OriginalKey(String id, Key signature) {
-            this.id = id;
-            this.signature = signature;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) {
-                return true;
-            }
-            if (o == null || getClass() != o.getClass()) {
-                return false;
-            }
-
-            OriginalKey that = (OriginalKey) o;
-
-            return id.equals(that.id) && signature.equals(that.signature);
-        }
-
-        @Override
-        public int hashCode() {
-            int result = id.hashCode();
-            result = 31 * result + signature.hashCode();
-            return result;
-        }
-
-        @Override
-        public void updateDiskCacheKey(MessageDigest messageDigest) throws UnsupportedEncodingException {
-            messageDigest.update(id.getBytes(STRING_CHARSET_NAME));
-            signature.updateDiskCacheKey(messageDigest);
-        }
-    }
 }
@@ -0,0 +1,332 @@
+package me.ykrank.s1next.widget;
+
+import android.content.Context;
+import android.os.Build;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.widget.Toast;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.ykrank.s1next.R;
+import me.ykrank.s1next.data.User;
+import me.ykrank.s1next.data.api.Api;
+import me.ykrank.s1next.data.api.ApiFlatTransformer;
+import me.ykrank.s1next.data.api.S1Service;
+import me.ykrank.s1next.data.api.UserValidator;
+import me.ykrank.s1next.data.api.model.Post;
+import me.ykrank.s1next.data.api.model.Result;
+import me.ykrank.s1next.data.api.model.wrapper.ResultWrapper;
+import me.ykrank.s1next.data.db.OutboxDbWrapper;
+import me.ykrank.s1next.data.db.dbmodel.OutboxItem;
+import me.ykrank.s1next.data.event.OutboxChangeEvent;
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.util.L;
+import me.ykrank.s1next.util.RxJavaUtil;
+import rx.Observable;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Func1;
+
+/**
+ * Keeps the writes (replies and adding favourites) which failed because of network errors
+ * in database, and sends them when we are online again, so user never waits for
+ * (or retries) the network after writing.
+ * <p>
+ * Only writes which failed before they reached the server are queued (see {@link #isNotSent(Throwable)}),
+ * otherwise the server may have accepted them and sending them again makes duplicates.
+ * New threads are not queued for the same reason, as we have no thread to check it in.
+ * <p>
+ * Items are sent one by one in order. The first item is retried with exponential backoff
+ * (and at once when connectivity returns) until it reaches the server. Items the server
+ * rejects are dropped with its message shown, after one more try with a new authenticity
+ * token if ours expired while the item was waiting.
+ * <p>
+ * All methods must be called in main thread.
+ */
+@MainThread
+public final class Outbox {
+
+    private static final long MIN_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Items which keep failing because of server errors (rather than network errors)
+     * are dropped after this many tries.
+     */
+    private static final int MAX_SERVER_ERROR_ATTEMPTS = 10;
+
+    /**
+     * The same as {@link me.ykrank.s1next.view.dialog.ReplyRequestDialogFragment}
+     * and {@link me.ykrank.s1next.view.dialog.ThreadFavouritesAddRequestDialogFragment}.
+     */
+    private static final String STATUS_REPLY_SUCCESS = "post_reply_succeed";
+    private static final String STATUS_ADD_TO_FAVOURITES_SUCCESS = "favorite_do_success";
+    private static final String STATUS_ADD_TO_FAVOURITES_REPEAT = "favorite_repeat";
+    private static final String STATUS_INVALID_AUTHENTICITY_TOKEN = "submit_invalid";
+
+    private final Context mContext;
+    private final S1Service mS1Service;
+    private final PostFormPrefetcher mPostFormPrefetcher;
+    private final UserValidator mUserValidator;
+    private final User mUser;
+    private final EventBus mEventBus;
+
+    private final List<OutboxItem> mItems = new ArrayList<>();
+    private boolean mLoaded;
+
+    /**
+     * Called when we stop sending, see {@link #flush(Runnable)}.
+     */
+    private final List<Runnable> mFlushCallbacks = new ArrayList<>();
+
+    @Nullable
+    private Subscription mSendSubscription;
+    @Nullable
+    private Subscription mRetrySubscription;
+
+    public Outbox(Context context, S1Service s1Service, PostFormPrefetcher postFormPrefetcher,
+                  UserValidator userValidator, User user, EventBus eventBus,
+                  NetworkQualityEstimator networkQualityEstimator) {
+        this.mContext = context.getApplicationContext();
+        this.mS1Service = s1Service;
+        this.mPostFormPrefetcher = postFormPrefetcher;
+        this.mUserValidator = userValidator;
+        this.mUser = user;
+        this.mEventBus = eventBus;
+
+        Observable.fromCallable(() -> OutboxDbWrapper.getInstance().getAll())
+                .subscribeOn(AppSchedulers.database())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(items -> {
+                    // items queued while loading are newer
+                    mItems.addAll(0, items);
+                    mLoaded = true;
+                    flush();
+                }, L::e);
+        networkQualityEstimator.observeConnectivity()
+                .filter(connected -> connected)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(connected -> flush(), L::e);
+    }
+
+    /**
+     * Whether this request failed before it reached the server,
+     * so it is safe to send it again.
+     */
+    public static boolean isNotSent(Throwable throwable) {
+        return throwable instanceof ConnectException || throwable instanceof UnknownHostException;
+    }
+
+    /**
+     * Queues this item, which is sent after a while (or when connectivity returns).
+     */
+    public void enqueue(OutboxItem item) {
+        item.timestamp = System.currentTimeMillis();
+        item.attempts = 1;
+        mItems.add(item);
+        save(item);
+        mEventBus.post(new OutboxChangeEvent(item.threadId, false));
+        // OutboxJobService can't be loaded below Lollipop
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            OutboxJobService.schedule(mContext);
+        }
+        if (mSendSubscription == null && mRetrySubscription == null) {
+            // the request has just failed, so don't try again at once
+            scheduleRetry(item);
+        }
+    }
+
+    /**
+     * Sends the queued items now.
+     */
+    public void flush() {
+        RxJavaUtil.unsubscribeIfNotNull(mRetrySubscription);
+        mRetrySubscription = null;
+        if (mSendSubscription != null || !mLoaded) {
+            return;
+        }
+        if (mItems.isEmpty()) {
+            onFlushFinished();
+            return;
+        }
+        OutboxItem item = mItems.get(0);
+        mSendSubscription = send(item)
+                .subscribeOn(AppSchedulers.network())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(wrapper -> onSent(item, wrapper), throwable -> onFailed(item, throwable));
+    }
+
+    /**
+     * Sends the queued items now, and calls this callback when we stop sending
+     * (all items are sent or dropped, or we are waiting to retry the first item).
+     */
+    public void flush(Runnable callback) {
+        mFlushCallbacks.add(callback);
+        flush();
+    }
+
+    private void onFlushFinished() {
+        List<Runnable> callbacks = new ArrayList<>(mFlushCallbacks);
+        mFlushCallbacks.clear();
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    public boolean isEmpty() {
+        return mItems.isEmpty();
+    }
+
+    /**
+     * Returns the queued replies to this thread as posts of current user,
+     * see {@link Post#isPending()}.
+     */
+    public List<Post> getPendingReplies(String threadId) {
+        List<Post> posts = new ArrayList<>();
+        for (OutboxItem item : mItems) {
+            if (item.type != OutboxItem.TYPE_REPLY || !item.threadId.equals(threadId)) {
+                continue;
+            }
+            Post post = new Post();
+            // negative so they never collide with (and are never newer than) real posts
+            post.setId(String.valueOf(-item.timestamp));
+            post.setAuthorId(mUser.getUid());
+            post.setAuthorName(mUser.getName());
+            post.setDatetime(TimeUnit.MILLISECONDS.toSeconds(item.timestamp));
+            post.setReply(TextUtils.htmlEncode(item.message).replace("\n", "<br />"));
+            post.setPending(true);
+            posts.add(post);
+        }
+        return posts;
+    }
+
+    private Observable<ResultWrapper> send(OutboxItem item) {
+        boolean hadAuthenticityToken = !TextUtils.isEmpty(mUser.getAuthenticityToken());
+        return sendWithAuthenticityToken(item).flatMap(wrapper -> {
+            if (hadAuthenticityToken && isAuthenticityTokenInvalid(wrapper.getResult())) {
+                // our authenticity token has expired while this item was waiting
+                mUser.setAuthenticityToken(null);
+                return sendWithAuthenticityToken(item);
+            }
+            return Observable.just(wrapper);
+        });
+    }
+
+    private Observable<ResultWrapper> sendWithAuthenticityToken(OutboxItem item) {
+        if (item.type == OutboxItem.TYPE_FAVOURITE) {
+            return flatMappedWithAuthenticityToken(token ->
+                    mS1Service.addThreadFavorite(token, item.threadId, item.message));
+        } else if (TextUtils.isEmpty(item.quotePostId)) {
+            return flatMappedWithAuthenticityToken(token ->
+                    mS1Service.reply(token, item.threadId, item.message));
+        } else {
+            return mPostFormPrefetcher.getQuote(item.threadId, item.quotePostId).flatMap(quote ->
+                    flatMappedWithAuthenticityToken(token ->
+                            mS1Service.replyQuote(token, item.threadId, item.message,
+                                    quote.getEncodedUserId(), quote.getQuoteMessage(),
+                                    StringUtils.abbreviate(item.message,
+                                            Api.REPLY_NOTIFICATION_MAX_LENGTH))));
+        }
+    }
+
+    private Observable<ResultWrapper> flatMappedWithAuthenticityToken(
+            Func1<String, Observable<ResultWrapper>> func) {
+        return ApiFlatTransformer.flatMappedWithAuthenticityToken(
+                mPostFormPrefetcher.refreshAuthenticityToken(), mUserValidator, mUser, func);
+    }
+
+    private void onSent(OutboxItem item, ResultWrapper wrapper) {
+        mSendSubscription = null;
+        Result result = wrapper.getResult();
+        String message = result == null ? null : result.getMessage();
+        if (isSucceeded(item, result)) {
+            remove(item, true);
+            showText(message);
+        } else {
+            remove(item, false);
+            showText(mContext.getString(R.string.message_outbox_rejected,
+                    TextUtils.isEmpty(message) ? mContext.getString(R.string.message_unknown_error)
+                            : message));
+        }
+        flush();
+    }
+
+    private void onFailed(OutboxItem item, Throwable throwable) {
+        mSendSubscription = null;
+        item.attempts++;
+        if (!isNotSent(throwable)) {
+            L.e(throwable);
+            if (throwable instanceof IOException && !(throwable instanceof JsonProcessingException)) {
+                // the connection broke after the server got it (like a read timeout),
+                // it may have been accepted
+                remove(item, false);
+                showText(mContext.getString(R.string.message_outbox_unknown));
+                flush();
+                return;
+            }
+            // server errors, including responses we couldn't parse
+            if (item.attempts > MAX_SERVER_ERROR_ATTEMPTS) {
+                remove(item, false);
+                showText(mContext.getString(R.string.message_outbox_rejected,
+                        mContext.getString(R.string.message_server_error)));
+                flush();
+                return;
+            }
+        }
+        save(item);
+        scheduleRetry(item);
+        onFlushFinished();
+    }
+
+    private void scheduleRetry(OutboxItem item) {
+        RxJavaUtil.unsubscribeIfNotNull(mRetrySubscription);
+        long delay = Math.min(MIN_RETRY_DELAY_MILLIS << Math.min(item.attempts - 1, 16),
+                MAX_RETRY_DELAY_MILLIS);
+        mRetrySubscription = Observable.timer(delay, TimeUnit.MILLISECONDS,
+                AndroidSchedulers.mainThread())
+                .subscribe(t -> flush(), L::e);
+    }
+
+    private void remove(OutboxItem item, boolean sent) {
+        mItems.remove(item);
+        AppSchedulers.databaseExecutor().execute(() -> OutboxDbWrapper.getInstance().delete(item));
+        mEventBus.post(new OutboxChangeEvent(item.threadId, sent));
+    }
+
+    private static void save(OutboxItem item) {
+        AppSchedulers.databaseExecutor().execute(() -> OutboxDbWrapper.getInstance().save(item));
+    }
+
+    private void showText(@Nullable String text) {
+        if (!TextUtils.isEmpty(text)) {
+            Toast.makeText(mContext, text, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private static boolean isAuthenticityTokenInvalid(@Nullable Result result) {
+        return result != null && STATUS_INVALID_AUTHENTICITY_TOKEN.equals(result.getStatus());
+    }
+
+    private static boolean isSucceeded(OutboxItem item, @Nullable Result result) {
+        if (result == null) {
+            return false;
+        }
+        String status = result.getStatus();
+        if (item.type == OutboxItem.TYPE_FAVOURITE) {
+            return STATUS_ADD_TO_FAVOURITES_SUCCESS.equals(status)
+                    || STATUS_ADD_TO_FAVOURITES_REPEAT.equals(status);
+        }
+        return STATUS_REPLY_SUCCESS.equals(status);
+    }
+}
@@ -0,0 +1,54 @@
+package me.ykrank.s1next.widget;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+
+import me.ykrank.s1next.App;
+
+/**
+ * Starts our process when we are online again if {@link Outbox} has items,
+ * so they are sent even if user has left our app. The sending itself is done
+ * by {@link Outbox} as usual, and this job finishes when it stops sending.
+ * <p>
+ * Only available on Lollipop and above, scheduled by {@link Outbox}.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public final class OutboxJobService extends JobService {
+
+    private static final int JOB_ID = 2;
+
+    static void schedule(Context context) {
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(
+                Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo jobInfo : jobScheduler.getAllPendingJobs()) {
+            if (jobInfo.getId() == JOB_ID) {
+                return;
+            }
+        }
+        jobScheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, OutboxJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPersisted(true)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        Outbox outbox = App.getAppComponent(this).getOutbox();
+        // the outbox keeps retrying in our process by itself,
+        // run again later in case our process is killed before that
+        outbox.flush(() -> jobFinished(params, !outbox.isEmpty()));
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        return !App.getAppComponent(this).getOutbox().isEmpty();
+    }
+}
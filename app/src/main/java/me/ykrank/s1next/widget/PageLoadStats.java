@@ -0,0 +1,73 @@
+package me.ykrank.s1next.widget;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how pages in {@link me.ykrank.s1next.view.fragment.BaseRecyclerViewFragment}
+ * are loaded, in order to tune when we defer, prefetch or cancel page loads.
+ */
+public final class PageLoadStats {
+
+    /**
+     * Loads started immediately because the page was visible.
+     */
+    private final AtomicInteger mVisibleLoads = new AtomicInteger();
+    /**
+     * Deferred loads started because the page became visible.
+     */
+    private final AtomicInteger mDeferredLoadsOnVisible = new AtomicInteger();
+    /**
+     * Deferred loads started because the network became idle.
+     */
+    private final AtomicInteger mDeferredLoadsOnIdle = new AtomicInteger();
+    /**
+     * Deferred loads which never started since the page was destroyed.
+     */
+    private final AtomicInteger mDeferredLoadsDropped = new AtomicInteger();
+    /**
+     * Loads cancelled since the page was destroyed.
+     */
+    private final AtomicInteger mLoadsCancelled = new AtomicInteger();
+    private final AtomicInteger mLoadsSucceeded = new AtomicInteger();
+    private final AtomicInteger mLoadsFailed = new AtomicInteger();
+    private final AtomicLong mTotalLoadMillis = new AtomicLong();
+
+    public void onLoadStarted(boolean deferred, boolean visible) {
+        if (!deferred) {
+            mVisibleLoads.incrementAndGet();
+        } else if (visible) {
+            mDeferredLoadsOnVisible.incrementAndGet();
+        } else {
+            mDeferredLoadsOnIdle.incrementAndGet();
+        }
+    }
+
+    public void onDeferredLoadDropped() {
+        mDeferredLoadsDropped.incrementAndGet();
+    }
+
+    public void onLoadCancelled() {
+        mLoadsCancelled.incrementAndGet();
+    }
+
+    public void onLoadFinished(boolean succeeded, long millis) {
+        if (succeeded) {
+            mLoadsSucceeded.incrementAndGet();
+        } else {
+            mLoadsFailed.incrementAndGet();
+        }
+        mTotalLoadMillis.addAndGet(millis);
+    }
+
+    @Override
+    public String toString() {
+        int finished = mLoadsSucceeded.get() + mLoadsFailed.get();
+        return String.format(Locale.US, "visible=%d, deferred(visible)=%d, deferred(idle)=%d,"
+                        + " deferred(dropped)=%d, cancelled=%d, succeeded=%d, failed=%d, avg=%dms",
+                mVisibleLoads.get(), mDeferredLoadsOnVisible.get(), mDeferredLoadsOnIdle.get(),
+                mDeferredLoadsDropped.get(), mLoadsCancelled.get(), mLoadsSucceeded.get(),
+                mLoadsFailed.get(), finished == 0 ? 0 : mTotalLoadMillis.get() / finished);
+    }
+}
@@ -0,0 +1,169 @@
+package me.ykrank.s1next.widget;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.text.Html;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import me.ykrank.s1next.data.api.S1Service;
+import me.ykrank.s1next.data.api.model.Post;
+import me.ykrank.s1next.data.api.model.collection.Posts;
+import me.ykrank.s1next.util.AppSchedulers;
+import rx.Observable;
+import rx.android.schedulers.AndroidSchedulers;
+
+/**
+ * A sparse cache of what some posts of recently read threads look like
+ * (author, time and the beginning of the content), so we could show where user
+ * is in a thread's timeline while dragging through its pages without loading them.
+ * <p>
+ * Summaries are keyed by floor ({@link Post#getCount()}), so they don't depend on
+ * the page size. They come from the first post of every page we load, and from
+ * {@link #sample(String, int)} which loads single posts in background.
+ * <p>
+ * All methods must be called in main thread.
+ */
+@MainThread
+public final class PageSummaryCache {
+
+    private static final int MAX_THREADS = 16;
+
+    private static final int SNIPPET_LENGTH = 60;
+
+    /**
+     * How many posts {@link #sample(String, int)} spreads over a thread.
+     */
+    private static final int SAMPLES = 12;
+
+    private final S1Service mS1Service;
+    private final RequestScheduler mRequestScheduler;
+
+    private final LruCache<String, TreeMap<Integer, Summary>> mCache = new LruCache<>(MAX_THREADS);
+
+    public PageSummaryCache(S1Service s1Service, RequestScheduler requestScheduler) {
+        this.mS1Service = s1Service;
+        this.mRequestScheduler = requestScheduler;
+    }
+
+    /**
+     * Records the first post of this page (of all authors, in the default order).
+     */
+    public void put(String threadId, List<Post> posts) {
+        if (!posts.isEmpty()) {
+            put(threadId, posts.get(0));
+        }
+    }
+
+    /**
+     * Records the last of these posts which were appended to the last page.
+     */
+    public void putAppended(String threadId, List<Post> posts) {
+        if (!posts.isEmpty()) {
+            put(threadId, posts.get(posts.size() - 1));
+        }
+    }
+
+    private void put(String threadId, Post post) {
+        if (post.isHide()) {
+            // its author or content was filtered, don't show it in summaries
+            return;
+        }
+        int floor = parseFloor(post);
+        if (floor == 0) {
+            return;
+        }
+        TreeMap<Integer, Summary> summaries = mCache.get(threadId);
+        if (summaries == null) {
+            summaries = new TreeMap<>();
+            mCache.put(threadId, summaries);
+        }
+        summaries.put(floor, new Summary(floor, post.getAuthorName(), post.getDatetime(),
+                toSnippet(post.getReply())));
+    }
+
+    /**
+     * Returns the summary of this floor, or of the nearest floor before it
+     * if we have not seen this floor.
+     */
+    @Nullable
+    public Summary getFloorOrBefore(String threadId, int floor) {
+        TreeMap<Integer, Summary> summaries = mCache.get(threadId);
+        if (summaries == null) {
+            return null;
+        }
+        Map.Entry<Integer, Summary> entry = summaries.floorEntry(floor);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * Loads single posts evenly spread over this thread with {@link RequestPriority#BACKGROUND}
+     * one by one, skipping the parts we have summaries of.
+     *
+     * @param totalFloors The floor of the last post.
+     * @return Emits after each summary is added.
+     */
+    public Observable<Void> sample(String threadId, int totalFloors) {
+        int step = Math.max(totalFloors / SAMPLES, 1);
+        List<Integer> floors = new ArrayList<>();
+        for (int floor = 1 + step / 2; floor <= totalFloors; floor += step) {
+            Summary summary = getFloorOrBefore(threadId, floor + step / 2);
+            if (summary == null || summary.floor <= floor - step / 2) {
+                floors.add(floor);
+            }
+        }
+        return Observable.from(floors)
+                .concatMap(floor -> mS1Service.getPostsWrapper(RequestPriority.BACKGROUND.name(),
+                        threadId, floor, 1)
+                        .subscribeOn(AppSchedulers.network())
+                        .compose(mRequestScheduler.lowPriority(RequestPriority.BACKGROUND))
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .map(wrapper -> {
+                            Posts posts = wrapper.getPosts();
+                            if (posts != null && posts.getPostList() != null) {
+                                put(threadId, posts.getPostList());
+                            }
+                            return (Void) null;
+                        }));
+    }
+
+    private static int parseFloor(Post post) {
+        String count = post.getCount();
+        if (TextUtils.isEmpty(count) || !TextUtils.isDigitsOnly(count) || count.length() > 9) {
+            return 0;
+        }
+        return Integer.parseInt(count);
+    }
+
+    private static String toSnippet(@Nullable String reply) {
+        if (reply == null) {
+            return "";
+        }
+        // remove images (object replacement characters) and line breaks
+        String text = Html.fromHtml(reply).toString()
+                .replace('\uFFFC', ' ')
+                .replaceAll("\\s+", " ")
+                .trim();
+        return text.length() > SNIPPET_LENGTH ? text.substring(0, SNIPPET_LENGTH) + "…" : text;
+    }
+
+    public static final class Summary {
+
+        public final int floor;
+        public final String authorName;
+        public final long datetime;
+        public final String snippet;
+
+        private Summary(int floor, String authorName, long datetime, String snippet) {
+            this.floor = floor;
+            this.authorName = authorName;
+            this.datetime = datetime;
+            this.snippet = snippet;
+        }
+    }
+}
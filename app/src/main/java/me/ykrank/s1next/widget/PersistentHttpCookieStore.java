@@ -19,9 +19,19 @@ package me.ykrank.s1next.widget;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Parcel;
-import android.os.Parcelable;
+import android.support.annotation.Nullable;
+import android.support.v4.util.AtomicFile;
+import android.text.TextUtils;
 import android.util.Base64;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.net.CookieStore;
 import java.net.HttpCookie;
 import java.net.URI;
@@ -29,234 +39,438 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.util.L;
+import rx.Observable;
 
 /**
- * A shared preference cookie store.
+ * A cookie store indexed by host (the domain of domain cookies,
+ * or the request host of host-only cookies).
+ * <p>
+ * Reads are lock-free: all cookies are held in an immutable snapshot which is
+ * replaced (copy-on-write) by writers, so {@link #get(URI)} only looks up the
+ * request host and its parent domains. Each cookie remembers when it expires,
+ * so a persisted cookie doesn't live longer than its max age after reloading.
+ * <p>
+ * Writes only mark the store dirty, all changes in {@link #FLUSH_DELAY_MILLIS}
+ * (like all the cookies of one login response) are persisted to a binary file at once.
  * <p>
- * Forked from https://android.googlesource.com/platform/libcore/+/master/luni/src/main/java/java/net/CookieStoreImpl.java
- * blob: 36f74a9e1b5b41831f3ee0c4d59fdabd954edd96
+ * Originally forked from https://android.googlesource.com/platform/libcore/+/master/luni/src/main/java/java/net/CookieStoreImpl.java
  */
 public final class PersistentHttpCookieStore implements CookieStore {
 
-    private static final String PREFS_COOKIE = "CookiePrefsFile";
-    private static final String COOKIES_URI = "url";
+    private static final String FILE_NAME = "cookies";
+    private static final int MAGIC = 0x53314343;
+    private static final int VERSION = 1;
 
     /**
-     * This map may have null keys!
+     * The former store in shared preference, migrated to the binary file.
      */
-    private final Map<URI, List<HttpCookie>> map;
+    private static final String PREFS_COOKIE = "CookiePrefsFile";
+    private static final String COOKIES_URI = "url";
 
-    private final SharedPreferences cookieSP;
+    private static final long FLUSH_DELAY_MILLIS = 500;
 
-    public PersistentHttpCookieStore(Context context) {
-        map = new HashMap<>();
-        cookieSP = context.getSharedPreferences(PREFS_COOKIE, Context.MODE_PRIVATE);
+    private final Context mContext;
+    private final AtomicFile mFile;
 
-        // get each cookie's URI string
-        Set<String> cookiesURL = cookieSP.getStringSet(COOKIES_URI, Collections.<String>emptySet());
-        for (String uri : cookiesURL) {
-            // get corresponding cookies' key of the shared preference
-            Set<String> cookiesName = cookieSP.getStringSet(uri, Collections.<String>emptySet());
+    /**
+     * Host -> cookies. Both the map and lists are never modified once published.
+     */
+    private volatile Map<String, List<Entry>> mCookies = Collections.emptyMap();
+    /**
+     * When the earliest cookie expires, we purge the expired cookies after that.
+     */
+    private volatile long mNextExpiresAt = Long.MAX_VALUE;
+    /**
+     * Whether we have loaded cookies from disk,
+     * we don't do this in constructor as it's created during app startup.
+     */
+    private volatile boolean mLoaded;
 
-            // get corresponding cookies
-            List<HttpCookie> httpCookies = new ArrayList<>();
-            for (String name : cookiesName) {
-                HttpCookie httpCookie = decodeCookie(cookieSP.getString(name, null));
-                if (httpCookie != null) {
-                    httpCookies.add(httpCookie);
-                }
-            }
+    private final Object mWriteLock = new Object();
+    private final AtomicBoolean mFlushScheduled = new AtomicBoolean();
 
-            map.put(URI.create(uri), httpCookies);
-        }
+    public PersistentHttpCookieStore(Context context) {
+        mContext = context;
+        mFile = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
     }
 
     @Override
-    public synchronized void add(URI uri, HttpCookie httpCookie) {
+    public void add(URI uri, HttpCookie httpCookie) {
         if (httpCookie == null) {
             throw new NullPointerException("cookie == null");
         }
+        ensureLoaded();
 
-        boolean isUriNew = false;
-        uri = cookiesUri(uri);
-        List<HttpCookie> cookies = map.get(uri);
-        if (cookies == null) {
-            cookies = new ArrayList<>();
-            map.put(uri, cookies);
+        Entry entry = Entry.create(uri, httpCookie, System.currentTimeMillis());
+        if (entry == null) {
+            // probably a URI with no host
+            return;
+        }
+        synchronized (mWriteLock) {
+            Map<String, List<Entry>> cookies = new HashMap<>(mCookies);
+            List<Entry> entries = cookies.get(entry.host);
+            List<Entry> newEntries = entries == null ? new ArrayList<>() : new ArrayList<>(entries);
+            removeSameCookie(newEntries, httpCookie);
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                newEntries.add(entry);
+            }
+            putOrRemove(cookies, entry.host, newEntries);
+            publish(cookies);
+        }
+    }
 
-            isUriNew = true;
-        } else {
-            cookies.remove(httpCookie);
+    @Override
+    public List<HttpCookie> get(URI uri) {
+        if (uri == null) {
+            throw new NullPointerException("uri == null");
         }
-        cookies.add(httpCookie);
+        ensureLoaded();
+        purgeExpiredIfNeeded();
 
-        String uriString = uri.toString();
-        SharedPreferences.Editor editor = cookieSP.edit();
+        String host = uri.getHost();
+        if (host == null) {
+            return Collections.emptyList();
+        }
+        host = host.toLowerCase(Locale.US);
 
-        if (isUriNew) {
-            // add new cookie's URL string
-            // see http://stackoverflow.com/q/14034803
-            Set<String> cookiesURL = new HashSet<>(cookieSP.getStringSet(COOKIES_URI,
-                    Collections.<String>emptySet()));
-            cookiesURL.add(uriString);
+        Map<String, List<Entry>> cookies = mCookies;
+        long now = System.currentTimeMillis();
+        List<HttpCookie> result = new ArrayList<>();
+        // look up this host and then its parent domains
+        String domain = host;
+        while (true) {
+            List<Entry> entries = cookies.get(domain);
+            if (entries != null) {
+                for (Entry entry : entries) {
+                    if (entry.expiresAt > now && (!entry.hostOnly || domain.equals(host))) {
+                        result.add(entry.cookie);
+                    }
+                }
+            }
+            int dot = domain.indexOf('.');
+            if (dot < 0) {
+                break;
+            }
+            domain = domain.substring(dot + 1);
+        }
+        return Collections.unmodifiableList(result);
+    }
 
-            editor.putStringSet(COOKIES_URI, cookiesURL);
+    @Override
+    public List<HttpCookie> getCookies() {
+        ensureLoaded();
+        long now = System.currentTimeMillis();
+        List<HttpCookie> result = new ArrayList<>();
+        for (List<Entry> entries : mCookies.values()) {
+            for (Entry entry : entries) {
+                if (entry.expiresAt > now) {
+                    result.add(entry.cookie);
+                }
+            }
         }
+        return Collections.unmodifiableList(result);
+    }
 
-        // add corresponding cookies
-        Set<String> cookiesName = new HashSet<>(cookieSP.getStringSet(uriString,
-                Collections.<String>emptySet()));
-        String cookieNameWithUri = uriString + httpCookie.getName();
-        cookiesName.add(cookieNameWithUri);
+    @Override
+    public List<URI> getURIs() {
+        ensureLoaded();
+        List<URI> result = new ArrayList<>();
+        for (String host : mCookies.keySet()) {
+            try {
+                result.add(new URI("http", host, null, null));
+            } catch (URISyntaxException ignored) {
 
-        editor.putStringSet(uriString, cookiesName);
-        editor.putString(cookieNameWithUri, encodeCookie(httpCookie));
-        editor.apply();
+            }
+        }
+        return Collections.unmodifiableList(result);
     }
 
-    private URI cookiesUri(URI uri) {
-        if (uri == null) {
-            return null;
+    @Override
+    public boolean remove(URI uri, HttpCookie httpCookie) {
+        if (httpCookie == null) {
+            throw new NullPointerException("cookie == null");
         }
+        ensureLoaded();
 
-        try {
-            return new URI("http", uri.getHost(), null, null);
-        } catch (URISyntaxException e) {
-            return uri; // probably a URI with no host
+        Entry entry = Entry.create(uri, httpCookie, 0);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (mWriteLock) {
+            List<Entry> entries = mCookies.get(entry.host);
+            if (entries == null) {
+                return false;
+            }
+            List<Entry> newEntries = new ArrayList<>(entries);
+            if (!removeSameCookie(newEntries, httpCookie)) {
+                return false;
+            }
+            Map<String, List<Entry>> cookies = new HashMap<>(mCookies);
+            putOrRemove(cookies, entry.host, newEntries);
+            publish(cookies);
+            return true;
         }
     }
 
     @Override
-    public synchronized List<HttpCookie> get(URI uri) {
-        if (uri == null) {
-            throw new NullPointerException("uri == null");
+    public boolean removeAll() {
+        ensureLoaded();
+        synchronized (mWriteLock) {
+            boolean result = !mCookies.isEmpty();
+            publish(new HashMap<>());
+            return result;
         }
+    }
 
-        List<HttpCookie> result = new ArrayList<>();
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+        synchronized (mWriteLock) {
+            if (mLoaded) {
+                return;
+            }
+            Map<String, List<Entry>> cookies = new HashMap<>();
+            boolean migrated = false;
+            try {
+                readFrom(cookies);
+            } catch (FileNotFoundException e) {
+                migrated = migrateFromSharedPreferences(cookies);
+            } catch (IOException e) {
+                L.e("Failed to read cookies", e);
+                cookies.clear();
+            }
+            mCookies = freeze(cookies);
+            mNextExpiresAt = computeNextExpiresAt(mCookies);
+            mLoaded = true;
+            if (migrated) {
+                scheduleFlush();
+            }
+        }
+    }
 
-        // get cookies associated with given URI. If none, returns an empty list
-        List<HttpCookie> cookiesForUri = map.get(uri);
-        if (cookiesForUri != null) {
-            for (Iterator<HttpCookie> i = cookiesForUri.iterator(); i.hasNext(); ) {
-                HttpCookie cookie = i.next();
-                if (cookie.hasExpired()) {
-                    i.remove(); // remove expired cookies
-                } else {
-                    result.add(cookie);
+    /**
+     * Must be called with {@link #mWriteLock} held.
+     */
+    private void publish(Map<String, List<Entry>> cookies) {
+        mCookies = freeze(cookies);
+        mNextExpiresAt = computeNextExpiresAt(mCookies);
+        scheduleFlush();
+    }
+
+    private void purgeExpiredIfNeeded() {
+        if (System.currentTimeMillis() < mNextExpiresAt) {
+            return;
+        }
+        synchronized (mWriteLock) {
+            long now = System.currentTimeMillis();
+            if (now < mNextExpiresAt) {
+                return;
+            }
+            Map<String, List<Entry>> cookies = new HashMap<>();
+            for (Map.Entry<String, List<Entry>> e : mCookies.entrySet()) {
+                List<Entry> entries = new ArrayList<>();
+                for (Entry entry : e.getValue()) {
+                    if (entry.expiresAt > now) {
+                        entries.add(entry);
+                    }
                 }
+                putOrRemove(cookies, e.getKey(), entries);
             }
+            publish(cookies);
         }
+    }
 
-        // get all cookies that domain matches the URI
-        for (Map.Entry<URI, List<HttpCookie>> entry : map.entrySet()) {
-            if (uri.equals(entry.getKey())) {
-                continue; // skip the given URI; we've already handled it
+    private void scheduleFlush() {
+        if (mFlushScheduled.compareAndSet(false, true)) {
+            // written in the database thread as our other files
+            Observable.timer(FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS, AppSchedulers.database())
+                    .subscribe(t -> flush(), L::e);
+        }
+    }
+
+    private void flush() {
+        mFlushScheduled.set(false);
+        Map<String, List<Entry>> cookies = mCookies;
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            writeTo(out, cookies);
+            out.flush();
+            mFile.finishWrite(fileOutputStream);
+        } catch (IOException e) {
+            L.e("Failed to write cookies", e);
+            if (fileOutputStream != null) {
+                mFile.failWrite(fileOutputStream);
             }
-            List<HttpCookie> entryCookies = entry.getValue();
-            for (Iterator<HttpCookie> i = entryCookies.iterator(); i.hasNext(); ) {
-                HttpCookie cookie = i.next();
-                if (!HttpCookie.domainMatches(cookie.getDomain(), uri.getHost())) {
-                    continue;
-                }
-                if (cookie.hasExpired()) {
-                    i.remove(); // remove expired cookies
-                } else if (!result.contains(cookie)) {
-                    result.add(cookie);
+        }
+    }
+
+    private static void writeTo(DataOutputStream out, Map<String, List<Entry>> cookies)
+            throws IOException {
+        long now = System.currentTimeMillis();
+        List<Entry> all = new ArrayList<>();
+        for (List<Entry> entries : cookies.values()) {
+            for (Entry entry : entries) {
+                if (entry.expiresAt > now) {
+                    all.add(entry);
                 }
             }
         }
-        return Collections.unmodifiableList(result);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(all.size());
+        for (Entry entry : all) {
+            HttpCookie cookie = entry.cookie;
+            out.writeUTF(entry.host);
+            out.writeBoolean(entry.hostOnly);
+            out.writeLong(entry.expiresAt);
+            out.writeUTF(cookie.getName());
+            writeNullableUTF(out, cookie.getValue());
+            writeNullableUTF(out, cookie.getDomain());
+            writeNullableUTF(out, cookie.getPath());
+            writeNullableUTF(out, cookie.getPortlist());
+            out.writeBoolean(cookie.getSecure());
+            out.writeInt(cookie.getVersion());
+        }
     }
 
-    @Override
-    public synchronized List<HttpCookie> getCookies() {
-        List<HttpCookie> result = new ArrayList<>();
-        for (List<HttpCookie> list : map.values()) {
-            for (Iterator<HttpCookie> i = list.iterator(); i.hasNext(); ) {
-                HttpCookie cookie = i.next();
-                if (cookie.hasExpired()) {
-                    i.remove(); // remove expired cookies
-                } else if (!result.contains(cookie)) {
-                    result.add(cookie);
+    private void readFrom(Map<String, List<Entry>> cookies) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(mFile.openRead()));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown cookies file format");
+            }
+            long now = System.currentTimeMillis();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String host = in.readUTF();
+                boolean hostOnly = in.readBoolean();
+                long expiresAt = in.readLong();
+                HttpCookie cookie = new HttpCookie(in.readUTF(), readNullableUTF(in));
+                cookie.setDomain(readNullableUTF(in));
+                cookie.setPath(readNullableUTF(in));
+                cookie.setPortlist(readNullableUTF(in));
+                cookie.setSecure(in.readBoolean());
+                cookie.setVersion(in.readInt());
+                if (expiresAt > now) {
+                    if (expiresAt != Long.MAX_VALUE) {
+                        // so HttpCookie#hasExpired() is right for the callers
+                        cookie.setMaxAge((expiresAt - now) / 1000);
+                    }
+                    addEntry(cookies, new Entry(host, hostOnly, expiresAt, cookie));
                 }
             }
+        } finally {
+            in.close();
         }
-        return Collections.unmodifiableList(result);
     }
 
-    @Override
-    public synchronized List<URI> getURIs() {
-        List<URI> result = new ArrayList<>(map.keySet());
-        result.remove(null); // sigh
-        return Collections.unmodifiableList(result);
+    /**
+     * Reads the cookies from the former shared preference store and removes it.
+     *
+     * @return Whether there was any cookie.
+     */
+    private boolean migrateFromSharedPreferences(Map<String, List<Entry>> cookies) {
+        SharedPreferences cookieSP = mContext.getSharedPreferences(PREFS_COOKIE, Context.MODE_PRIVATE);
+        Set<String> cookiesURL = cookieSP.getStringSet(COOKIES_URI, Collections.<String>emptySet());
+        if (cookiesURL.isEmpty()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        for (String uri : cookiesURL) {
+            Set<String> cookiesName = cookieSP.getStringSet(uri, Collections.<String>emptySet());
+            for (String name : cookiesName) {
+                HttpCookie httpCookie = decodeLegacyCookie(cookieSP.getString(name, null));
+                if (httpCookie != null) {
+                    Entry entry = Entry.create(URI.create(uri), httpCookie, now);
+                    if (entry != null && entry.expiresAt > now) {
+                        addEntry(cookies, entry);
+                    }
+                }
+            }
+        }
+        cookieSP.edit().clear().apply();
+        return true;
     }
 
-    @Override
-    public synchronized boolean remove(URI uri, HttpCookie httpCookie) {
-        if (httpCookie == null) {
-            throw new NullPointerException("cookie == null");
+    private static void addEntry(Map<String, List<Entry>> cookies, Entry entry) {
+        List<Entry> entries = cookies.get(entry.host);
+        if (entries == null) {
+            entries = new ArrayList<>();
+            cookies.put(entry.host, entries);
         }
+        removeSameCookie(entries, entry.cookie);
+        entries.add(entry);
+    }
 
-        uri = cookiesUri(uri);
-        List<HttpCookie> cookies = map.get(uri);
-        if (cookies != null) {
-            SharedPreferences.Editor editor = cookieSP.edit();
-            String uriString = uri.toString();
-            Set<String> cookiesName = new HashSet<>(cookieSP.getStringSet(uriString,
-                    Collections.<String>emptySet()));
-            String cookieNameWithURI = uriString + httpCookie.getName();
-
-            // remove cookie's URI string
-            cookiesName.remove(cookieNameWithURI);
-            editor.putStringSet(uriString, cookiesName);
-            // remove corresponding cookies
-            editor.remove(cookieNameWithURI);
-            editor.apply();
+    /**
+     * {@link HttpCookie#equals(Object)} compares name, domain and path.
+     */
+    private static boolean removeSameCookie(List<Entry> entries, HttpCookie httpCookie) {
+        for (int i = 0, size = entries.size(); i < size; i++) {
+            if (entries.get(i).cookie.equals(httpCookie)) {
+                entries.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
 
-            return cookies.remove(httpCookie);
+    private static void putOrRemove(Map<String, List<Entry>> cookies, String host, List<Entry> entries) {
+        if (entries.isEmpty()) {
+            cookies.remove(host);
         } else {
-            return false;
+            cookies.put(host, entries);
         }
     }
 
-    @Override
-    public synchronized boolean removeAll() {
-        // clear cookies from shared preference
-        SharedPreferences.Editor editor = cookieSP.edit();
-        editor.clear();
-        editor.apply();
-
-        // clear cookies from local store
-        boolean result = !map.isEmpty();
-        map.clear();
-        return result;
+    private static Map<String, List<Entry>> freeze(Map<String, List<Entry>> cookies) {
+        Map<String, List<Entry>> result = new HashMap<>(cookies.size());
+        for (Map.Entry<String, List<Entry>> e : cookies.entrySet()) {
+            result.put(e.getKey(), Collections.unmodifiableList(new ArrayList<>(e.getValue())));
+        }
+        return Collections.unmodifiableMap(result);
     }
 
-    /**
-     * Parcels HttpCookie object into a String.
-     */
-    private String encodeCookie(HttpCookie httpCookie) {
-        if (httpCookie == null) {
-            return null;
+    private static long computeNextExpiresAt(Map<String, List<Entry>> cookies) {
+        long next = Long.MAX_VALUE;
+        for (List<Entry> entries : cookies.values()) {
+            for (Entry entry : entries) {
+                next = Math.min(next, entry.expiresAt);
+            }
         }
+        return next;
+    }
 
-        Parcel parcel = Parcel.obtain();
-        new HttpCookieParcelable(httpCookie).writeToParcel(parcel, 0);
-        byte[] bytes = parcel.marshall();
-        parcel.recycle();
+    private static void writeNullableUTF(DataOutputStream out, @Nullable String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
 
-        return Base64.encodeToString(bytes, Base64.DEFAULT);
+    @Nullable
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
     }
 
     /**
-     * Returns HttpCookie from cookie string.
+     * Returns HttpCookie from the cookie string of the former shared preference store.
      */
-    private HttpCookie decodeCookie(String s) {
+    @Nullable
+    private static HttpCookie decodeLegacyCookie(@Nullable String s) {
         if (s == null) {
             return null;
         }
@@ -264,66 +478,85 @@ public final class PersistentHttpCookieStore implements CookieStore {
         byte[] bytes = Base64.decode(s, Base64.DEFAULT);
 
         Parcel parcel = Parcel.obtain();
-        parcel.unmarshall(bytes, 0, bytes.length);
-        parcel.setDataPosition(0);
-
-        return HttpCookieParcelable.CREATOR.createFromParcel(parcel).httpCookie;
+        try {
+            parcel.unmarshall(bytes, 0, bytes.length);
+            parcel.setDataPosition(0);
+            return readLegacyCookie(parcel);
+        } catch (RuntimeException e) {
+            L.e("Failed to decode cookie", e);
+            return null;
+        } finally {
+            parcel.recycle();
+        }
     }
 
-    private static final class HttpCookieParcelable implements Parcelable {
+    /**
+     * Reads a cookie in the format of the former shared preference store.
+     */
+    private static HttpCookie readLegacyCookie(Parcel source) {
+        String name = source.readString();
+        String value = source.readString();
+        HttpCookie httpCookie = new HttpCookie(name, value);
+        httpCookie.setComment(source.readString());
+        httpCookie.setCommentURL(source.readString());
+        httpCookie.setDiscard(source.readByte() != 0);
+        httpCookie.setDomain(source.readString());
+        httpCookie.setMaxAge(source.readLong());
+        httpCookie.setPath(source.readString());
+        httpCookie.setPortlist(source.readString());
+        httpCookie.setSecure(source.readByte() != 0);
+        httpCookie.setVersion(source.readInt());
+        return httpCookie;
+    }
 
-        private static final Creator<HttpCookieParcelable> CREATOR = new Creator<HttpCookieParcelable>() {
+    private static final class Entry {
+
+        /**
+         * Lower case domain (without leading dot) or request host.
+         */
+        private final String host;
+        /**
+         * {@code true} if this cookie has no domain attribute,
+         * so it's only sent to the same host.
+         */
+        private final boolean hostOnly;
+        /**
+         * {@link Long#MAX_VALUE} for session cookies.
+         */
+        private final long expiresAt;
+        private final HttpCookie cookie;
+
+        private Entry(String host, boolean hostOnly, long expiresAt, HttpCookie cookie) {
+            this.host = host;
+            this.hostOnly = hostOnly;
+            this.expiresAt = expiresAt;
+            this.cookie = cookie;
+        }
 
-            @Override
-            public HttpCookieParcelable createFromParcel(Parcel source) {
-                return new HttpCookieParcelable(source);
+        @Nullable
+        private static Entry create(@Nullable URI uri, HttpCookie cookie, long now) {
+            String domain = cookie.getDomain();
+            boolean hostOnly = TextUtils.isEmpty(domain);
+            String host;
+            if (hostOnly) {
+                host = uri == null ? null : uri.getHost();
+            } else {
+                host = domain.startsWith(".") ? domain.substring(1) : domain;
+            }
+            if (TextUtils.isEmpty(host)) {
+                return null;
             }
 
-            @Override
-            public HttpCookieParcelable[] newArray(int i) {
-                return new HttpCookieParcelable[i];
+            long maxAge = cookie.getMaxAge();
+            long expiresAt;
+            if (maxAge < 0) {
+                expiresAt = Long.MAX_VALUE;
+            } else if (maxAge > (Long.MAX_VALUE - now) / 1000) {
+                expiresAt = Long.MAX_VALUE - 1;
+            } else {
+                expiresAt = now + maxAge * 1000;
             }
-        };
-
-        private final HttpCookie httpCookie;
-
-        private HttpCookieParcelable(HttpCookie httpCookie) {
-            this.httpCookie = httpCookie;
-        }
-
-        private HttpCookieParcelable(Parcel source) {
-            String name = source.readString();
-            String value = source.readString();
-            httpCookie = new HttpCookie(name, value);
-            httpCookie.setComment(source.readString());
-            httpCookie.setCommentURL(source.readString());
-            httpCookie.setDiscard(source.readByte() != 0);
-            httpCookie.setDomain(source.readString());
-            httpCookie.setMaxAge(source.readLong());
-            httpCookie.setPath(source.readString());
-            httpCookie.setPortlist(source.readString());
-            httpCookie.setSecure(source.readByte() != 0);
-            httpCookie.setVersion(source.readInt());
-        }
-
-        @Override
-        public int describeContents() {
-            return 0;
-        }
-
-        @Override
-        public void writeToParcel(Parcel dest, int flags) {
-            dest.writeString(httpCookie.getName());
-            dest.writeString(httpCookie.getValue());
-            dest.writeString(httpCookie.getComment());
-            dest.writeString(httpCookie.getCommentURL());
-            dest.writeByte((byte) (httpCookie.getDiscard() ? 1 : 0));
-            dest.writeString(httpCookie.getDomain());
-            dest.writeLong(httpCookie.getMaxAge());
-            dest.writeString(httpCookie.getPath());
-            dest.writeString(httpCookie.getPortlist());
-            dest.writeByte((byte) (httpCookie.getSecure() ? 1 : 0));
-            dest.writeInt(httpCookie.getVersion());
+            return new Entry(host.toLowerCase(Locale.US), hostOnly, expiresAt, cookie);
         }
     }
 }
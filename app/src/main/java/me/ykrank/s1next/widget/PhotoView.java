@@ -245,6 +245,10 @@ public class PhotoView extends View implements OnGestureListener,
      * Rectangle to handle translations
      */
     private RectF mTranslateRect = new RectF();
+    /**
+     * Rectangle to check whether the image could scroll horizontally
+     */
+    private RectF mScrollRect = new RectF();
     /**
      * Array to store a copy of the matrix values
      */
@@ -449,10 +453,35 @@ public class PhotoView extends View implements OnGestureListener,
         if (mTransformsEnabled && !mScaleRunnable.mRunning) {
             mScaleRunnable.stop();
             mIsDoubleTouch = true;
+            // do not let the parent (a ViewPager for example) steal the pinch
+            if (getParent() != null) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+            }
         }
         return true;
     }
 
+    /**
+     * Lets the parent (a ViewPager for example) know whether this view could
+     * consume a horizontal drag, that is, whether the zoomed image has not
+     * reached its edge in this direction.
+     */
+    @Override
+    public boolean canScrollHorizontally(int direction) {
+        if (!mTransformsEnabled || mDrawable == null) {
+            return false;
+        }
+        mScrollRect.set(mDrawable.getBounds());
+        if (mDrawMatrix != null) {
+            mDrawMatrix.mapRect(mScrollRect);
+        }
+        if (direction < 0) {
+            return mScrollRect.left < -1;
+        } else {
+            return mScrollRect.right > getWidth() + 1;
+        }
+    }
+
     @Override
     public void onScaleEnd(ScaleGestureDetector detector) {
         if (mTransformsEnabled && mIsDoubleTouch) {
@@ -471,8 +500,11 @@ public class PhotoView extends View implements OnGestureListener,
      * The view is on its way to be collected and will not be reused.
      */
     public void clear() {
+        // late image loads check this tag, they should not bind to a cleared view
+        setTag(R.id.tag_photo_url, null);
         mGestureDetector = null;
         mScaleGetureDetector = null;
+        recycleTiledDrawable();
         mDrawable = null;
         mScaleRunnable.stop();
         mScaleRunnable = null;
@@ -493,6 +525,7 @@ public class PhotoView extends View implements OnGestureListener,
             // Clear previous state.
             if (mDrawable != null) {
                 mDrawable.setCallback(null);
+                recycleTiledDrawable();
             }
             mDrawable = drawable;
             // Reset mMinScale to ensure the bounds / matrix are recalculated
@@ -505,6 +538,15 @@ public class PhotoView extends View implements OnGestureListener,
         invalidate();
     }
 
+    /**
+     * Recycles the tiles and the decoder if current drawable is a {@link TiledBitmapDrawable}.
+     */
+    private void recycleTiledDrawable() {
+        if (mDrawable instanceof TiledBitmapDrawable) {
+            ((TiledBitmapDrawable) mDrawable).recycle();
+        }
+    }
+
     /**
      * Binds a bitmap to the view.
      *
@@ -669,6 +711,9 @@ public class PhotoView extends View implements OnGestureListener,
             if (mDrawMatrix != null) {
                 canvas.concat(mDrawMatrix);
             }
+            if (mDrawable instanceof TiledBitmapDrawable) {
+                ((TiledBitmapDrawable) mDrawable).setViewport(mDrawMatrix, getWidth(), getHeight());
+            }
             mDrawable.draw(canvas);
             canvas.restoreToCount(saveCount);
             if (mVideoBlob != null) {
@@ -0,0 +1,162 @@
+package me.ykrank.s1next.widget;
+
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import me.ykrank.s1next.data.User;
+import me.ykrank.s1next.data.api.ApiException;
+import me.ykrank.s1next.data.api.S1Service;
+import me.ykrank.s1next.data.api.UserValidator;
+import me.ykrank.s1next.data.api.model.Account;
+import me.ykrank.s1next.data.api.model.Quote;
+import me.ykrank.s1next.data.api.model.ThreadType;
+import me.ykrank.s1next.data.api.model.wrapper.ResultWrapper;
+import me.ykrank.s1next.util.AppSchedulers;
+import rx.Observable;
+import rx.functions.Actions;
+import rx.functions.Func0;
+
+/**
+ * Loads what posting needs (the authenticity token, the quoted post and the thread types)
+ * in parallel as soon as user starts to write, so sending is only one request.
+ * <p>
+ * Each result is shared by whoever asks for it (even while loading) for
+ * {@link #MAX_AGE_MILLIS}, failed ones are dropped at once so they are loaded
+ * again next time. The authenticity token is kept by {@link User} once loaded,
+ * so it is only shared while loading.
+ */
+public final class PostFormPrefetcher {
+
+    /**
+     * The quoted post may be edited, so we don't keep it for long.
+     */
+    private static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final String KEY_AUTHENTICITY_TOKEN = "authenticity_token";
+
+    private final S1Service mS1Service;
+    private final UserValidator mUserValidator;
+    private final User mUser;
+
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+    public PostFormPrefetcher(S1Service s1Service, UserValidator userValidator, User user) {
+        this.mS1Service = s1Service;
+        this.mUserValidator = userValidator;
+        this.mUser = user;
+    }
+
+    /**
+     * Starts to load what replying to this thread (and quoting this post) needs.
+     */
+    public void prefetchReply(String threadId, @Nullable String quotePostId) {
+        prefetchAuthenticityToken();
+        if (!TextUtils.isEmpty(quotePostId)) {
+            prefetch(getQuote(threadId, quotePostId));
+        }
+    }
+
+    /**
+     * Starts to load what posting a new thread in this forum needs.
+     */
+    public void prefetchNewThread(int forumId) {
+        prefetchAuthenticityToken();
+        prefetch(getThreadTypes(forumId));
+    }
+
+    private void prefetchAuthenticityToken() {
+        if (TextUtils.isEmpty(mUser.getAuthenticityToken())) {
+            prefetch(refreshAuthenticityToken());
+        }
+    }
+
+    private static void prefetch(Observable<?> observable) {
+        observable.subscribe(Actions.empty(), Actions.empty());
+    }
+
+    /**
+     * Same as {@link S1Service#refreshAuthenticityToken()}, {@link User} has the
+     * token after this if we could get it.
+     */
+    public Observable<ResultWrapper> refreshAuthenticityToken() {
+        return get(KEY_AUTHENTICITY_TOKEN, false, () -> mS1Service.refreshAuthenticityToken()
+                .doOnNext(resultWrapper -> {
+                    Account account = resultWrapper.getAccount();
+                    if (!TextUtils.isEmpty(account.getAuthenticityToken())) {
+                        mUserValidator.validate(account);
+                    }
+                }));
+    }
+
+    public Observable<Quote> getQuote(String threadId, String quotePostId) {
+        return get("quote_" + threadId + "_" + quotePostId, true, () ->
+                mS1Service.getQuoteInfo(threadId, quotePostId).map(Quote::fromXmlString));
+    }
+
+    /**
+     * Emits an error if this forum has no thread types, as we could not post
+     * a new thread without a type.
+     */
+    public Observable<List<ThreadType>> getThreadTypes(int forumId) {
+        return get("thread_types_" + forumId, true, () -> mS1Service.getNewThreadInfo(forumId)
+                .map(ThreadType::fromXmlString)
+                .flatMap(types -> types == null || types.isEmpty()
+                        ? Observable.<List<ThreadType>>error(
+                                new ApiException("No thread types of forum " + forumId))
+                        : Observable.just(types)));
+    }
+
+    /**
+     * @param keepResult Whether to keep the result after loading, failed results are never kept.
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized <T> Observable<T> get(String key, boolean keepResult,
+                                               Func0<Observable<T>> loader) {
+        evictExpired();
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            Entry newEntry = new Entry();
+            Observable<T> observable = loader.call()
+                    .subscribeOn(AppSchedulers.network());
+            if (keepResult) {
+                observable = observable.doOnError(throwable -> remove(key, newEntry));
+            } else {
+                observable = observable.doOnTerminate(() -> remove(key, newEntry));
+            }
+            // cache() shares the result (and the request while loading)
+            newEntry.observable = observable.cache();
+            mEntries.put(key, newEntry);
+            entry = newEntry;
+        }
+        return (Observable<T>) entry.observable;
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (mEntries.get(key) == entry) {
+            mEntries.remove(key);
+        }
+    }
+
+    private void evictExpired() {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().startTime > MAX_AGE_MILLIS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private Observable<?> observable;
+        private final long startTime = SystemClock.elapsedRealtime();
+    }
+}
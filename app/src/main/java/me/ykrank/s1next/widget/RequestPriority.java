@@ -0,0 +1,68 @@
+package me.ykrank.s1next.widget;
+
+import android.support.annotation.Nullable;
+
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.LazyHeaders;
+
+import okhttp3.Request;
+
+/**
+ * Priority classes of our network requests.
+ * <p>
+ * The priority is carried in the {@link #HEADER_NAME} header of a request
+ * and removed by {@link RequestScheduler} before the request goes to network.
+ * Requests without this header use the default priority of their lane
+ * ({@link #VISIBLE_PAGE} for API, {@link #VISIBLE_IMAGE} for images).
+ */
+public enum RequestPriority {
+    /**
+     * Data of the page the user is looking at.
+     */
+    VISIBLE_PAGE,
+    /**
+     * Images and avatars the user is looking at.
+     */
+    VISIBLE_IMAGE,
+    /**
+     * Data or images the user may look at soon, cancelled when the user navigates away.
+     */
+    PREFETCH,
+    /**
+     * Work the user is not waiting for, like avatar revalidation and sync.
+     */
+    BACKGROUND;
+
+    public static final String HEADER_NAME = "X-S1Next-Priority";
+
+    private static final RequestPriority[] VALUES = RequestPriority.values();
+
+    /**
+     * Wraps this image URL with this priority for Glide.
+     * <p>
+     * The cache key of the returned {@link GlideUrl} is still the URL,
+     * so it shares Glide's caches with the same URL loaded as {@link String}.
+     */
+    public GlideUrl toGlideUrl(String url) {
+        return new GlideUrl(url, new LazyHeaders.Builder()
+                .addHeader(HEADER_NAME, name())
+                .build());
+    }
+
+    static RequestPriority of(Request request, RequestPriority defaultPriority) {
+        RequestPriority priority = parse(request.header(HEADER_NAME));
+        return priority == null ? defaultPriority : priority;
+    }
+
+    @Nullable
+    static RequestPriority parse(@Nullable String name) {
+        if (name != null) {
+            for (RequestPriority priority : VALUES) {
+                if (priority.name().equals(name)) {
+                    return priority;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,447 @@
+package me.ykrank.s1next.widget;
+
+import android.os.SystemClock;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.util.L;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import rx.Observable;
+import rx.Subscriber;
+import rx.subjects.BehaviorSubject;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Schedules our requests to bbs.saraba1st.com in two lanes with
+ * their own {@link Dispatcher} and {@link ConnectionPool}, one for
+ * API requests (via Retrofit) and one for images (via Glide),
+ * so page data never waits for avatars and attachments.
+ * <p>
+ * Retrofit and Glide execute their calls synchronously, which {@link Dispatcher} doesn't
+ * limit, so the real concurrency of the lanes comes from {@link me.ykrank.s1next.util.AppSchedulers#network()}
+ * and Glide's source executor (see {@link #MAX_IMAGE_REQUESTS}). The dispatchers only track
+ * running calls for cancellation, and limit the calls we enqueue ourselves.
+ * <p>
+ * {@link RequestPriority#PREFETCH} and {@link RequestPriority#BACKGROUND} requests started
+ * by {@link #lowPriority(RequestPriority)}, {@link #prefetch()} or {@link #enqueue(Call, RequestPriority, Callback)}
+ * wait (at most {@link #MAX_YIELD_MILLIS}) while any {@link RequestPriority#VISIBLE_PAGE}
+ * request is running, and at most {@link #MAX_LOW_PRIORITY_REQUESTS} of them run at the same time
+ * ({@link #MAX_LOW_PRIORITY_REQUESTS_POOR} while the network is poor).
+ * They wait in a queue before they are executed, so no thread is blocked while waiting.
+ * Prefetched images are only tracked for cancellation, they are already in their own lane.
+ * <p>
+ * Prefetch requests are cancelled when the user navigates away, see {@link #onNavigatedAway()}.
+ */
+public final class RequestScheduler {
+
+    /**
+     * Max number of concurrent images fetched by Glide.
+     *
+     * @see AppGlideModule#applyOptions(android.content.Context, com.bumptech.glide.GlideBuilder)
+     */
+    public static final int MAX_IMAGE_REQUESTS = 4;
+
+    private static final int MAX_IMAGE_REQUESTS_PER_HOST = MAX_IMAGE_REQUESTS;
+    private static final int MAX_LOW_PRIORITY_REQUESTS = 2;
+    private static final int MAX_LOW_PRIORITY_REQUESTS_POOR = 1;
+    private static final long MAX_YIELD_MILLIS = TimeUnit.SECONDS.toMillis(3);
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_DURATION_MINUTES = 5;
+
+    private final Dispatcher mApiDispatcher = new Dispatcher();
+    private final Dispatcher mImageDispatcher = new Dispatcher();
+
+    private final Object mLock = new Object();
+    private int mVisiblePageRequests;
+    private int mLowPriorityRequests;
+    private int mMaxLowPriorityRequests = MAX_LOW_PRIORITY_REQUESTS;
+    /**
+     * Low priority requests waiting for their turn, in order.
+     */
+    private final Deque<Waiter> mWaiters = new ArrayDeque<>();
+    /**
+     * When we will check the waiters which stop yielding, {@code 0} if not scheduled.
+     */
+    private long mScheduledDeadline;
+    /**
+     * Increased every time a page is shown, see {@link #onPageStarted()}.
+     */
+    private int mNavigation;
+    /**
+     * Prefetch requests of navigations before this are cancelled.
+     */
+    private int mCancelledNavigation;
+    /**
+     * Original request -> navigation when it started, for running prefetch requests.
+     * {@link Request} does not override {@link Object#equals(Object)}, so it's fine
+     * to find calls by their requests.
+     */
+    private final Map<Request, Integer> mPrefetchRequests = new IdentityHashMap<>();
+    /**
+     * Emits the number of running {@link RequestPriority#VISIBLE_PAGE} requests
+     * when it changes, only called with {@link #mLock} held.
+     */
+    private final BehaviorSubject<Integer> mVisiblePageRequestsSubject = BehaviorSubject.create(0);
+
+    private final PageLoadStats mPageLoadStats = new PageLoadStats();
+
+    /**
+     * The priority of requests without the {@link RequestPriority#HEADER_NAME} header
+     * made in this thread, see {@link #prefetch()}.
+     */
+    private static final ThreadLocal<RequestPriority> sThreadPriority = new ThreadLocal<>();
+
+    public RequestScheduler(NetworkQualityEstimator networkQualityEstimator) {
+        mImageDispatcher.setMaxRequests(MAX_IMAGE_REQUESTS);
+        mImageDispatcher.setMaxRequestsPerHost(MAX_IMAGE_REQUESTS_PER_HOST);
+        networkQualityEstimator.observeQuality().subscribe(this::onQualityChanged, L::e);
+    }
+
+    /**
+     * Makes this builder build a client for API requests.
+     */
+    public OkHttpClient.Builder apiLane(OkHttpClient.Builder builder) {
+        return builder.dispatcher(mApiDispatcher)
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MINUTES,
+                        TimeUnit.MINUTES))
+                .addInterceptor(new PriorityInterceptor(RequestPriority.VISIBLE_PAGE));
+    }
+
+    /**
+     * Makes this builder build a client for image requests.
+     */
+    public OkHttpClient.Builder imageLane(OkHttpClient.Builder builder) {
+        return builder.dispatcher(mImageDispatcher)
+                .connectionPool(new ConnectionPool(MAX_IMAGE_REQUESTS, KEEP_ALIVE_DURATION_MINUTES,
+                        TimeUnit.MINUTES))
+                .addInterceptor(new PriorityInterceptor(RequestPriority.VISIBLE_IMAGE));
+    }
+
+    /**
+     * Emits once (on an arbitrary thread) when there is no running
+     * {@link RequestPriority#VISIBLE_PAGE} request, maybe immediately.
+     */
+    public Observable<Void> idle() {
+        return mVisiblePageRequestsSubject.filter(count -> count == 0)
+                .first()
+                .map(count -> null);
+    }
+
+    public PageLoadStats getPageLoadStats() {
+        return mPageLoadStats;
+    }
+
+    /**
+     * Subscribes to the source when this low priority request could run.
+     * The source should subscribe on the thread it runs on.
+     */
+    public <T> Observable.Transformer<T, T> lowPriority(RequestPriority priority) {
+        return source -> acquire(priority).flatMap(permit ->
+                Observable.using(() -> permit, p -> source, Permit::release));
+    }
+
+    /**
+     * Subscribes to the source in {@link AppSchedulers#network()} as a
+     * {@link RequestPriority#PREFETCH} request when it could run, see {@link #lowPriority(RequestPriority)}.
+     * <p>
+     * The requests the source makes in the thread it is subscribed on (like Retrofit's)
+     * are prefetch requests as well, even if they have no {@link RequestPriority#HEADER_NAME} header.
+     */
+    public <T> Observable.Transformer<T, T> prefetch() {
+        return source -> Observable.<T>create(subscriber -> {
+            RequestPriority old = sThreadPriority.get();
+            sThreadPriority.set(RequestPriority.PREFETCH);
+            try {
+                source.unsafeSubscribe(subscriber);
+            } finally {
+                sThreadPriority.set(old);
+            }
+        }).subscribeOn(AppSchedulers.network())
+                .compose(lowPriority(RequestPriority.PREFETCH));
+    }
+
+    /**
+     * Enqueues this low priority call when it could run.
+     */
+    public void enqueue(Call call, RequestPriority priority, Callback callback) {
+        acquire(priority).subscribe(permit -> call.enqueue(new Callback() {
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                permit.release();
+                callback.onFailure(call, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try {
+                    callback.onResponse(call, response);
+                } finally {
+                    permit.release();
+                }
+            }
+        }), throwable -> callback.onFailure(call, throwable instanceof IOException
+                ? (IOException) throwable : new IOException(throwable)));
+    }
+
+    /**
+     * Requests started after this are for the new page.
+     * Called when an {@link android.app.Activity} is started.
+     */
+    public void onPageStarted() {
+        synchronized (mLock) {
+            mNavigation++;
+        }
+    }
+
+    /**
+     * Cancels all the prefetch requests started before the last
+     * {@link #onPageStarted()}, waiting or running.
+     * Called when an {@link android.app.Activity} is stopped (not paused, which
+     * also happens for dialogs and permission requests over the page).
+     */
+    public void onNavigatedAway() {
+        List<Request> staleRequests = new ArrayList<>();
+        synchronized (mLock) {
+            mCancelledNavigation = mNavigation;
+            for (Map.Entry<Request, Integer> entry : mPrefetchRequests.entrySet()) {
+                if (entry.getValue() < mNavigation) {
+                    staleRequests.add(entry.getKey());
+                }
+            }
+        }
+        // waiting requests would find they are stale
+        dispatch();
+        if (!staleRequests.isEmpty()) {
+            cancel(mApiDispatcher, staleRequests);
+            cancel(mImageDispatcher, staleRequests);
+        }
+    }
+
+    /**
+     * Leaves more of a poor network to the requests user is waiting for.
+     */
+    private void onQualityChanged(NetworkQualityEstimator.Quality quality) {
+        synchronized (mLock) {
+            mMaxLowPriorityRequests = quality == NetworkQualityEstimator.Quality.POOR
+                    ? MAX_LOW_PRIORITY_REQUESTS_POOR : MAX_LOW_PRIORITY_REQUESTS;
+        }
+        dispatch();
+    }
+
+    /**
+     * Emits a {@link Permit} when a low priority request could run, or
+     * an {@link IOException} if it is a prefetch and the user has navigated away.
+     */
+    private Observable<Permit> acquire(RequestPriority priority) {
+        return Observable.create(subscriber -> {
+            Waiter waiter;
+            synchronized (mLock) {
+                waiter = new Waiter(subscriber, priority, mNavigation,
+                        SystemClock.elapsedRealtime() + MAX_YIELD_MILLIS);
+                mWaiters.add(waiter);
+            }
+            subscriber.add(Subscriptions.create(() -> {
+                synchronized (mLock) {
+                    mWaiters.remove(waiter);
+                }
+            }));
+            dispatch();
+        });
+    }
+
+    /**
+     * Starts the waiting requests which could run now, and drops the stale prefetches.
+     */
+    private void dispatch() {
+        List<Waiter> started = new ArrayList<>();
+        List<Waiter> stale = new ArrayList<>();
+        long nextDeadline = 0;
+        long now = SystemClock.elapsedRealtime();
+        synchronized (mLock) {
+            Iterator<Waiter> iterator = mWaiters.iterator();
+            while (iterator.hasNext()) {
+                Waiter waiter = iterator.next();
+                if (waiter.priority == RequestPriority.PREFETCH
+                        && waiter.navigation < mCancelledNavigation) {
+                    iterator.remove();
+                    stale.add(waiter);
+                } else if (mLowPriorityRequests < mMaxLowPriorityRequests) {
+                    if (mVisiblePageRequests > 0 && now < waiter.deadline) {
+                        if (nextDeadline == 0 || waiter.deadline < nextDeadline) {
+                            nextDeadline = waiter.deadline;
+                        }
+                    } else {
+                        iterator.remove();
+                        mLowPriorityRequests++;
+                        started.add(waiter);
+                    }
+                }
+            }
+            if (nextDeadline != 0 && (mScheduledDeadline == 0 || nextDeadline < mScheduledDeadline)) {
+                mScheduledDeadline = nextDeadline;
+            } else {
+                nextDeadline = 0;
+            }
+        }
+
+        for (Waiter waiter : stale) {
+            waiter.subscriber.onError(new IOException("Canceled"));
+        }
+        for (Waiter waiter : started) {
+            Permit permit = new Permit();
+            if (waiter.subscriber.isUnsubscribed()) {
+                permit.release();
+            } else {
+                waiter.subscriber.onNext(permit);
+                waiter.subscriber.onCompleted();
+            }
+        }
+        if (nextDeadline != 0) {
+            Observable.timer(nextDeadline - now, TimeUnit.MILLISECONDS)
+                    .subscribe(t -> {
+                        synchronized (mLock) {
+                            mScheduledDeadline = 0;
+                        }
+                        dispatch();
+                    }, L::e);
+        }
+    }
+
+    private static void cancel(Dispatcher dispatcher, List<Request> requests) {
+        for (Call call : dispatcher.runningCalls()) {
+            if (containsIdentity(requests, call.request())) {
+                call.cancel();
+            }
+        }
+    }
+
+    private static boolean containsIdentity(List<Request> requests, Request request) {
+        for (Request r : requests) {
+            if (r == request) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Response proceedVisiblePage(Interceptor.Chain chain, Request request) throws IOException {
+        synchronized (mLock) {
+            mVisiblePageRequests++;
+            mVisiblePageRequestsSubject.onNext(mVisiblePageRequests);
+        }
+        try {
+            return chain.proceed(request);
+        } finally {
+            boolean idle;
+            synchronized (mLock) {
+                mVisiblePageRequests--;
+                mVisiblePageRequestsSubject.onNext(mVisiblePageRequests);
+                idle = mVisiblePageRequests == 0;
+            }
+            if (idle) {
+                dispatch();
+            }
+        }
+    }
+
+    private Response proceedPrefetch(Interceptor.Chain chain, Request original, Request request)
+            throws IOException {
+        synchronized (mLock) {
+            mPrefetchRequests.put(original, mNavigation);
+        }
+        try {
+            return chain.proceed(request);
+        } finally {
+            synchronized (mLock) {
+                mPrefetchRequests.remove(original);
+            }
+        }
+    }
+
+    /**
+     * A low priority request waiting for its turn.
+     */
+    private static final class Waiter {
+
+        private final Subscriber<? super Permit> subscriber;
+        private final RequestPriority priority;
+        private final int navigation;
+        /**
+         * When this stops yielding to visible page requests.
+         */
+        private final long deadline;
+
+        private Waiter(Subscriber<? super Permit> subscriber, RequestPriority priority,
+                       int navigation, long deadline) {
+            this.subscriber = subscriber;
+            this.priority = priority;
+            this.navigation = navigation;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Held by a running low priority request, released (only once) when it's done.
+     */
+    private final class Permit {
+
+        private final AtomicBoolean mReleased = new AtomicBoolean();
+
+        private void release() {
+            if (mReleased.compareAndSet(false, true)) {
+                synchronized (mLock) {
+                    mLowPriorityRequests--;
+                }
+                dispatch();
+            }
+        }
+    }
+
+    private final class PriorityInterceptor implements Interceptor {
+
+        private final RequestPriority mDefaultPriority;
+
+        private PriorityInterceptor(RequestPriority defaultPriority) {
+            this.mDefaultPriority = defaultPriority;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            // this is the request the call holds as we are an application interceptor
+            Request original = chain.request();
+            RequestPriority threadPriority = sThreadPriority.get();
+            RequestPriority priority = RequestPriority.of(original,
+                    threadPriority == null ? mDefaultPriority : threadPriority);
+            Request request = original;
+            if (original.header(RequestPriority.HEADER_NAME) != null) {
+                request = original.newBuilder().removeHeader(RequestPriority.HEADER_NAME).build();
+            }
+
+            if (priority == RequestPriority.VISIBLE_PAGE) {
+                return proceedVisiblePage(chain, request);
+            } else if (priority == RequestPriority.PREFETCH) {
+                return proceedPrefetch(chain, original, request);
+            }
+            return chain.proceed(request);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package me.ykrank.s1next.widget;
+
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import java.util.concurrent.TimeUnit;
+
+import me.ykrank.s1next.data.User;
+import me.ykrank.s1next.data.api.Api;
+import me.ykrank.s1next.data.api.ApiFlatTransformer;
+import me.ykrank.s1next.data.api.S1Service;
+import me.ykrank.s1next.data.api.UserValidator;
+import me.ykrank.s1next.data.api.model.wrapper.SearchWrapper;
+import me.ykrank.s1next.util.AppSchedulers;
+import rx.Observable;
+import rx.functions.Actions;
+
+/**
+ * Loads the result pages of searches, and keeps them (and the requests while loading)
+ * for {@link #MAX_AGE_MILLIS} so a repeated search or a page we have gone back to
+ * is shown at once.
+ * <p>
+ * Only the first page is a real search (which needs the authenticity token, reused
+ * across searches). The other pages are plain pages of its result (their links have
+ * the search id of the first page), so they are cheap to prefetch by
+ * {@link #prefetch(String, int)}, and are dropped once their first page is.
+ */
+public final class SearchResultCache {
+
+    /**
+     * New posts make results stale.
+     */
+    private static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final int MAX_PAGES = 32;
+
+    private final S1Service mS1Service;
+    private final PostFormPrefetcher mPostFormPrefetcher;
+    private final User mUser;
+    private final UserValidator mUserValidator;
+    private final NetworkQualityEstimator mNetworkQualityEstimator;
+    private final RequestScheduler mRequestScheduler;
+
+    private final LruCache<String, Entry> mEntries = new LruCache<>(MAX_PAGES);
+
+    public SearchResultCache(S1Service s1Service, PostFormPrefetcher postFormPrefetcher, User user,
+                             UserValidator userValidator,
+                             NetworkQualityEstimator networkQualityEstimator,
+                             RequestScheduler requestScheduler) {
+        this.mS1Service = s1Service;
+        this.mPostFormPrefetcher = postFormPrefetcher;
+        this.mUser = user;
+        this.mUserValidator = userValidator;
+        this.mNetworkQualityEstimator = networkQualityEstimator;
+        this.mRequestScheduler = requestScheduler;
+    }
+
+    /**
+     * Returns this page (starts from 1) of the result of this query,
+     * parsed in {@link AppSchedulers#parse()}.
+     */
+    public Observable<SearchWrapper> search(String query, int page) {
+        return get(query, page, null);
+    }
+
+    /**
+     * Starts to load this page in background if we could download
+     * something which user hasn't asked for.
+     *
+     * @see NetworkQualityEstimator#isUnmeteredAndNotPoor()
+     */
+    public void prefetch(String query, int page) {
+        if (mNetworkQualityEstimator.isUnmeteredAndNotPoor()) {
+            get(query, page, RequestPriority.PREFETCH).subscribe(Actions.empty(), Actions.empty());
+        }
+    }
+
+    private synchronized Observable<SearchWrapper> get(String query, int page,
+                                                       @Nullable RequestPriority priority) {
+        return getEntry(query, page, priority).observable;
+    }
+
+    private synchronized Entry getEntry(String query, int page, @Nullable RequestPriority priority) {
+        String key = query + "\n" + page;
+        Entry entry = mEntries.get(key);
+        // the link of other pages is in the first page
+        Entry firstPage = page == 1 ? null : getEntry(query, 1, priority);
+        if (entry == null || SystemClock.elapsedRealtime() - entry.startTime > MAX_AGE_MILLIS
+                || entry.firstPage != firstPage) {
+            Entry newEntry = new Entry();
+            newEntry.firstPage = firstPage;
+            Observable<String> source;
+            if (firstPage == null) {
+                source = Observable.just(mUser.getAuthenticityToken())
+                        .compose(ApiFlatTransformer.AuthenticityTokenTransformer(
+                                Observable.defer(mPostFormPrefetcher::refreshAuthenticityToken),
+                                mUserValidator))
+                        .flatMap(token -> mS1Service.searchForum(token, "yes", query));
+            } else {
+                String priorityName = priority == null ? null : priority.name();
+                source = firstPage.observable.flatMap(wrapper ->
+                        mS1Service.getSearchResultPage(priorityName,
+                                Api.BASE_URL + wrapper.getHref() + page));
+            }
+            source = source.subscribeOn(AppSchedulers.network());
+            if (priority != null) {
+                source = source.compose(mRequestScheduler.lowPriority(priority));
+            }
+            // cache() shares the result (and the request while loading)
+            newEntry.observable = source
+                    .observeOn(AppSchedulers.parse())
+                    .map(SearchWrapper::fromSource)
+                    .doOnNext(wrapper -> {
+                        // maybe an error page (like searching too often), don't keep it
+                        if (wrapper.getSearches().isEmpty()) {
+                            remove(key, newEntry);
+                        }
+                    })
+                    .doOnError(throwable -> remove(key, newEntry))
+                    .cache();
+            mEntries.put(key, newEntry);
+            entry = newEntry;
+        }
+        return entry;
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (mEntries.get(key) == entry) {
+            mEntries.remove(key);
+        }
+    }
+
+    private static final class Entry {
+
+        private Observable<SearchWrapper> observable;
+        /**
+         * The first page this page was loaded from, {@code null} for the first page.
+         * This page is stale once its first page is searched again, as the search id changes.
+         */
+        @Nullable
+        private Entry firstPage;
+        private final long startTime = SystemClock.elapsedRealtime();
+    }
+}
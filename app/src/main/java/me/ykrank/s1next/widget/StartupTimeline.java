@@ -0,0 +1,116 @@
+package me.ykrank.s1next.widget;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import me.ykrank.s1next.BuildConfig;
+import me.ykrank.s1next.util.L;
+
+/**
+ * Records how long each phase of cold start takes, relative to
+ * {@link me.ykrank.s1next.App#attachBaseContext(android.content.Context)}.
+ * <p>
+ * Only the phases (and events) of the first cold start are recorded,
+ * see {@link me.ykrank.s1next.view.dialog.StartupTimelineDialogFragment}.
+ */
+public final class StartupTimeline {
+
+    private static final String TAG = "StartupTimeline";
+
+    /**
+     * Don't record anything after the user has used the app for a while.
+     */
+    private static final long MAX_RECORD_MILLIS = 60 * 1000;
+
+    private static final List<Phase> sPhases = new ArrayList<>();
+    private static long sStartTime;
+
+    private StartupTimeline() {}
+
+    /**
+     * Called as early as possible when process starts.
+     */
+    public static void start() {
+        sStartTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Runs this phase and records how long it takes.
+     */
+    public static void trace(String name, Runnable runnable) {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            runnable.run();
+        } finally {
+            record(name, start, SystemClock.elapsedRealtime());
+        }
+    }
+
+    /**
+     * Records an event (like the first forum list is shown), only the first one is recorded
+     * if this event happens many times.
+     */
+    public static void mark(String name) {
+        synchronized (sPhases) {
+            for (Phase phase : sPhases) {
+                if (phase.name.equals(name)) {
+                    return;
+                }
+            }
+        }
+        long now = SystemClock.elapsedRealtime();
+        record(name, now, now);
+    }
+
+    /**
+     * Returns the recorded phases, each in one line.
+     */
+    public static String dump() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (sPhases) {
+            for (Phase phase : sPhases) {
+                builder.append(phase).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void record(String name, long start, long end) {
+        if (sStartTime == 0 || start - sStartTime > MAX_RECORD_MILLIS) {
+            return;
+        }
+        Phase phase = new Phase(name, Looper.myLooper() == Looper.getMainLooper(),
+                start - sStartTime, end - start);
+        synchronized (sPhases) {
+            sPhases.add(phase);
+        }
+        if (BuildConfig.DEBUG) {
+            L.d(TAG, phase.toString());
+        }
+    }
+
+    private static final class Phase {
+
+        private final String name;
+        private final boolean mainThread;
+        private final long startMillis;
+        private final long durationMillis;
+
+        private Phase(String name, boolean mainThread, long startMillis, long durationMillis) {
+            this.name = name;
+            this.mainThread = mainThread;
+            this.startMillis = startMillis;
+            this.durationMillis = durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%6dms %5dms %s %s", startMillis, durationMillis,
+                    mainThread ? "main" : "bg  ", name);
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package me.ykrank.s1next.widget;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LruCache;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.util.L;
+
+/**
+ * A {@link Drawable} which renders a very large image by decoding only the
+ * visible tiles with {@link BitmapRegionDecoder}.
+ * <p>
+ * A preview of the whole image, down sampled to the size of the view, is always
+ * drawn first, then the tiles of the visible region are decoded in background threads
+ * with the sample size matching current zoom level and drawn on top of it. Decoded tiles of all instances
+ * are kept in one {@link LruCache} bounded by size in bytes, so the gallery pages
+ * kept by the ViewPager don't multiply the memory used by tiles.
+ * <p>
+ * The owner must call {@link #setViewport(Matrix, int, int)} before each draw
+ * and {@link #recycle()} once this drawable is no longer used.
+ */
+public final class TiledBitmapDrawable extends Drawable {
+
+    private static final String TAG = TiledBitmapDrawable.class.getSimpleName();
+
+    /**
+     * The size of a decoded tile, in pixels.
+     */
+    private static final int TILE_SIZE = 512;
+
+    /**
+     * Uses 1/8th of the available memory for tiles of all instances.
+     */
+    private static final LruCache<TileKey, Bitmap> sTileCache = new LruCache<TileKey, Bitmap>(
+            (int) (Runtime.getRuntime().maxMemory() / 8)) {
+        @Override
+        protected int sizeOf(TileKey key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final BitmapRegionDecoder mDecoder;
+    private final int mImageWidth;
+    private final int mImageHeight;
+
+    private final Bitmap mPreview;
+    private final int mPreviewSampleSize;
+
+    /**
+     * Tiles which are waiting to be decoded, only accessed in main thread.
+     */
+    private final Set<TileKey> mPendingTiles = new HashSet<>();
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final Matrix mViewportMatrix = new Matrix();
+    private final Matrix mInverseMatrix = new Matrix();
+    private final RectF mVisibleRect = new RectF();
+    private final Rect mTileSrcRect = new Rect();
+    private final Rect mTileDstRect = new Rect();
+
+    private int mViewWidth;
+    private int mViewHeight;
+
+    /**
+     * The sample size of tiles required by current viewport.
+     */
+    private volatile int mCurrentSampleSize;
+
+    private volatile boolean mRecycled;
+
+    private TiledBitmapDrawable(BitmapRegionDecoder decoder, Bitmap preview, int previewSampleSize) {
+        mDecoder = decoder;
+        mImageWidth = decoder.getWidth();
+        mImageHeight = decoder.getHeight();
+        mPreview = preview;
+        mPreviewSampleSize = previewSampleSize;
+        mCurrentSampleSize = previewSampleSize;
+    }
+
+    /**
+     * Creates a {@link TiledBitmapDrawable} for the image file.
+     * <p>
+     * This method decodes the preview of the whole image, so it must be
+     * called in worker thread. The preview is only detailed enough to show the
+     * whole image in a view of this size, tiles are decoded when it is zoomed in.
+     *
+     * @param path           The path of the image file.
+     * @param viewWidth      The width of the view (or the display) showing this image.
+     * @param viewHeight     The height of the view (or the display) showing this image.
+     * @param maxTextureSize The max width or height of the preview bitmap,
+     *                       generally the OpenGL texture size limit.
+     * @return {@code null} if the image could not be decoded.
+     */
+    @Nullable
+    @WorkerThread
+    public static TiledBitmapDrawable create(String path, int viewWidth, int viewHeight,
+                                             int maxTextureSize) {
+        BitmapRegionDecoder decoder;
+        try {
+            decoder = BitmapRegionDecoder.newInstance(path, false);
+        } catch (IOException e) {
+            L.e(TAG, e);
+            return null;
+        }
+
+        int width = decoder.getWidth();
+        int height = decoder.getHeight();
+        // the scale which fits the whole image in the view
+        float fitScale = Math.min((float) viewWidth / width, (float) viewHeight / height);
+        int sampleSize = 1;
+        while (sampleSize * 2 * fitScale <= 1) {
+            sampleSize *= 2;
+        }
+        while (width / sampleSize > maxTextureSize || height / sampleSize > maxTextureSize) {
+            sampleSize *= 2;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap preview;
+        try {
+            preview = decoder.decodeRegion(new Rect(0, 0, width, height), options);
+        } catch (OutOfMemoryError e) {
+            L.e(TAG, e);
+            preview = null;
+        }
+        if (preview == null) {
+            decoder.recycle();
+            return null;
+        }
+
+        return new TiledBitmapDrawable(decoder, preview, sampleSize);
+    }
+
+    /**
+     * Whether the image is too large to be drawn in one bitmap.
+     *
+     * @see #create(String, int, int, int)
+     */
+    public static boolean shouldUseTiles(String path, int maxTextureSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        // BitmapRegionDecoder only supports JPEG and PNG
+        return ("image/jpeg".equals(options.outMimeType) || "image/png".equals(options.outMimeType))
+                && (options.outWidth > maxTextureSize || options.outHeight > maxTextureSize);
+    }
+
+    /**
+     * Sets the matrix used to draw this drawable and the size of the view, in order
+     * to find out which tiles are visible and which sample size they need.
+     *
+     * @param drawMatrix The matrix from image coordinates to view coordinates,
+     *                   {@code null} means identity.
+     */
+    public void setViewport(@Nullable Matrix drawMatrix, int viewWidth, int viewHeight) {
+        if (drawMatrix == null) {
+            mViewportMatrix.reset();
+        } else {
+            mViewportMatrix.set(drawMatrix);
+        }
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+    }
+
+    public void recycle() {
+        mRecycled = true;
+        mPendingTiles.clear();
+        for (Map.Entry<TileKey, Bitmap> entry : sTileCache.snapshot().entrySet()) {
+            if (entry.getKey().owner == this) {
+                sTileCache.remove(entry.getKey());
+            }
+        }
+        synchronized (mDecoder) {
+            mDecoder.recycle();
+        }
+        // draw() does nothing after recycled
+        mPreview.recycle();
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        if (mRecycled) {
+            return;
+        }
+
+        Rect bounds = getBounds();
+        canvas.drawBitmap(mPreview, null, bounds, mPaint);
+
+        if (mViewWidth == 0 || mViewHeight == 0 || !mViewportMatrix.invert(mInverseMatrix)) {
+            return;
+        }
+        int sampleSize = calculateSampleSize(mViewportMatrix);
+        mCurrentSampleSize = sampleSize;
+        if (sampleSize >= mPreviewSampleSize) {
+            // preview is detailed enough
+            return;
+        }
+
+        // the visible region in image coordinates
+        mVisibleRect.set(0, 0, mViewWidth, mViewHeight);
+        mInverseMatrix.mapRect(mVisibleRect);
+        if (!mVisibleRect.intersect(0, 0, mImageWidth, mImageHeight)) {
+            return;
+        }
+
+        int tileSrcSize = TILE_SIZE * sampleSize;
+        int firstColumn = (int) (mVisibleRect.left / tileSrcSize);
+        int lastColumn = (int) ((mVisibleRect.right - 1) / tileSrcSize);
+        int firstRow = (int) (mVisibleRect.top / tileSrcSize);
+        int lastRow = (int) ((mVisibleRect.bottom - 1) / tileSrcSize);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                TileKey key = new TileKey(this, sampleSize, column, row);
+                Bitmap tile = sTileCache.get(key);
+                if (tile == null) {
+                    requestTile(key);
+                } else {
+                    setTileRect(key, mTileDstRect);
+                    canvas.drawBitmap(tile, null, mTileDstRect, mPaint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the largest power of two sample size which still shows
+     * the image in full detail with this matrix.
+     */
+    private int calculateSampleSize(Matrix matrix) {
+        float scale = matrix.mapRadius(1);
+        int sampleSize = 1;
+        while (sampleSize * 2 * scale <= 1) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private void setTileRect(TileKey key, Rect rect) {
+        int tileSrcSize = TILE_SIZE * key.sampleSize;
+        int left = key.column * tileSrcSize;
+        int top = key.row * tileSrcSize;
+        rect.set(left, top, Math.min(left + tileSrcSize, mImageWidth),
+                Math.min(top + tileSrcSize, mImageHeight));
+    }
+
+    private void requestTile(TileKey key) {
+        if (!mPendingTiles.add(key)) {
+            return;
+        }
+
+        AppSchedulers.decodeExecutor().execute(() -> {
+            Bitmap tile = null;
+            // skip tiles which were requested by an outdated zoom level
+            if (!mRecycled && key.sampleSize == mCurrentSampleSize) {
+                tile = decodeTile(key);
+            }
+            Bitmap result = tile;
+            sMainHandler.post(() -> {
+                mPendingTiles.remove(key);
+                if (result != null && !mRecycled) {
+                    sTileCache.put(key, result);
+                    invalidateSelf();
+                }
+            });
+        });
+    }
+
+    @WorkerThread
+    @Nullable
+    private Bitmap decodeTile(TileKey key) {
+        Rect rect = new Rect();
+        setTileRect(key, rect);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = key.sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        synchronized (mDecoder) {
+            if (mDecoder.isRecycled()) {
+                return null;
+            }
+            try {
+                return mDecoder.decodeRegion(rect, options);
+            } catch (OutOfMemoryError e) {
+                L.e(TAG, e);
+                sTileCache.trimToSize(sTileCache.size() / 2);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mImageWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mImageHeight;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    private static final class TileKey {
+
+        /**
+         * The drawable which this tile belongs to, compared by identity.
+         */
+        private final TiledBitmapDrawable owner;
+        private final int sampleSize;
+        private final int column;
+        private final int row;
+
+        private TileKey(TiledBitmapDrawable owner, int sampleSize, int column, int row) {
+            this.owner = owner;
+            this.sampleSize = sampleSize;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TileKey tileKey = (TileKey) o;
+            return owner == tileKey.owner &&
+                    sampleSize == tileKey.sampleSize &&
+                    column == tileKey.column &&
+                    row == tileKey.row;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(owner);
+            result = 31 * result + sampleSize;
+            result = 31 * result + column;
+            result = 31 * result + row;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package me.ykrank.s1next.widget;
+
+import android.content.Context;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import me.ykrank.s1next.data.api.model.Account;
+import me.ykrank.s1next.data.api.model.Post;
+import me.ykrank.s1next.data.api.model.collection.Posts;
+import me.ykrank.s1next.util.AppSchedulers;
+import me.ykrank.s1next.util.L;
+
+/**
+ * Persists the data of list pages so they could be shown at once (without any request)
+ * when they are recreated after our process was killed in background.
+ * <p>
+ * Each page has its own key which is kept in its saved instance state, and tells
+ * the type of its data, see {@link me.ykrank.s1next.view.fragment.BaseRecyclerViewFragment}.
+ * Data is written as JSON of its fields (annotations and setters of our API models
+ * are bypassed, so what we read is exactly what we wrote). The fields of {@link Account}
+ * (with the authenticity token) are not written. Types which fail to be written are
+ * skipped afterwards.
+ * <p>
+ * Data is serialized in the thread which loaded it, before the UI shares (and changes) it,
+ * and kept in memory by {@link #stage(String, Object)}. It is only written to disk by
+ * {@link #commit(String)} when the page saves its instance state. Staging, writing
+ * and deleting run in the database thread (in order), while a snapshot is read
+ * in main thread as the page needs it before its first layout.
+ */
+public final class UiSnapshotStore {
+
+    private static final String DIRECTORY_NAME = "ui_snapshots";
+
+    /**
+     * Increase this if the format changes, old snapshots are ignored.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Snapshots of pages which are never restored (the task was removed
+     * while we were killed) are deleted after this.
+     */
+    private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Identifies this process, snapshots are only restored in another process.
+     * Not the pid because a pid may be reused.
+     */
+    private static final String PROCESS_TOKEN = UUID.randomUUID().toString();
+
+    private final File mDirectory;
+
+    private final ObjectMapper mObjectMapper;
+
+    private final Set<Class<?>> mUnsupportedTypes = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * Serialized data which is not written yet, only accessed in database thread.
+     */
+    private final Map<String, byte[]> mStagedSnapshots = new HashMap<>();
+
+    public UiSnapshotStore(Context context) {
+        mDirectory = new File(context.getCacheDir(), DIRECTORY_NAME);
+        mObjectMapper = newObjectMapper();
+        AppSchedulers.databaseExecutor().execute(this::deleteExpiredSnapshots);
+    }
+
+    private static ObjectMapper newObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.disable(MapperFeature.USE_ANNOTATIONS);
+        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        SimpleModule module = new SimpleModule();
+        module.setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public List<BeanPropertyWriter> changeProperties(SerializationConfig config,
+                                                             BeanDescription beanDesc,
+                                                             List<BeanPropertyWriter> beanProperties) {
+                // the account (with its authenticity token) is not written to disk
+                List<BeanPropertyWriter> properties = new ArrayList<>(beanProperties.size());
+                for (BeanPropertyWriter property : beanProperties) {
+                    if (property.getMember().getDeclaringClass() != Account.class) {
+                        properties.add(property);
+                    }
+                }
+                return properties;
+            }
+        });
+        // they have no default constructor, and their deserializers for API are annotations
+        module.addDeserializer(Post.Attachment.class,
+                new StdDeserializer<Post.Attachment>(Post.Attachment.class) {
+                    @Override
+                    public Post.Attachment deserialize(JsonParser p, DeserializationContext ctxt)
+                            throws IOException {
+                        JsonNode node = p.getCodec().readTree(p);
+                        return new Post.Attachment(node.path("url").asText(), "");
+                    }
+                });
+        module.addDeserializer(Posts.ThreadAttachment.Info.class,
+                new StdDeserializer<Posts.ThreadAttachment.Info>(Posts.ThreadAttachment.Info.class) {
+                    @Override
+                    public Posts.ThreadAttachment.Info deserialize(JsonParser p, DeserializationContext ctxt)
+                            throws IOException {
+                        JsonNode node = p.getCodec().readTree(p);
+                        return new Posts.ThreadAttachment.Info(node.path("label").asText(),
+                                node.path("value").asText(), null);
+                    }
+                });
+        objectMapper.registerModule(module);
+        return objectMapper;
+    }
+
+    public static String newKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    public static String getProcessToken() {
+        return PROCESS_TOKEN;
+    }
+
+    /**
+     * Keeps this data as the snapshot of this key, to be written by {@link #commit(String)}.
+     * The data is serialized before this returns, so it could be changed after this.
+     */
+    @WorkerThread
+    public void stage(String key, Object data) {
+        Class<?> type = data.getClass();
+        if (mUnsupportedTypes.contains(type)) {
+            return;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonGenerator generator = null;
+        try {
+            generator = mObjectMapper.getFactory().createGenerator(outputStream);
+            generator.writeStartObject();
+            generator.writeNumberField("version", VERSION);
+            generator.writeFieldName("data");
+            mObjectMapper.writeValue(generator, data);
+            generator.writeEndObject();
+            generator.close();
+            generator = null;
+        } catch (IOException | RuntimeException e) {
+            L.e("Failed to serialize UI snapshot of " + type.getName(), e);
+            mUnsupportedTypes.add(type);
+            return;
+        } finally {
+            closeQuietly(generator);
+        }
+        byte[] bytes = outputStream.toByteArray();
+        AppSchedulers.databaseExecutor().execute(() -> mStagedSnapshots.put(key, bytes));
+    }
+
+    /**
+     * Writes the snapshot staged with this key in background, if there is one.
+     */
+    public void commit(String key) {
+        AppSchedulers.databaseExecutor().execute(() -> {
+            byte[] bytes = mStagedSnapshots.remove(key);
+            if (bytes != null) {
+                writeSync(key, bytes);
+            }
+        });
+    }
+
+    /**
+     * Deletes the snapshot of this key in background.
+     */
+    public void delete(String key) {
+        AppSchedulers.databaseExecutor().execute(() -> {
+            mStagedSnapshots.remove(key);
+            //noinspection ResultOfMethodCallIgnored
+            getFile(key).delete();
+        });
+    }
+
+    /**
+     * Returns the data written with this key, or {@code null} if there is none
+     * (or it's broken, or not of this type). A snapshot is one page of data, and
+     * is only read once when the page is recreated in a new process.
+     */
+    @MainThread
+    @Nullable
+    public <T> T read(String key, Class<T> type) {
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        JsonParser parser = null;
+        try {
+            parser = mObjectMapper.getFactory().createParser(file);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            int version = 0;
+            T data = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "version":
+                        version = parser.getIntValue();
+                        break;
+                    case "data":
+                        // the version is written before the data
+                        if (version != VERSION) {
+                            return null;
+                        }
+                        data = mObjectMapper.readValue(parser, type);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            return data;
+        } catch (IOException | RuntimeException e) {
+            L.e("Failed to read UI snapshot", e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(parser);
+        }
+    }
+
+    private void writeSync(String key, byte[] bytes) {
+        File file = getFile(key);
+        File tmpFile = new File(file.getPath() + ".tmp");
+        OutputStream outputStream = null;
+        try {
+            if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+                throw new FileNotFoundException("Failed to create " + mDirectory);
+            }
+            outputStream = new FileOutputStream(tmpFile);
+            outputStream.write(bytes);
+            outputStream.close();
+            outputStream = null;
+            // replace atomically so a half written snapshot is never read
+            if (!tmpFile.renameTo(file)) {
+                throw new FileNotFoundException("Failed to rename " + tmpFile);
+            }
+        } catch (IOException e) {
+            L.e("Failed to write UI snapshot", e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        } finally {
+            closeQuietly(outputStream);
+        }
+    }
+
+    private void deleteExpiredSnapshots() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (now - file.lastModified() > MAX_AGE_MILLIS) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(mDirectory, key + ".json");
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
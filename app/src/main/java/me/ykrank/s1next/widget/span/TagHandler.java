@@ -10,10 +10,13 @@ import android.text.style.ImageSpan;
 import android.text.style.StrikethroughSpan;
 import android.view.View;
 import android.webkit.URLUtil;
+import android.widget.TextView;
 
 import org.xml.sax.XMLReader;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import me.ykrank.s1next.util.L;
@@ -164,9 +167,29 @@ public final class TagHandler implements Html.TagHandler {
             super(d, source);
         }
 
+        /**
+         * Opens the gallery with all clickable images in the same text,
+         * so the user could swipe between the images of this post.
+         */
         @Override
         public void onClick(View v) {
-            GalleryActivity.startGalleryActivity(v.getContext(), getSource());
+            if (v instanceof TextView && ((TextView) v).getText() instanceof Spanned) {
+                Spanned text = (Spanned) ((TextView) v).getText();
+                ImageClickableSpan[] spans = text.getSpans(0, text.length(),
+                        ImageClickableSpan.class);
+                Arrays.sort(spans, (lhs, rhs) -> text.getSpanStart(lhs) - text.getSpanStart(rhs));
+                ArrayList<String> imageUrls = new ArrayList<>(spans.length);
+                int position = 0;
+                for (ImageClickableSpan span : spans) {
+                    if (span == this) {
+                        position = imageUrls.size();
+                    }
+                    imageUrls.add(span.getSource());
+                }
+                GalleryActivity.startGalleryActivity(v.getContext(), imageUrls, position);
+            } else {
+                GalleryActivity.startGalleryActivity(v.getContext(), getSource());
+            }
         }
     }
 
@@ -0,0 +1,168 @@
+package me.ykrank.s1next.widget;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.Source;
+import okio.Timeout;
+
+import static org.junit.Assert.assertEquals;
+
+public class BandwidthSamplingSourceTest {
+
+    private static final int CHUNK_BYTES = 16 * 1024;
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private FakeClock mClock;
+    private FakeSource mFakeSource;
+    private int mSamples;
+    private long mSampledBytes;
+    private long mSampledNanos;
+    private BandwidthSamplingSource mSource;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mFakeSource = new FakeSource(mClock);
+        mSource = new BandwidthSamplingSource(mFakeSource, mClock, (bytes, nanos) -> {
+            mSamples++;
+            mSampledBytes = bytes;
+            mSampledNanos = nanos;
+        });
+    }
+
+    @Test
+    public void samplesFromFirstByteToEnd() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            mFakeSource.addChunk(CHUNK_BYTES, 10 * MILLIS);
+        }
+
+        readAll(0);
+
+        assertEquals(1, mSamples);
+        // the first chunk arrived before the time started
+        assertEquals(3 * CHUNK_BYTES, mSampledBytes);
+        assertEquals(30 * MILLIS, mSampledNanos);
+    }
+
+    @Test
+    public void countsConsumerStalls() throws IOException {
+        mFakeSource.addChunk(CHUNK_BYTES, 10 * MILLIS);
+        // these were in the socket buffer while the consumer was busy
+        mFakeSource.addChunk(CHUNK_BYTES, 0);
+        mFakeSource.addChunk(CHUNK_BYTES, 0);
+
+        readAll(50 * MILLIS);
+
+        assertEquals(1, mSamples);
+        assertEquals(2 * CHUNK_BYTES, mSampledBytes);
+        // not the 0ms spent in read(), which means an infinite bandwidth
+        assertEquals(100 * MILLIS, mSampledNanos);
+    }
+
+    @Test
+    public void skipsBodyReadAtOnce() throws IOException {
+        mFakeSource.addChunk(CHUNK_BYTES, 10 * MILLIS);
+
+        readAll(0);
+        mSource.close();
+
+        assertEquals(0, mSamples);
+    }
+
+    @Test
+    public void samplesOnceWhenClosedAfterEnd() throws IOException {
+        mFakeSource.addChunk(CHUNK_BYTES, 10 * MILLIS);
+        mFakeSource.addChunk(CHUNK_BYTES, 10 * MILLIS);
+
+        readAll(0);
+        mSource.close();
+
+        assertEquals(1, mSamples);
+    }
+
+    @Test
+    public void samplesWhenClosedBeforeEnd() throws IOException {
+        mFakeSource.addChunk(CHUNK_BYTES, 10 * MILLIS);
+        mFakeSource.addChunk(CHUNK_BYTES, 10 * MILLIS);
+        mFakeSource.addChunk(CHUNK_BYTES, 10 * MILLIS);
+
+        Buffer sink = new Buffer();
+        mSource.read(sink, CHUNK_BYTES);
+        mSource.read(sink, CHUNK_BYTES);
+        // the time after the last byte is not counted
+        mClock.advance(1000 * MILLIS);
+        mSource.close();
+
+        assertEquals(1, mSamples);
+        assertEquals(CHUNK_BYTES, mSampledBytes);
+        assertEquals(10 * MILLIS, mSampledNanos);
+    }
+
+    /**
+     * Reads the whole body, taking this long to consume each chunk.
+     */
+    private void readAll(long consumeNanos) throws IOException {
+        Buffer sink = new Buffer();
+        while (mSource.read(sink, CHUNK_BYTES) != -1) {
+            sink.clear();
+            mClock.advance(consumeNanos);
+        }
+    }
+
+    private static final class FakeClock implements BandwidthSamplingSource.Clock {
+
+        private long mNanos;
+
+        @Override
+        public long nanoTime() {
+            return mNanos;
+        }
+
+        private void advance(long nanos) {
+            mNanos += nanos;
+        }
+    }
+
+    /**
+     * Returns the chunks in order, each read takes the time of its chunk.
+     */
+    private static final class FakeSource implements Source {
+
+        private final FakeClock mClock;
+        private final Queue<long[]> mChunks = new ArrayDeque<>();
+
+        private FakeSource(FakeClock clock) {
+            this.mClock = clock;
+        }
+
+        private void addChunk(int bytes, long nanos) {
+            mChunks.add(new long[]{bytes, nanos});
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long[] chunk = mChunks.poll();
+            if (chunk == null) {
+                return -1;
+            }
+            mClock.advance(chunk[1]);
+            sink.write(new byte[(int) chunk[0]]);
+            return chunk[0];
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
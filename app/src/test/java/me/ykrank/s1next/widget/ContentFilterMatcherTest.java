@@ -0,0 +1,105 @@
+package me.ykrank.s1next.widget;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import me.ykrank.s1next.data.db.dbmodel.BlackList;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContentFilterMatcherTest {
+
+    private ContentFilterMatcher mMatcher;
+
+    @Before
+    public void setUp() {
+        mMatcher = new ContentFilterMatcher();
+    }
+
+    @Test
+    public void matchesOverlappingKeywords() {
+        addKeyword("she", BlackList.HIDE_POST);
+        addKeyword("he", BlackList.NORMAL);
+        addKeyword("hers", BlackList.DEL_POST);
+
+        // "hers" starts inside "she"
+        assertEquals(BlackList.DEL_POST, mMatcher.getPostFlag("ushers"));
+        assertEquals(BlackList.HIDE_POST, mMatcher.getPostFlag("ushe"));
+    }
+
+    @Test
+    public void followsFailureLinks() {
+        addKeyword("abcd", BlackList.HIDE_POST);
+        addKeyword("bcx", BlackList.DEL_POST);
+
+        // "abc" fails on 'x' and continues from "bc"
+        assertEquals(BlackList.DEL_POST, mMatcher.getPostFlag("abcx"));
+        assertEquals(BlackList.HIDE_POST, mMatcher.getPostFlag("xabcd"));
+        assertEquals(BlackList.NORMAL, mMatcher.getPostFlag("abcbx"));
+    }
+
+    @Test
+    public void followsOutputLinks() {
+        addKeyword("abc", BlackList.NORMAL);
+        addKeyword("bc", BlackList.NORMAL);
+        addKeyword("c", BlackList.HIDE_POST);
+
+        // "c" is only reachable through the output links of "abc"
+        assertEquals(BlackList.HIDE_POST, mMatcher.getPostFlag("abc"));
+    }
+
+    @Test
+    public void foldsCase() {
+        addKeyword("Spoiler", BlackList.HIDE_POST);
+        mMatcher.add("^leak", true, BlackList.DEL_POST, BlackList.NORMAL);
+
+        assertEquals(BlackList.HIDE_POST, mMatcher.getPostFlag("SPOILER alert"));
+        assertEquals(BlackList.DEL_POST, mMatcher.getPostFlag("LEAKED"));
+    }
+
+    @Test
+    public void stripsTags() {
+        addKeyword("spoiler", BlackList.HIDE_POST);
+
+        assertEquals("spoiler", ContentFilterMatcher.stripTags("spo<b>iler</b>"));
+        assertEquals(BlackList.HIDE_POST, mMatcher.getPostFlag("spo<b>iler</b>"));
+        // only in a tag
+        assertEquals(BlackList.NORMAL, mMatcher.getPostFlag("<a href=\"spoiler\">link</a>"));
+    }
+
+    @Test
+    public void selectsStrictestFlag() {
+        addKeyword("foo", BlackList.HIDE_POST);
+        mMatcher.add("b(a)r\\1", true, BlackList.DEL_POST, BlackList.HIDE_FORUM);
+        mMatcher.add("baz", true, BlackList.HIDE_POST, BlackList.DEL_FORUM);
+
+        assertEquals(BlackList.HIDE_POST, mMatcher.getPostFlag("foo bar"));
+        assertEquals(BlackList.DEL_POST, mMatcher.getPostFlag("foo bara"));
+        assertEquals(BlackList.HIDE_POST, mMatcher.getPostFlag("foo baz"));
+        // post and forum flags are independent
+        assertEquals(BlackList.DEL_FORUM, mMatcher.getForumFlag("bara baz"));
+        assertEquals(BlackList.NORMAL, mMatcher.getForumFlag("foo"));
+    }
+
+    @Test
+    public void updatesOnRuleChanges() {
+        addKeyword("foo", BlackList.HIDE_POST);
+        assertEquals(BlackList.HIDE_POST, mMatcher.getPostFlag("foo"));
+
+        // the same keyword replaces the old rule
+        addKeyword("foo", BlackList.DEL_POST);
+        assertEquals(BlackList.DEL_POST, mMatcher.getPostFlag("foo"));
+
+        mMatcher.remove("foo", false);
+        assertEquals(BlackList.NORMAL, mMatcher.getPostFlag("foo"));
+
+        mMatcher.add("fo+", true, BlackList.HIDE_POST, BlackList.NORMAL);
+        assertEquals(BlackList.HIDE_POST, mMatcher.getPostFlag("foo"));
+        mMatcher.clear();
+        assertEquals(BlackList.NORMAL, mMatcher.getPostFlag("foo"));
+    }
+
+    private void addKeyword(String word, int post) {
+        mMatcher.add(word, false, post, BlackList.NORMAL);
+    }
+}